@@ -0,0 +1,146 @@
+using Microsoft.AspNetCore.Authorization;
+using Microsoft.AspNetCore.Mvc;
+using Microsoft.AspNetCore.SignalR;
+using Microsoft.EntityFrameworkCore;
+using PartsUnlimited.Hubs;
+using PartsUnlimited.Models;
+using PartsUnlimited.Utils;
+
+namespace PartsUnlimited.Api;
+
+/// <summary>
+/// Administrator product writes for integrations. Like StoreManagerController
+/// it only saves and announces new products; cache invalidation follows from
+/// the commit through ProductChangeInterceptor and CacheInvalidationHandler.
+/// Every action goes through IdempotencyFilter, so clients retrying on a
+/// timeout should resend the same Idempotency-Key and get the original
+/// response back instead of a duplicate row. A batch is saved in one
+/// transaction. Updates load the stored row and copy only the editable fields
+/// onto it, so Created, Updated and DeletedAt are never taken from the
+/// request body.
+/// </summary>
+[ApiController]
+[Route("api/products")]
+[Authorize(Roles = "Administrator")]
+[ServiceFilter(typeof(IdempotencyFilter))]
+public class ProductWriteController : ControllerBase
+{
+    private const int MaxBatchSize = 500;
+
+    private readonly IPartsUnlimitedContext _db;
+    private readonly IHubContext<AnnouncementHub> _hub;
+
+    public ProductWriteController(IPartsUnlimitedContext db, IHubContext<AnnouncementHub> hub)
+    {
+        _db = db;
+        _hub = hub;
+    }
+
+    // POST /api/products
+    [HttpPost]
+    public async Task<ActionResult<Product>> Create(Product product)
+    {
+        if (product.ProductId != 0)
+            return BadRequest("ProductId is assigned by the server");
+
+        await SaveAsync([product]);
+        return CreatedAtAction(nameof(ProductsController.Get), "Products", new { id = product.ProductId }, product);
+    }
+
+    // PUT /api/products/5
+    [HttpPut("{id}")]
+    public async Task<ActionResult<Product>> Update(int id, Product product)
+    {
+        if (product.ProductId != id)
+            return BadRequest("ProductId does not match the route");
+
+        var existing = await LoadExistingAsync([product]);
+        if (existing.Count == 0)
+            return NotFound();
+
+        return (await SaveAsync([product], existing))[0];
+    }
+
+    // POST /api/products/batch  (ProductId 0 creates, otherwise updates)
+    [HttpPost("batch")]
+    public async Task<ActionResult<List<Product>>> Batch(List<Product> products)
+    {
+        if (products.Count is 0 or > MaxBatchSize)
+            return BadRequest($"A batch holds 1 to {MaxBatchSize} products");
+
+        var updateIds = products.Where(p => p.ProductId != 0).Select(p => p.ProductId).ToList();
+        if (updateIds.Count != updateIds.Distinct().Count())
+            return BadRequest("A product appears more than once in the batch");
+
+        var existing = await LoadExistingAsync(products);
+        if (existing.Count != updateIds.Count)
+            return NotFound();
+
+        return await SaveAsync(products, existing);
+    }
+
+    /// <summary>Tracked stored rows for the products being updated, by id.</summary>
+    private Task<Dictionary<int, Product>> LoadExistingAsync(IReadOnlyList<Product> products)
+    {
+        var ids = products.Where(p => p.ProductId != 0).Select(p => p.ProductId).ToList();
+        return _db.Products.AsTracking()
+            .Where(p => ids.Contains(p.ProductId))
+            .ToDictionaryAsync(p => p.ProductId);
+    }
+
+    /// <summary>Saves the batch and returns the stored products, in request order.</summary>
+    private async Task<List<Product>> SaveAsync(IReadOnlyList<Product> products, Dictionary<int, Product> existing)
+    {
+        var saved = new List<Product>(products.Count);
+        var created = new List<Product>();
+        foreach (var product in products)
+        {
+            if (product.ProductId == 0)
+            {
+                product.Created = DateTime.UtcNow;
+                product.DeletedAt = null;
+                // Only CategoryId links the category; a posted Category graph would be inserted as new rows
+                product.Category = null;
+                product.OrderDetails = [];
+                _db.Products.Add(product);
+                created.Add(product);
+                saved.Add(product);
+            }
+            else
+            {
+                var stored = existing[product.ProductId];
+                CopyEditableFields(product, stored);
+                saved.Add(stored);
+            }
+        }
+
+        await _db.SaveChangesAsync();
+        if (created.Count == 0) return saved;
+
+        foreach (var product in created)
+        {
+            await _hub.Clients.All.SendAsync("announcement", new
+            {
+                product.Title,
+                Url = Url.Action("Details", "Store",
+                    new { id = product.ProductId, area = string.Empty })
+            });
+        }
+        return saved;
+    }
+
+    private static void CopyEditableFields(Product source, Product target)
+    {
+        target.Title = source.Title;
+        target.Price = source.Price;
+        target.SalePrice = source.SalePrice;
+        target.ProductArtUrl = source.ProductArtUrl;
+        target.Description = source.Description;
+        target.CategoryId = source.CategoryId;
+        target.SkuNumber = source.SkuNumber;
+        target.RecommendationId = source.RecommendationId;
+        target.ProductDetails = source.ProductDetails;
+        target.Inventory = source.Inventory;
+        target.LeadTime = source.LeadTime;
+    }
+}
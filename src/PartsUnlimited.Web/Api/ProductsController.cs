@@ -1,32 +1,369 @@
+using System.Globalization;
 using Microsoft.AspNetCore.Mvc;
 using Microsoft.EntityFrameworkCore;
+using Microsoft.Net.Http.Headers;
 using PartsUnlimited.Models;
+using PartsUnlimited.Utils;
 
 namespace PartsUnlimited.Api;
 
+/// <summary>
+/// Read-side product API. List and search results are rendered once into
+/// IProductResponseCache (streamed from EF Core into the serializer without an
+/// intermediate List) and then written straight from the cached bytes, gzipped
+/// when the client accepts it. Cache misses read through IProductPartitions,
+/// so category-scoped searches hit one partition and the rest fan out.
+/// Clients sending Accept: application/cbor get the compact
+/// CompactProductCodec encoding instead, from its own cache entry here and
+/// through CompactProductFormatFilter on the other product actions.
+/// Reads carry strong ETags from ICatalogVersion and answer If-None-Match with
+/// 304 before touching the database. Faceted search is answered entirely from
+/// the in-memory IProductFacetIndex, one page at a time, and sorted top-N queries by bounded-heap
+/// selection over IProductCatalog. Search-as-you-type goes to the
+/// IProductAutocomplete trie, and SEO slugs resolve through IProductSlugIndex.
+/// Every action is admitted through AdaptiveConcurrencyFilter; under overload
+/// search, tag, stats and top-N queries are shed before list reads and
+/// autocomplete (an in-memory lookup per keystroke), and single-product reads
+/// last.
+/// </summary>
 [ApiController]
 [Route("api/[controller]")]
+[ServiceFilter(typeof(AdaptiveConcurrencyFilter))]
+[ServiceFilter(typeof(CompactProductFormatFilter))]
 public class ProductsController : ControllerBase
 {
+    private const int DefaultPageSize = 50;
+
     private readonly IPartsUnlimitedContext _db;
+    private readonly ICatalogVersion _catalogVersion;
+    private readonly IProductResponseCache _responseCache;
+    private readonly IProductPartitions _partitions;
+    private readonly IReadReplicaRouter _replicas;
+    private readonly IProductCatalog _catalog;
+    private readonly IProductFacetIndex _facets;
+    private readonly IProductAutocomplete _autocomplete;
+    private readonly IProductSlugIndex _slugs;
+    private readonly IEntityCache _entityCache;
+    private readonly IPromotionEngine _promotions;
+    private readonly ICatalogAnalytics _analytics;
 
-    public ProductsController(IPartsUnlimitedContext db) => _db = db;
+    public ProductsController(
+        IPartsUnlimitedContext db,
+        ICatalogVersion catalogVersion,
+        IProductResponseCache responseCache,
+        IProductPartitions partitions,
+        IReadReplicaRouter replicas,
+        IProductCatalog catalog,
+        IProductFacetIndex facets,
+        IProductAutocomplete autocomplete,
+        IProductSlugIndex slugs,
+        IEntityCache entityCache,
+        IPromotionEngine promotions,
+        ICatalogAnalytics analytics)
+    {
+        _db = db;
+        _catalogVersion = catalogVersion;
+        _responseCache = responseCache;
+        _partitions = partitions;
+        _replicas = replicas;
+        _catalog = catalog;
+        _facets = facets;
+        _autocomplete = autocomplete;
+        _slugs = slugs;
+        _entityCache = entityCache;
+        _promotions = promotions;
+        _analytics = analytics;
+    }
 
     // GET /api/products?sale=true
     [HttpGet]
-    public async Task<ActionResult<List<Product>>> Get([FromQuery] bool sale = false)
+    public async Task<IActionResult> Get([FromQuery] bool sale = false)
     {
-        var query = _db.Products.AsQueryable();
-        if (sale) query = query.Where(p => p.Price != p.SalePrice);
-        return await query.ToListAsync();
+        var variant = sale ? "sale" : "all";
+        return await WriteCachedAsync($"list_{variant}", variant, () =>
+            _partitions.QueryAsync(null,
+                products => sale ? products.Where(p => p.Price != p.SalePrice) : products,
+                HttpContext.RequestAborted));
     }
 
     // GET /api/products/5
     [HttpGet("{id}")]
+    [LoadPriority(LoadPriority.Critical)]
     public async Task<ActionResult<Product>> Get(int id)
     {
-        var product = await _db.Products.FirstOrDefaultAsync(p => p.ProductId == id);
+        if (IsNotModified(_catalogVersion.ProductETag(id)))
+            return StatusCode(StatusCodes.Status304NotModified);
+
+        // Serve from the catalog unless this product changed after its last sync
+        var product = _catalog.Version >= _catalogVersion.ForProduct(id) ? _catalog.Find(id) : null;
+        if (product is not null) return product;
+
+        await using var db = _replicas.CreateReadContext();
+        product = await db.Products.FirstOrDefaultAsync(p => p.ProductId == id);
+        if (product is null) return NotFound();
+        return product;
+    }
+
+    // GET /api/products/5/price
+    [HttpGet("{id}/price")]
+    [LoadPriority(LoadPriority.Critical)]
+    public ActionResult<PromotionalPrice> GetPrice(int id)
+    {
+        var price = _promotions.PriceFor(id);
+        if (price is null) return NotFound();
+        return price;
+    }
+
+    // GET /api/products/promotions
+    [HttpGet("promotions")]
+    public IReadOnlyCollection<Promotion> GetPromotions() => _promotions.Active;
+
+    // GET /api/products/by-slug/ultra-tire-42
+    [HttpGet("by-slug/{slug}")]
+    [LoadPriority(LoadPriority.Critical)]
+    public async Task<ActionResult<Product>> GetBySlug(string slug)
+    {
+        if (!_catalog.IsLoaded)
+        {
+            Response.Headers.RetryAfter = "5";
+            return StatusCode(StatusCodes.Status503ServiceUnavailable);
+        }
+
+        if (!_slugs.TryGetProductId(slug, out var id)) return NotFound();
+
+        // The product was renamed since this link was made
+        if (_slugs.SlugFor(id) is { } canonical && !string.Equals(slug, canonical, StringComparison.OrdinalIgnoreCase))
+            return RedirectToActionPermanent(nameof(GetBySlug), new { slug = canonical });
+
+        if (IsNotModified(_catalogVersion.ProductETag(id)))
+            return StatusCode(StatusCodes.Status304NotModified);
+
+        var product = await _entityCache.GetProductAsync(id, HttpContext.RequestAborted);
         if (product is null) return NotFound();
         return product;
     }
+
+    // GET /api/products/search?q=rim&categoryId=3&minPrice=10&maxPrice=100
+    [HttpGet("search")]
+    [LoadPriority(LoadPriority.Bulk)]
+    public async Task<IActionResult> Search(
+        [FromQuery] string? q,
+        [FromQuery] int? categoryId,
+        [FromQuery] decimal? minPrice,
+        [FromQuery] decimal? maxPrice)
+    {
+        var key = $"search_{q?.Trim().ToLowerInvariant()}_{categoryId}_{minPrice}_{maxPrice}";
+        return await WriteCachedAsync(key, $"s{(uint)key.GetHashCode():x8}", () =>
+            _partitions.QueryAsync(categoryId,
+                products => Filter(products, q, categoryId, minPrice, maxPrice),
+                HttpContext.RequestAborted));
+    }
+
+    // GET /api/products/search/autocomplete?q=ultr&limit=8
+    [HttpGet("search/autocomplete")]
+    [LoadPriority(LoadPriority.Normal)]
+    public ActionResult<IReadOnlyList<AutocompleteSuggestion>> Autocomplete(
+        [FromQuery] string? q,
+        [FromQuery] int limit = 8)
+    {
+        if (string.IsNullOrWhiteSpace(q)) return Ok(Array.Empty<AutocompleteSuggestion>());
+        return Ok(_autocomplete.Suggest(q, limit));
+    }
+
+    // GET /api/products/search/facets?q=rim&categoryId=3&minPrice=10&maxPrice=100&tag=Material:Steel&page=2&pageSize=50
+    [HttpGet("search/facets")]
+    [LoadPriority(LoadPriority.Bulk)]
+    public ActionResult<FacetedSearchResult> SearchFacets(
+        [FromQuery] string? q,
+        [FromQuery] int? categoryId,
+        [FromQuery] decimal? minPrice,
+        [FromQuery] decimal? maxPrice,
+        [FromQuery] string[]? tag,
+        [FromQuery] string[]? anyTag,
+        [FromQuery] string[]? notTag,
+        [FromQuery] int page = 1,
+        [FromQuery] int pageSize = DefaultPageSize)
+    {
+        if (!_catalog.IsLoaded)
+        {
+            Response.Headers.RetryAfter = "5";
+            return StatusCode(StatusCodes.Status503ServiceUnavailable);
+        }
+
+        // Only revalidate against the current version once the catalog has caught up with it
+        var tags = new TagQuery(tag ?? [], anyTag ?? [], notTag ?? []);
+        var key = $"{q?.Trim().ToLowerInvariant()}_{categoryId}_{minPrice}_{maxPrice}_{TagKey(tags)}_{page}_{pageSize}";
+        if (_catalog.Version >= _catalogVersion.Current &&
+            IsNotModified(_catalogVersion.ListETag($"f{(uint)key.GetHashCode():x8}")))
+            return StatusCode(StatusCodes.Status304NotModified);
+
+        return _facets.Search(q?.Trim(), categoryId, minPrice, maxPrice, tags, page, pageSize);
+    }
+
+    // GET /api/products/by-tags?tag=Material:Steel&anyTag=Size:15&anyTag=Size:16&notTag=Finish:Chrome&categoryId=3&page=1
+    // (one page of products; the total match count is in X-Total-Count)
+    [HttpGet("by-tags")]
+    [LoadPriority(LoadPriority.Bulk)]
+    public ActionResult<IReadOnlyList<Product>> GetByTags(
+        [FromQuery] string[]? tag,
+        [FromQuery] string[]? anyTag,
+        [FromQuery] string[]? notTag,
+        [FromQuery] string? q,
+        [FromQuery] int? categoryId,
+        [FromQuery] decimal? minPrice,
+        [FromQuery] decimal? maxPrice,
+        [FromQuery] int page = 1,
+        [FromQuery] int pageSize = DefaultPageSize)
+    {
+        var tags = new TagQuery(tag ?? [], anyTag ?? [], notTag ?? []);
+        if (tags.IsEmpty) return BadRequest("At least one of tag, anyTag or notTag is required.");
+
+        if (!_catalog.IsLoaded)
+        {
+            Response.Headers.RetryAfter = "5";
+            return StatusCode(StatusCodes.Status503ServiceUnavailable);
+        }
+
+        var key = $"{q?.Trim().ToLowerInvariant()}_{categoryId}_{minPrice}_{maxPrice}_{TagKey(tags)}_{page}_{pageSize}";
+        if (_catalog.Version >= _catalogVersion.Current &&
+            IsNotModified(_catalogVersion.ListETag($"g{(uint)key.GetHashCode():x8}")))
+            return StatusCode(StatusCodes.Status304NotModified);
+
+        var result = _facets.Search(q?.Trim(), categoryId, minPrice, maxPrice, tags, page, pageSize);
+        Response.Headers["X-Total-Count"] = result.Total.ToString(CultureInfo.InvariantCulture);
+        return Ok(result.Products);
+    }
+
+    // GET /api/products/stats
+    [HttpGet("stats")]
+    [LoadPriority(LoadPriority.Bulk)]
+    public ActionResult<CatalogStats> GetStats()
+    {
+        if (!_catalog.IsLoaded)
+        {
+            Response.Headers.RetryAfter = "5";
+            return StatusCode(StatusCodes.Status503ServiceUnavailable);
+        }
+
+        return _analytics.Current();
+    }
+
+    // GET /api/products/top?sort=PriceAsc&count=10&categoryId=3
+    [HttpGet("top")]
+    [LoadPriority(LoadPriority.Bulk)]
+    public ActionResult<IReadOnlyList<Product>> Top(
+        [FromQuery] ProductSort sort = ProductSort.Newest,
+        [FromQuery] int count = 10,
+        [FromQuery] int? categoryId = null)
+    {
+        if (!_catalog.IsLoaded)
+        {
+            Response.Headers.RetryAfter = "5";
+            return StatusCode(StatusCodes.Status503ServiceUnavailable);
+        }
+
+        if (_catalog.Version >= _catalogVersion.Current &&
+            IsNotModified(_catalogVersion.ListETag($"t{sort}_{count}_{categoryId}")))
+            return StatusCode(StatusCodes.Status304NotModified);
+
+        var products = categoryId is { } c
+            ? _catalog.Views.Where(p => p.CategoryId == c)
+            : _catalog.Views;
+        return Ok(ProductRanking.Top(products, sort, count).Select(p => p.ToProduct()).ToList());
+    }
+
+    private static IQueryable<Product> Filter(
+        IQueryable<Product> query, string? q, int? categoryId, decimal? minPrice, decimal? maxPrice)
+    {
+        if (!string.IsNullOrWhiteSpace(q))
+            query = query.Where(p => p.Title.Contains(q) || p.Description.Contains(q));
+
+        if (categoryId.HasValue)
+            query = query.Where(p => p.CategoryId == categoryId.Value);
+
+        if (minPrice.HasValue)
+            query = query.Where(p => p.SalePrice >= minPrice.Value);
+
+        if (maxPrice.HasValue)
+            query = query.Where(p => p.SalePrice <= maxPrice.Value);
+
+        return query.OrderBy(p => p.ProductId);
+    }
+
+    private static string TagKey(TagQuery tags)
+        => string.Join('|',
+            string.Join(',', tags.All.Order(StringComparer.OrdinalIgnoreCase)),
+            string.Join(',', tags.Any.Order(StringComparer.OrdinalIgnoreCase)),
+            string.Join(',', tags.None.Order(StringComparer.OrdinalIgnoreCase))).ToLowerInvariant();
+
+    private bool AcceptsGzip()
+        => Request.GetTypedHeaders().AcceptEncoding
+            .Any(e => e.Value.Equals("gzip", StringComparison.OrdinalIgnoreCase) && e.Quality != 0);
+
+    /// <summary>Whether application/cbor is the client's most preferred media type.</summary>
+    private bool AcceptsCompact()
+        => Request.GetTypedHeaders().Accept
+            .Where(a => a.Quality != 0)
+            .OrderByDescending(a => a.Quality ?? 1)
+            .FirstOrDefault()?.MediaType
+            .Equals(CompactProductCodec.MediaType, StringComparison.OrdinalIgnoreCase) == true;
+
+    /// <summary>
+    /// Answers a list or search request from IProductResponseCache: 304 when
+    /// the ETag matches, else the cached CBOR bytes for application/cbor
+    /// clients, or the cached JSON (gzipped when accepted).
+    /// </summary>
+    private async Task<IActionResult> WriteCachedAsync(string key, string variant, Func<IAsyncEnumerable<Product>> products)
+    {
+        if (AcceptsCompact())
+        {
+            if (IsNotModified(_catalogVersion.ListETag(variant)))
+                return StatusCode(StatusCodes.Status304NotModified);
+
+            var compact = await _responseCache.GetOrRenderCompactAsync(key, products);
+            Response.ContentType = CompactProductCodec.MediaType;
+            Response.ContentLength = compact.Length;
+            await Response.Body.WriteAsync(compact, HttpContext.RequestAborted);
+            return new EmptyResult();
+        }
+
+        var gzip = AcceptsGzip();
+        if (IsNotModified(_catalogVersion.ListETag(gzip ? variant + "-gz" : variant)))
+            return StatusCode(StatusCodes.Status304NotModified);
+
+        var rendered = await _responseCache.GetOrRenderAsync(key, products);
+        await WriteRenderedAsync(rendered, gzip);
+        return new EmptyResult();
+    }
+
+    private async Task WriteRenderedAsync(RenderedResponse rendered, bool gzip)
+    {
+        var body = gzip && rendered.Gzip is not null ? rendered.Gzip : rendered.Json;
+        if (body == rendered.Gzip)
+            Response.Headers.ContentEncoding = "gzip";
+
+        Response.ContentType = "application/json; charset=utf-8";
+        Response.ContentLength = body.Length;
+        await Response.Body.WriteAsync(body, HttpContext.RequestAborted);
+    }
+
+    /// <summary>
+    /// Stamps the response with the ETag and revalidation headers, and reports
+    /// whether the client's If-None-Match already matches it.
+    /// </summary>
+    private bool IsNotModified(string etag)
+    {
+        // The CBOR and JSON representations must not share a strong ETag
+        if (AcceptsCompact())
+            etag = etag[..^1] + "-cbor\"";
+
+        var tag = new EntityTagHeaderValue(etag);
+        var headers = Response.GetTypedHeaders();
+        headers.ETag = tag;
+        headers.CacheControl = new CacheControlHeaderValue { Public = true, NoCache = true };
+        Response.Headers.Vary = $"{HeaderNames.Accept}, {HeaderNames.AcceptEncoding}";
+
+        var ifNoneMatch = Request.GetTypedHeaders().IfNoneMatch;
+        return ifNoneMatch.Any(t => t.Equals(EntityTagHeaderValue.Any) || t.Compare(tag, useStrongComparison: false));
+    }
 }
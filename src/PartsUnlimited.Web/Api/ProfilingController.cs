@@ -0,0 +1,88 @@
+using Microsoft.AspNetCore.Authorization;
+using Microsoft.AspNetCore.Mvc;
+using PartsUnlimited.Utils;
+
+namespace PartsUnlimited.Api;
+
+/// <summary>
+/// Administrator-only profiling surface. Per-request profiling is switched on
+/// for a bounded window and reports, per route, where time went (SQL,
+/// serialization, handler) with allocated bytes and CPU time; EventPipe traces
+/// give the per-method CPU and allocation picture and are downloaded as
+/// .nettrace files.
+/// Everything here is per pod: behind the load-balanced route each call lands
+/// on any replica, and a trace can only be downloaded from the pod that
+/// recorded it (its id starts with the pod name). To work with one pod,
+/// port-forward to it and call it directly, e.g.
+/// <c>kubectl port-forward pod/&lt;pod&gt; 8080:8080</c> then
+/// <c>http://localhost:8080/api/admin/profiling/...</c>.
+/// </summary>
+[ApiController]
+[Route("api/admin/profiling")]
+[Authorize(Roles = "Administrator")]
+public class ProfilingController : ControllerBase
+{
+    private static readonly TimeSpan MaxWindow = TimeSpan.FromMinutes(30);
+
+    private readonly RequestProfiler _profiler;
+    private readonly TraceRecorder _traces;
+
+    public ProfilingController(RequestProfiler profiler, TraceRecorder traces)
+    {
+        _profiler = profiler;
+        _traces = traces;
+    }
+
+    // GET /api/admin/profiling
+    [HttpGet]
+    public IActionResult Get() => Ok(new
+    {
+        TraceRecorder.Pod,
+        _profiler.EnabledUntil,
+        Operations = _profiler.Summary(),
+        Recent = _profiler.Recent
+    });
+
+    // POST /api/admin/profiling/start?minutes=5&sampleRate=0.1
+    [HttpPost("start")]
+    public IActionResult Start([FromQuery] double minutes = 5, [FromQuery] double sampleRate = 0.1)
+    {
+        var window = TimeSpan.FromMinutes(Math.Clamp(minutes, 0.1, MaxWindow.TotalMinutes));
+        _profiler.Enable(window, sampleRate);
+        return Ok(new { TraceRecorder.Pod, _profiler.EnabledUntil });
+    }
+
+    // POST /api/admin/profiling/stop
+    [HttpPost("stop")]
+    public IActionResult Stop()
+    {
+        _profiler.Disable();
+        return NoContent();
+    }
+
+    // GET /api/admin/profiling/traces
+    [HttpGet("traces")]
+    public IReadOnlyList<TraceInfo> Traces() => _traces.Traces;
+
+    // POST /api/admin/profiling/traces?seconds=30
+    [HttpPost("traces")]
+    public IActionResult StartTrace([FromQuery] int seconds = 30)
+    {
+        var trace = _traces.Start(seconds);
+        if (trace is null) return Conflict("A trace is already being recorded.");
+        return AcceptedAtAction(nameof(DownloadTrace), new { id = trace.Id }, trace);
+    }
+
+    // GET /api/admin/profiling/traces/partsunlimited-7d9f-x2k4q-20261018120000
+    [HttpGet("traces/{id}")]
+    public IActionResult DownloadTrace(string id)
+    {
+        var trace = _traces.Find(id);
+        if (trace is null && !id.StartsWith($"{TraceRecorder.Pod}-", StringComparison.Ordinal))
+            return NotFound($"Trace {id} was not recorded on pod {TraceRecorder.Pod}; port-forward to the pod named in the id.");
+        if (trace is null) return NotFound();
+        if (trace.Status != "completed") return Conflict(trace);
+
+        return PhysicalFile(_traces.PathFor(id), "application/octet-stream", $"partsunlimited-{id}.nettrace");
+    }
+}
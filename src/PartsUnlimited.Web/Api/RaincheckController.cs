@@ -1,6 +1,7 @@
 using Microsoft.AspNetCore.Mvc;
 using Microsoft.EntityFrameworkCore;
 using PartsUnlimited.Models;
+using PartsUnlimited.Utils;
 
 namespace PartsUnlimited.Api;
 
@@ -18,6 +19,7 @@ public async Task<ActionResult<List<Raincheck>>> Get()
         => await _db.RainChecks
             .Include(r => r.Store)
             .Include(r => r.Product)
+            .IgnoreQueryFilters()
             .ToListAsync();
 
     // GET /api/raincheck/5
@@ -27,12 +29,14 @@ public async Task<ActionResult<Raincheck>> Get(int id)
         var r = await _db.RainChecks
             .Include(rc => rc.Store)
             .Include(rc => rc.Product)
+            .IgnoreQueryFilters()
             .SingleOrDefaultAsync(rc => rc.RaincheckId == id);
         return r is null ? NotFound() : r;
     }
 
     // POST /api/raincheck
     [HttpPost]
+    [ServiceFilter(typeof(IdempotencyFilter))]
     public async Task<ActionResult<Raincheck>> Post(Raincheck raincheck)
     {
         _db.RainChecks.Add(raincheck);
@@ -0,0 +1,26 @@
+using Microsoft.AspNetCore.Authorization;
+using Microsoft.AspNetCore.Mvc;
+using PartsUnlimited.Utils;
+
+namespace PartsUnlimited.Api;
+
+/// <summary>
+/// Administrator view of products below their restock threshold, served from
+/// RestockMonitor's ordered stock levels rather than a catalog scan.
+/// </summary>
+[ApiController]
+[Route("api/admin/restock")]
+[Authorize(Roles = "Administrator")]
+public class RestockController : ControllerBase
+{
+    private const int MaxCount = 1000;
+
+    private readonly IRestockMonitor _monitor;
+
+    public RestockController(IRestockMonitor monitor) => _monitor = monitor;
+
+    // GET /api/admin/restock?count=100
+    [HttpGet]
+    public IReadOnlyList<LowStockProduct> Get(int count = 100)
+        => _monitor.BelowThreshold(Math.Clamp(count, 1, MaxCount));
+}
@@ -16,6 +16,7 @@ public async Task<IActionResult> Index()
         var rainchecks = await _db.RainChecks
             .Include(r => r.Store)
             .Include(r => r.Product)
+            .IgnoreQueryFilters()
             .ToListAsync();
         return View(rainchecks);
     }
@@ -46,6 +47,7 @@ public async Task<IActionResult> Details(int id)
         var r = await _db.RainChecks
             .Include(rc => rc.Store)
             .Include(rc => rc.Product)
+            .IgnoreQueryFilters()
             .SingleOrDefaultAsync(rc => rc.RaincheckId == id);
         if (r is null) return NotFound();
         return View(r);
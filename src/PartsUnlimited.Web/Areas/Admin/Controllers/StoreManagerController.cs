@@ -2,26 +2,26 @@
 using Microsoft.AspNetCore.Mvc.Rendering;
 using Microsoft.AspNetCore.SignalR;
 using Microsoft.EntityFrameworkCore;
-using Microsoft.Extensions.Caching.Memory;
 using PartsUnlimited.Hubs;
 using PartsUnlimited.Models;
+using PartsUnlimited.Utils;
 
 namespace PartsUnlimited.Areas.Admin.Controllers;
 
 public class StoreManagerController : AdminController
 {
     private readonly IPartsUnlimitedContext _db;
-    private readonly IMemoryCache _cache;
     private readonly IHubContext<AnnouncementHub> _hub;
+    private readonly IEntityCache _entityCache;
 
     public StoreManagerController(
         IPartsUnlimitedContext db,
-        IMemoryCache cache,
-        IHubContext<AnnouncementHub> hub)
+        IHubContext<AnnouncementHub> hub,
+        IEntityCache entityCache)
     {
         _db = db;
-        _cache = cache;
         _hub = hub;
+        _entityCache = entityCache;
     }
 
     // GET /Admin/StoreManager
@@ -45,13 +45,7 @@ public class StoreManagerController : AdminController
     // GET /Admin/StoreManager/Details/5
     public async Task<IActionResult> Details(int id)
     {
-        var product = await _cache.GetOrCreateAsync($"product_{id}", async entry =>
-        {
-            entry.AbsoluteExpirationRelativeToNow = TimeSpan.FromMinutes(10);
-            return await _db.Products
-                .Include(p => p.Category)
-                .FirstOrDefaultAsync(p => p.ProductId == id);
-        });
+        var product = await _entityCache.GetProductAsync(id);
 
         if (product is null) return NotFound();
         return View(product);
@@ -87,7 +81,6 @@ public async Task<IActionResult> Create(Product product)
                 new { id = product.ProductId, area = string.Empty })
         });
 
-        _cache.Remove("latestProduct");
         return RedirectToAction(nameof(Index));
     }
 
@@ -113,7 +106,6 @@ public async Task<IActionResult> Edit(Product product)
 
         _db.Entry(product).State = EntityState.Modified;
         await _db.SaveChangesAsync();
-        _cache.Remove($"product_{product.ProductId}");
         return RedirectToAction(nameof(Index));
     }
 
@@ -134,9 +126,9 @@ public async Task<IActionResult> DeleteConfirmed(int id)
         var product = await _db.Products.FindAsync(id);
         if (product is not null)
         {
-            _db.Products.Remove(product);
+            // Soft delete; ProductArchiveCompactor moves the row out later
+            product.DeletedAt = DateTime.UtcNow;
             await _db.SaveChangesAsync();
-            _cache.Remove($"product_{id}");
         }
         return RedirectToAction(nameof(Index));
     }
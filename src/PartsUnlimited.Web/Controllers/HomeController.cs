@@ -1,8 +1,7 @@
 using Microsoft.AspNetCore.Authorization;
 using Microsoft.AspNetCore.Mvc;
 using Microsoft.EntityFrameworkCore;
-using Microsoft.Extensions.Caching.Memory;
-using PartsUnlimited.Models;
+using PartsUnlimited.Utils;
 using PartsUnlimited.ViewModels;
 
 namespace PartsUnlimited.Controllers;
@@ -10,44 +9,31 @@ namespace PartsUnlimited.Controllers;
 [AllowAnonymous]
 public class HomeController : Controller
 {
-    private readonly IPartsUnlimitedContext _db;
-    private readonly IMemoryCache _cache;
+    private readonly IEntityCache _entityCache;
 
-    public HomeController(IPartsUnlimitedContext db, IMemoryCache cache)
-    {
-        _db = db;
-        _cache = cache;
-    }
+    public HomeController(IEntityCache entityCache) => _entityCache = entityCache;
 
     public async Task<IActionResult> Index()
     {
-        var topSelling = await _cache.GetOrCreateAsync("topselling", async entry =>
-        {
-            entry.AbsoluteExpirationRelativeToNow = TimeSpan.FromMinutes(10);
-            return await _db.Products
-                .Include(p => p.Category)
-                .OrderByDescending(p => p.OrderDetails.Count)
-                .Take(4)
-                .ToListAsync();
-        });
-
-        var newArrivals = await _cache.GetOrCreateAsync("newarrivals", async entry =>
-        {
-            entry.AbsoluteExpirationRelativeToNow = TimeSpan.FromMinutes(10);
-            return await _db.Products
-                .Include(p => p.Category)
-                .OrderByDescending(p => p.Created)
-                .Take(4)
-                .ToListAsync();
-        });
+        var topSelling = await _entityCache.GetOrQueryAsync("topselling", db => db.Products
+            .Include(p => p.Category)
+            .OrderByDescending(p => p.OrderDetails.Count)
+            .Take(4)
+            .ToListAsync());
+
+        var newArrivals = await _entityCache.GetOrQueryAsync("newarrivals", db => db.Products
+            .Include(p => p.Category)
+            .OrderByDescending(p => p.Created)
+            .Take(4)
+            .ToListAsync());
 
-        var categories = await _db.Categories.ToListAsync();
+        var categories = await _entityCache.GetCategoriesAsync();
 
         var vm = new HomeViewModel
         {
-            TopSellingProducts = topSelling ?? [],
-            NewProducts = newArrivals ?? [],
-            Categories = categories
+            TopSellingProducts = topSelling,
+            NewProducts = newArrivals,
+            Categories = categories.ToList()
         };
 
         return View(vm);
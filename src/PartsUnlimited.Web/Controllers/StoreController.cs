@@ -1,9 +1,9 @@
 using Microsoft.AspNetCore.Authorization;
 using Microsoft.AspNetCore.Mvc;
 using Microsoft.EntityFrameworkCore;
-using Microsoft.Extensions.Caching.Memory;
 using PartsUnlimited.Models;
 using PartsUnlimited.Recommendations;
+using PartsUnlimited.Utils;
 using PartsUnlimited.ViewModels;
 
 namespace PartsUnlimited.Controllers;
@@ -12,18 +12,18 @@ namespace PartsUnlimited.Controllers;
 public class StoreController : Controller
 {
     private readonly IPartsUnlimitedContext _db;
-    private readonly IMemoryCache _cache;
+    private readonly IEntityCache _entityCache;
     private readonly IRecommendationEngine _recommendations;
     private readonly IConfiguration _config;
 
     public StoreController(
         IPartsUnlimitedContext db,
-        IMemoryCache cache,
+        IEntityCache entityCache,
         IRecommendationEngine recommendations,
         IConfiguration config)
     {
         _db = db;
-        _cache = cache;
+        _entityCache = entityCache;
         _recommendations = recommendations;
         _config = config;
     }
@@ -31,7 +31,7 @@ public class StoreController : Controller
     // GET /Store
     public async Task<IActionResult> Index()
     {
-        var categories = await _db.Categories.ToListAsync();
+        var categories = await _entityCache.GetCategoriesAsync();
         return View(categories);
     }
 
@@ -56,13 +56,7 @@ public async Task<IActionResult> Browse(int categoryId)
     // GET /Store/Details/5
     public async Task<IActionResult> Details(int id)
     {
-        var product = await _cache.GetOrCreateAsync($"product_{id}", async entry =>
-        {
-            entry.SlidingExpiration = TimeSpan.FromMinutes(10);
-            return await _db.Products
-                .Include(p => p.Category)
-                .SingleOrDefaultAsync(p => p.ProductId == id);
-        });
+        var product = await _entityCache.GetProductAsync(id);
 
         if (product is null) return NotFound();
 
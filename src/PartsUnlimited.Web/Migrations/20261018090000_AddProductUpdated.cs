@@ -0,0 +1,41 @@
+﻿using System;
+using Microsoft.EntityFrameworkCore.Migrations;
+
+#nullable disable
+
+namespace PartsUnlimited.Migrations
+{
+    /// <inheritdoc />
+    public partial class AddProductUpdated : Migration
+    {
+        /// <inheritdoc />
+        protected override void Up(MigrationBuilder migrationBuilder)
+        {
+            migrationBuilder.AddColumn<DateTime>(
+                name: "Updated",
+                table: "Products",
+                type: "datetime2",
+                nullable: false,
+                defaultValue: new DateTime(1, 1, 1, 0, 0, 0, 0, DateTimeKind.Unspecified));
+
+            migrationBuilder.Sql("UPDATE Products SET Updated = Created");
+
+            migrationBuilder.CreateIndex(
+                name: "IX_Products_Updated",
+                table: "Products",
+                column: "Updated");
+        }
+
+        /// <inheritdoc />
+        protected override void Down(MigrationBuilder migrationBuilder)
+        {
+            migrationBuilder.DropIndex(
+                name: "IX_Products_Updated",
+                table: "Products");
+
+            migrationBuilder.DropColumn(
+                name: "Updated",
+                table: "Products");
+        }
+    }
+}
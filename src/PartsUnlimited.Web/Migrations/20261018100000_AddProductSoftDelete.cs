@@ -0,0 +1,88 @@
+﻿using System;
+using Microsoft.EntityFrameworkCore.Migrations;
+
+#nullable disable
+
+namespace PartsUnlimited.Migrations
+{
+    /// <inheritdoc />
+    public partial class AddProductSoftDelete : Migration
+    {
+        /// <inheritdoc />
+        protected override void Up(MigrationBuilder migrationBuilder)
+        {
+            migrationBuilder.AddColumn<DateTime>(
+                name: "DeletedAt",
+                table: "Products",
+                type: "datetime2",
+                nullable: true);
+
+            migrationBuilder.DropIndex(
+                name: "IX_Products_Updated",
+                table: "Products");
+
+            migrationBuilder.CreateIndex(
+                name: "IX_Products_Updated",
+                table: "Products",
+                column: "Updated",
+                filter: "[DeletedAt] IS NULL");
+
+            migrationBuilder.CreateIndex(
+                name: "IX_Products_DeletedAt",
+                table: "Products",
+                column: "DeletedAt",
+                filter: "[DeletedAt] IS NOT NULL");
+
+            // Not part of the EF model: written only by ProductArchiveCompactor
+            migrationBuilder.CreateTable(
+                name: "ArchivedProducts",
+                columns: table => new
+                {
+                    ProductId = table.Column<int>(type: "int", nullable: false),
+                    Title = table.Column<string>(type: "nvarchar(160)", maxLength: 160, nullable: false),
+                    Price = table.Column<decimal>(type: "decimal(18,2)", nullable: false),
+                    SalePrice = table.Column<decimal>(type: "decimal(18,2)", nullable: false),
+                    ProductArtUrl = table.Column<string>(type: "nvarchar(1024)", maxLength: 1024, nullable: false),
+                    Description = table.Column<string>(type: "nvarchar(max)", nullable: false),
+                    CategoryId = table.Column<int>(type: "int", nullable: false),
+                    SkuNumber = table.Column<string>(type: "nvarchar(10)", maxLength: 10, nullable: false),
+                    RecommendationId = table.Column<int>(type: "int", nullable: false),
+                    Created = table.Column<DateTime>(type: "datetime2", nullable: false),
+                    Updated = table.Column<DateTime>(type: "datetime2", nullable: false),
+                    DeletedAt = table.Column<DateTime>(type: "datetime2", nullable: false),
+                    ProductDetails = table.Column<string>(type: "nvarchar(max)", nullable: false),
+                    Inventory = table.Column<int>(type: "int", nullable: false),
+                    LeadTime = table.Column<int>(type: "int", nullable: false),
+                    ArchivedAt = table.Column<DateTime>(type: "datetime2", nullable: false, defaultValueSql: "SYSUTCDATETIME()")
+                },
+                constraints: table =>
+                {
+                    table.PrimaryKey("PK_ArchivedProducts", x => x.ProductId);
+                });
+        }
+
+        /// <inheritdoc />
+        protected override void Down(MigrationBuilder migrationBuilder)
+        {
+            migrationBuilder.DropTable(
+                name: "ArchivedProducts");
+
+            migrationBuilder.DropIndex(
+                name: "IX_Products_DeletedAt",
+                table: "Products");
+
+            migrationBuilder.DropIndex(
+                name: "IX_Products_Updated",
+                table: "Products");
+
+            migrationBuilder.CreateIndex(
+                name: "IX_Products_Updated",
+                table: "Products",
+                column: "Updated");
+
+            migrationBuilder.DropColumn(
+                name: "DeletedAt",
+                table: "Products");
+        }
+    }
+}
@@ -0,0 +1,37 @@
+﻿using Microsoft.EntityFrameworkCore.Migrations;
+
+#nullable disable
+
+namespace PartsUnlimited.Migrations
+{
+    /// <inheritdoc />
+    public partial class IndexDeletedProductUpdates : Migration
+    {
+        /// <inheritdoc />
+        protected override void Up(MigrationBuilder migrationBuilder)
+        {
+            migrationBuilder.DropIndex(
+                name: "IX_Products_Updated",
+                table: "Products");
+
+            migrationBuilder.CreateIndex(
+                name: "IX_Products_Updated",
+                table: "Products",
+                column: "Updated");
+        }
+
+        /// <inheritdoc />
+        protected override void Down(MigrationBuilder migrationBuilder)
+        {
+            migrationBuilder.DropIndex(
+                name: "IX_Products_Updated",
+                table: "Products");
+
+            migrationBuilder.CreateIndex(
+                name: "IX_Products_Updated",
+                table: "Products",
+                column: "Updated",
+                filter: "[DeletedAt] IS NULL");
+        }
+    }
+}
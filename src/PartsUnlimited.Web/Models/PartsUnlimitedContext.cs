@@ -24,6 +24,33 @@ public PartsUnlimitedContext(DbContextOptions<PartsUnlimitedContext> options)
 
     public new EntityEntry Entry(object entity) => base.Entry(entity);
 
+    public override int SaveChanges(bool acceptAllChangesOnSuccess)
+    {
+        StampProductUpdates();
+        return base.SaveChanges(acceptAllChangesOnSuccess);
+    }
+
+    public override Task<int> SaveChangesAsync(
+        bool acceptAllChangesOnSuccess, CancellationToken cancellationToken = default)
+    {
+        StampProductUpdates();
+        return base.SaveChangesAsync(acceptAllChangesOnSuccess, cancellationToken);
+    }
+
+    /// <summary>
+    /// Keeps Product.Updated current so readers can pull changes newer than a
+    /// watermark (see CatalogSnapshotService) without a full table scan.
+    /// </summary>
+    private void StampProductUpdates()
+    {
+        var now = DateTime.UtcNow;
+        foreach (var entry in ChangeTracker.Entries<Product>())
+        {
+            if (entry.State is EntityState.Added or EntityState.Modified)
+                entry.Entity.Updated = now;
+        }
+    }
+
     protected override void OnModelCreating(ModelBuilder modelBuilder)
     {
         modelBuilder.Entity<Product>().HasKey(p => p.ProductId);
@@ -41,6 +68,15 @@ protected override void OnModelCreating(ModelBuilder modelBuilder)
         modelBuilder.Entity<Order>().Property(o => o.Total).HasColumnType("decimal(18,2)");
         modelBuilder.Entity<OrderDetail>().Property(od => od.UnitPrice).HasColumnType("decimal(18,2)");
 
+        // Soft delete: every query sees live products only (history views opt out
+        // with IgnoreQueryFilters), and the hot-path indexes cover live rows only.
+        // The Updated index covers deleted rows too: the catalog delta sync reads
+        // soft deletes through it.
+        modelBuilder.Entity<Product>().HasQueryFilter(p => p.DeletedAt == null);
+        modelBuilder.Entity<Product>().HasIndex(p => p.Updated);
+        modelBuilder.Entity<Product>().HasIndex(p => p.CategoryId).HasFilter("[DeletedAt] IS NULL");
+        modelBuilder.Entity<Product>().HasIndex(p => p.DeletedAt).HasFilter("[DeletedAt] IS NOT NULL");
+
         modelBuilder.Entity<Product>()
             .HasOne(p => p.Category)
             .WithMany(c => c.Products)
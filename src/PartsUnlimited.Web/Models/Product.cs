@@ -39,6 +39,17 @@ public class Product
     [Required]
     public DateTime Created { get; set; }
 
+    /// <summary>Last write time (UTC), stamped by PartsUnlimitedContext.SaveChanges.</summary>
+    [ScaffoldColumn(false)]
+    public DateTime Updated { get; set; }
+
+    /// <summary>
+    /// Soft-delete time (UTC). Deleted products are hidden by the context's
+    /// query filter and later moved to ArchivedProducts by ProductArchiveCompactor.
+    /// </summary>
+    [ScaffoldColumn(false)]
+    public DateTime? DeletedAt { get; set; }
+
     [Required]
     [Display(Name = "Product Details")]
     public string ProductDetails { get; set; } = string.Empty;
@@ -47,6 +58,9 @@ public class Product
 
     public int LeadTime { get; set; }
 
+    /// <summary>Member-wise copy, for callers that must not mutate a shared instance.</summary>
+    public Product ShallowCopy() => (Product)MemberwiseClone();
+
     [NotMapped]
     public Dictionary<string, string> ProductDetailList
     {
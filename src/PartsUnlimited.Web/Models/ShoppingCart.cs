@@ -96,27 +96,31 @@ public async Task<int> RemoveFromCart(int id)
 
     public async Task EmptyCart()
     {
-        var items = _db.CartItems.Where(c => c.CartId == _cartId);
-        _db.CartItems.RemoveRange(items);
+        // Every line, including those for products deleted since they were added
+        _db.CartItems.RemoveRange(_db.CartItems.Where(c => c.CartId == _cartId));
         await _db.SaveChangesAsync();
     }
 
     // ── Queries ───────────────────────────────────────────────────────────────
 
+    /// <summary>
+    /// This cart's lines for live products. Lines whose product was soft-deleted
+    /// stay in the table but are never counted, totalled, ordered or emptied.
+    /// </summary>
+    private IQueryable<CartItem> Items()
+        => _db.CartItems.Where(c => c.CartId == _cartId && c.Product!.DeletedAt == null);
+
     public async Task<List<CartItem>> GetCartItems()
-        => await _db.CartItems
+        => await Items()
                     .Include(c => c.Product)
-                    .Where(c => c.CartId == _cartId)
                     .ToListAsync();
 
     public async Task<int> GetCount()
-        => await _db.CartItems
-                    .Where(c => c.CartId == _cartId)
+        => await Items()
                     .SumAsync(c => (int?)c.Count) ?? 0;
 
     public async Task<decimal> GetTotal()
-        => await _db.CartItems
-                    .Where(c => c.CartId == _cartId)
+        => await Items()
                     .SumAsync(c => (decimal?)c.Count * c.UnitPrice) ?? 0m;
 
     // ── Check-out ─────────────────────────────────────────────────────────────
@@ -131,8 +135,7 @@ public async Task<int> CreateOrder(Order order)
 
         foreach (var item in cartItems)
         {
-            var product = await _db.Products.SingleAsync(p => p.ProductId == item.ProductId);
-            var unitPrice = product.Price;
+            var unitPrice = item.Product!.Price;
 
             var orderDetail = new OrderDetail
             {
@@ -4,6 +4,7 @@
 using Microsoft.AspNetCore.Authentication.Cookies;
 using Microsoft.AspNetCore.Authentication.OpenIdConnect;
 using Microsoft.AspNetCore.DataProtection;
+using Microsoft.AspNetCore.Diagnostics.HealthChecks;
 using Microsoft.AspNetCore.HttpOverrides;
 using Microsoft.EntityFrameworkCore;
 using Microsoft.Identity.Web;
@@ -43,6 +44,7 @@
 // ---------------------------------------------------------------------------
 // Register LayoutDataFilter for global MVC filter (populates ViewBag.Categories etc.)
 builder.Services.AddScoped<LayoutDataFilter>();
+builder.Services.AddSingleton<ProfilingResultFilter>();
 
 var azureAdClientId = builder.Configuration["AzureAd:ClientId"];
 var isEntraIdConfigured = !string.IsNullOrWhiteSpace(azureAdClientId)
@@ -55,7 +57,11 @@
         .AddMicrosoftIdentityWebApp(builder.Configuration.GetSection("AzureAd"));
 
     builder.Services
-        .AddControllersWithViews(options => options.Filters.AddService<LayoutDataFilter>())
+        .AddControllersWithViews(options =>
+        {
+            options.Filters.AddService<LayoutDataFilter>();
+            options.Filters.AddService<ProfilingResultFilter>();
+        })
         .AddMicrosoftIdentityUI();
 }
 else
@@ -70,7 +76,11 @@
             options.AccessDeniedPath = "/Account/AccessDenied";
         });
 
-    builder.Services.AddControllersWithViews(options => options.Filters.AddService<LayoutDataFilter>());
+    builder.Services.AddControllersWithViews(options =>
+    {
+        options.Filters.AddService<LayoutDataFilter>();
+        options.Filters.AddService<ProfilingResultFilter>();
+    });
 }
 builder.Services.AddAuthorization(options =>
 {
@@ -86,23 +96,61 @@
 // ---------------------------------------------------------------------------
 // Database — EF Core 8 with Azure SQL (Managed Identity in production)
 // ---------------------------------------------------------------------------
-builder.Services.AddDbContext<PartsUnlimitedContext>(options =>
+// ConnectionProfiler reports connection wait/hold/SQL time on every context
+builder.Services.AddSingleton<ConnectionProfiler>();
+builder.Services.AddDbContext<PartsUnlimitedContext>((sp, options) =>
     options.UseSqlServer(
         builder.Configuration.GetConnectionString("DefaultConnectionString"),
-        sqlOptions => sqlOptions.EnableRetryOnFailure()));
+        sqlOptions => sqlOptions.EnableRetryOnFailure())
+    .AddInterceptors(
+        sp.GetRequiredService<ConnectionProfiler>(),
+        sp.GetRequiredService<ProductChangeInterceptor>()));
 
 builder.Services.AddScoped<IPartsUnlimitedContext>(sp =>
     sp.GetRequiredService<PartsUnlimitedContext>());
 
+// Read-only product queries: replica routing and category partitions
+// (with no partitions configured, the single partition reads via the replica router)
+builder.Services.AddSingleton<ReadReplicaRouter>();
+builder.Services.AddSingleton<IReadReplicaRouter>(sp => sp.GetRequiredService<ReadReplicaRouter>());
+builder.Services.AddHostedService(sp => sp.GetRequiredService<ReadReplicaRouter>());
+builder.Services.AddSingleton<IProductPartitions, ProductPartitions>();
+
+// Product writes land in the default database and are routed to their category
+// partition from the product change events (plus a one-off backfill of empty partitions)
+builder.Services.AddSingleton<ProductPartitionSync>();
+builder.Services.AddSingleton<IProductChangeHandler>(sp => sp.GetRequiredService<ProductPartitionSync>());
+builder.Services.AddHostedService(sp => sp.GetRequiredService<ProductPartitionSync>());
+
+// Products are soft-deleted; long-deleted rows are moved to ArchivedProducts in batches
+builder.Services.AddHostedService<ProductArchiveCompactor>();
+
 // ---------------------------------------------------------------------------
 // Application services (replaces Unity IoC)
 // ---------------------------------------------------------------------------
 builder.Services.AddScoped<IProductSearch, StringContainsProductSearch>();
+builder.Services.AddSingleton<AdaptiveConcurrencyLimiter>();
+builder.Services.AddSingleton<AdaptiveConcurrencyFilter>();
+// application/cbor is offered on the product API only, not app-wide
+builder.Services.AddSingleton<CompactProductFormatFilter>();
 builder.Services.AddScoped<IShippingTaxCalculator, DefaultShippingTaxCalculator>();
 builder.Services.AddScoped<ITelemetryProvider, TelemetryProvider>();
 builder.Services.AddScoped<IOrdersQuery, OrdersQuery>();
 builder.Services.AddScoped<IRaincheckQuery, RaincheckQuery>();
 
+// Idempotency-Key replay for write APIs: in-memory, plus Redis when configured
+builder.Services.AddSingleton<MemoryIdempotencyStore>();
+var idempotencyRedis = builder.Configuration["Idempotency:RedisConnection"];
+if (!string.IsNullOrEmpty(idempotencyRedis))
+{
+    builder.Services.AddSingleton<IIdempotencyStore, TieredIdempotencyStore>();
+}
+else
+{
+    builder.Services.AddSingleton<IIdempotencyStore>(sp => sp.GetRequiredService<MemoryIdempotencyStore>());
+}
+builder.Services.AddSingleton<IdempotencyFilter>();
+
 // Choose recommendation engine based on config
 if (!string.IsNullOrEmpty(builder.Configuration["MachineLearning:AccountKey"]))
     builder.Services.AddScoped<IRecommendationEngine,
@@ -117,6 +165,39 @@
 // Caching
 // ---------------------------------------------------------------------------
 builder.Services.AddMemoryCache();
+builder.Services.AddSingleton<ICatalogVersion, CatalogVersion>();
+builder.Services.AddSingleton<IProductResponseCache, ProductResponseCache>();
+builder.Services.AddSingleton<IEntityCache, EntityCache>();
+
+// Product change events (local commits, other pods, catalog syncs) drive cache invalidation
+builder.Services.AddSingleton<ProductEventBus>();
+builder.Services.AddSingleton<IProductEventBus>(sp => sp.GetRequiredService<ProductEventBus>());
+builder.Services.AddHostedService(sp => sp.GetRequiredService<ProductEventBus>());
+builder.Services.AddSingleton<IProductChangeHandler, CacheInvalidationHandler>();
+builder.Services.AddSingleton<ProductChangeInterceptor>();
+if (!string.IsNullOrEmpty(builder.Configuration["ProductEvents:RedisConnection"]))
+    builder.Services.AddSingleton<IProductEventTransport, RedisProductEventTransport>();
+
+// ---------------------------------------------------------------------------
+// Startup warmup & health probes
+// The in-memory catalog is restored from its local snapshot plus a database
+// delta; /health/ready (Helm readinessProbe) stays unhealthy until
+// CatalogWarmup has pre-loaded the product cache and rendered the product lists.
+// ---------------------------------------------------------------------------
+builder.Services.AddSingleton<IProductCatalog, ProductCatalog>();
+builder.Services.AddSingleton<IProductFacetIndex, ProductFacetIndex>();
+builder.Services.AddSingleton<IProductAutocomplete, ProductAutocomplete>();
+builder.Services.AddSingleton<IProductSlugIndex, ProductSlugIndex>();
+builder.Services.Configure<PromotionOptions>(builder.Configuration.GetSection("Promotions"));
+builder.Services.AddSingleton<IPromotionEngine, PromotionEngine>();
+builder.Services.AddSingleton<IRestockMonitor, RestockMonitor>();
+builder.Services.AddSingleton<ICatalogAnalytics, CatalogAnalytics>();
+builder.Services.AddHostedService<RestockNotifier>();
+builder.Services.AddHostedService<CatalogSnapshotService>();
+builder.Services.AddSingleton<CatalogWarmup>();
+builder.Services.AddHostedService(sp => sp.GetRequiredService<CatalogWarmup>());
+builder.Services.AddHealthChecks()
+    .AddCheck<CatalogWarmupHealthCheck>("catalog-warmup", tags: ["ready"]);
 
 // AddRazorPages provides the /MicrosoftIdentity/Account/* pages
 // (or is a no-op in the dev-cookie-fallback path where those pages aren't needed)
@@ -136,6 +217,10 @@
 // Http context accessor for ShoppingCart cookie access
 builder.Services.AddHttpContextAccessor();
 
+// On-demand request profiling and EventPipe traces (api/admin/profiling)
+builder.Services.AddSingleton<RequestProfiler>();
+builder.Services.AddSingleton<TraceRecorder>();
+
 // ---------------------------------------------------------------------------
 // Data Protection — shared key ring so all pods can decrypt OIDC state cookies
 // Requires: Azure Blob Storage (persist keys) + Key Vault RSA key (wrap keys)
@@ -193,10 +278,22 @@
 app.UseStaticFiles();
 app.UseRouting();
 
+// No-op unless an administrator has switched profiling on
+var requestProfiler = app.Services.GetRequiredService<RequestProfiler>();
+app.Use((context, next) => requestProfiler.ProfileAsync(context, next));
+
 // Authentication & authorisation MUST come after UseRouting
 app.UseAuthentication();
 app.UseAuthorization();
 
+// Health probes: liveness never depends on warmup, readiness does
+app.MapHealthChecks("/health", new HealthCheckOptions { Predicate = _ => false }).AllowAnonymous();
+app.MapHealthChecks("/health/live", new HealthCheckOptions { Predicate = _ => false }).AllowAnonymous();
+app.MapHealthChecks("/health/ready", new HealthCheckOptions
+{
+    Predicate = check => check.Tags.Contains("ready")
+}).AllowAnonymous();
+
 // SignalR hub
 app.MapHub<AnnouncementHub>("/hubs/announcement");
 
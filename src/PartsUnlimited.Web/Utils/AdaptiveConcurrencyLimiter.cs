@@ -0,0 +1,180 @@
+using System.Diagnostics;
+using System.Diagnostics.Metrics;
+using Microsoft.AspNetCore.Mvc;
+using Microsoft.AspNetCore.Mvc.Filters;
+
+namespace PartsUnlimited.Utils;
+
+public enum LoadPriority
+{
+    /// <summary>Single-item reads the storefront cannot render without.</summary>
+    Critical,
+    Normal,
+    /// <summary>Search and multi-filter queries; shed first.</summary>
+    Bulk
+}
+
+[AttributeUsage(AttributeTargets.Class | AttributeTargets.Method)]
+public sealed class LoadPriorityAttribute(LoadPriority priority) : Attribute
+{
+    public LoadPriority Priority { get; } = priority;
+}
+
+/// <summary>
+/// Concurrency limit that adapts to measured latency (AIMD): while a request's
+/// handler latency stays within "ConcurrencyLimit:LatencyTolerance" times the
+/// long-run average of its own action, the limit grows by about one per
+/// limit's worth of completions; once it exceeds that, the limit is cut by
+/// 10%, at most once per "ConcurrencyLimit:DecreaseIntervalMs" so a burst of
+/// slow completions from one overload episode counts as one signal. Keeping a
+/// baseline per action means a slow-by-nature search is not compared with a
+/// single-product read. Only samples within tolerance feed the baseline, so a
+/// sustained overload cannot raise it until the slow responses look normal.
+/// Lower priorities are admitted only up to a fraction of
+/// the limit, so under overload bulk queries are turned away first and
+/// single-product reads last.
+/// Limit, in-flight count and rejections are published on the
+/// "PartsUnlimited.Concurrency" meter.
+/// </summary>
+public class AdaptiveConcurrencyLimiter
+{
+    public const string MeterName = "PartsUnlimited.Concurrency";
+
+    private const double LatencySmoothing = 0.01;
+    private const double DecreaseFactor = 0.9;
+
+    private readonly object _sync = new();
+    private readonly double _minLimit;
+    private readonly double _maxLimit;
+    private readonly double _tolerance;
+    private readonly TimeSpan _decreaseInterval;
+    private readonly Dictionary<string, double> _averageLatencyMs = new();
+    private readonly Counter<long> _rejected;
+    private double _limit;
+    private long _lastDecrease;
+    private int _inFlight;
+
+    public AdaptiveConcurrencyLimiter(IConfiguration config, IMeterFactory meterFactory)
+    {
+        _minLimit = config.GetValue("ConcurrencyLimit:MinLimit", 4);
+        _maxLimit = config.GetValue("ConcurrencyLimit:MaxLimit", 200);
+        _tolerance = config.GetValue("ConcurrencyLimit:LatencyTolerance", 2.0);
+        _decreaseInterval = TimeSpan.FromMilliseconds(config.GetValue("ConcurrencyLimit:DecreaseIntervalMs", 1000));
+        _limit = Math.Clamp(config.GetValue("ConcurrencyLimit:InitialLimit", 20), _minLimit, _maxLimit);
+
+        var meter = meterFactory.Create(MeterName);
+        meter.CreateObservableGauge("concurrency.limit", () => Limit, description: "Current adaptive concurrency limit");
+        meter.CreateObservableGauge("concurrency.in_flight", () => Volatile.Read(ref _inFlight), description: "Requests currently admitted");
+        _rejected = meter.CreateCounter<long>("concurrency.rejected", description: "Requests shed by priority");
+    }
+
+    public int Limit => (int)Volatile.Read(ref _limit);
+
+    public bool TryAcquire(LoadPriority priority)
+    {
+        var allowed = Math.Max(1, (int)(Volatile.Read(ref _limit) * Share(priority)));
+        if (Interlocked.Increment(ref _inFlight) <= allowed) return true;
+
+        Interlocked.Decrement(ref _inFlight);
+        _rejected.Add(1, new KeyValuePair<string, object?>("priority", priority.ToString()));
+        return false;
+    }
+
+    /// <summary>Frees the slot taken by a successful TryAcquire.</summary>
+    public void Release() => Interlocked.Decrement(ref _inFlight);
+
+    /// <summary>
+    /// Feeds the time an admitted request took to run its handler, measured
+    /// against the baseline of the same action (<paramref name="action"/>).
+    /// </summary>
+    public void OnLatency(string action, TimeSpan latency)
+    {
+        var inFlight = Volatile.Read(ref _inFlight);
+        var sample = latency.TotalMilliseconds;
+
+        lock (_sync)
+        {
+            if (!_averageLatencyMs.TryGetValue(action, out var average))
+            {
+                _averageLatencyMs[action] = sample;
+                return;
+            }
+
+            if (sample > average * _tolerance)
+            {
+                if (Stopwatch.GetElapsedTime(_lastDecrease) >= _decreaseInterval)
+                {
+                    _limit = Math.Max(_minLimit, _limit * DecreaseFactor);
+                    _lastDecrease = Stopwatch.GetTimestamp();
+                }
+
+                return;
+            }
+
+            if (inFlight >= _limit / 2)
+            {
+                // Only grow while the limit is actually being used
+                _limit = Math.Min(_maxLimit, _limit + 1 / _limit);
+            }
+
+            _averageLatencyMs[action] = average + (sample - average) * LatencySmoothing;
+        }
+    }
+
+    private static double Share(LoadPriority priority) => priority switch
+    {
+        LoadPriority.Critical => 1.0,
+        LoadPriority.Normal => 0.85,
+        _ => 0.6
+    };
+}
+
+/// <summary>
+/// Applies AdaptiveConcurrencyLimiter before model binding; rejected requests
+/// get 503 with Retry-After. The priority comes from [LoadPriority] on the
+/// action or controller (Normal if absent). The slot is held until the
+/// response is written, but the latency fed back is measured only up to the
+/// end of the action, so a client slow to read a large body does not look
+/// like server overload. Requests that never reach the action (e.g. an
+/// idempotent replay) free their slot without a latency sample.
+/// </summary>
+public class AdaptiveConcurrencyFilter : IAsyncResourceFilter, IAsyncActionFilter
+{
+    private static readonly object AdmittedAt = new();
+
+    private readonly AdaptiveConcurrencyLimiter _limiter;
+
+    public AdaptiveConcurrencyFilter(AdaptiveConcurrencyLimiter limiter) => _limiter = limiter;
+
+    public async Task OnResourceExecutionAsync(ResourceExecutingContext context, ResourceExecutionDelegate next)
+    {
+        var priority = context.ActionDescriptor.EndpointMetadata
+            .OfType<LoadPriorityAttribute>()
+            .LastOrDefault()?.Priority ?? LoadPriority.Normal;
+
+        if (!_limiter.TryAcquire(priority))
+        {
+            context.HttpContext.Response.Headers.RetryAfter = "1";
+            context.Result = new StatusCodeResult(StatusCodes.Status503ServiceUnavailable);
+            return;
+        }
+
+        context.HttpContext.Items[AdmittedAt] = Stopwatch.GetTimestamp();
+        try
+        {
+            await next();
+        }
+        finally
+        {
+            _limiter.Release();
+        }
+    }
+
+    public async Task OnActionExecutionAsync(ActionExecutingContext context, ActionExecutionDelegate next)
+    {
+        await next();
+
+        if (context.HttpContext.Items[AdmittedAt] is long admitted)
+            _limiter.OnLatency(context.ActionDescriptor.Id, Stopwatch.GetElapsedTime(admitted));
+    }
+}
@@ -0,0 +1,220 @@
+using System.Collections.Concurrent;
+
+namespace PartsUnlimited.Utils;
+
+public sealed record CategoryStats(
+    int CategoryId,
+    int Products,
+    decimal AveragePrice,
+    decimal MinPrice,
+    decimal MaxPrice,
+    long Units,
+    decimal StockValue,
+    int OutOfStock);
+
+public sealed record DistributionBucket(decimal Min, decimal? Max, int Count);
+
+public sealed record CatalogStats(
+    DateTime ComputedAt,
+    int Generation,
+    int Products,
+    decimal StockValue,
+    IReadOnlyList<CategoryStats> Categories,
+    IReadOnlyList<DistributionBucket> PriceDistribution,
+    IReadOnlyList<DistributionBucket> InventoryDistribution);
+
+public interface ICatalogAnalytics
+{
+    /// <summary>Catalog aggregates no older than the configured staleness bound (plus one recompute).</summary>
+    CatalogStats Current();
+}
+
+/// <summary>
+/// Merchandising aggregates (per-category average/min/max sale price, units
+/// and stock value = SalePrice × Inventory, plus price and inventory
+/// distributions) computed from the in-memory catalog instead of ad-hoc SQL on
+/// the primary. The catalog is split into ranges aggregated in parallel, each
+/// into its own integer accumulators (prices in cents), merged once per range.
+/// Results are reused while the catalog generation is unchanged, and
+/// otherwise for up to "Analytics:MaxStalenessSeconds"; after that the next
+/// caller triggers one background recompute and is served the previous
+/// result meanwhile.
+/// </summary>
+public class CatalogAnalytics : ICatalogAnalytics
+{
+    private static readonly decimal[] PriceBounds = [25m, 50m, 100m, 200m];
+    private static readonly decimal[] InventoryBounds = [1m, 6m, 21m, 101m];
+    private const int MinRangeSize = 4096;
+
+    private sealed class Accumulator
+    {
+        public int Count;
+        public long PriceCents;
+        public long MinCents = long.MaxValue;
+        public long MaxCents = long.MinValue;
+        public long Units;
+        public long StockValueCents;
+        public int OutOfStock;
+
+        public void Merge(Accumulator other)
+        {
+            Count += other.Count;
+            PriceCents += other.PriceCents;
+            MinCents = Math.Min(MinCents, other.MinCents);
+            MaxCents = Math.Max(MaxCents, other.MaxCents);
+            Units += other.Units;
+            StockValueCents += other.StockValueCents;
+            OutOfStock += other.OutOfStock;
+        }
+    }
+
+    private sealed class RangeTotals
+    {
+        public readonly Dictionary<int, Accumulator> Categories = new();
+        public readonly int[] PriceBuckets = new int[PriceBounds.Length + 1];
+        public readonly int[] InventoryBuckets = new int[InventoryBounds.Length + 1];
+    }
+
+    private readonly IProductCatalog _catalog;
+    private readonly ILogger<CatalogAnalytics> _logger;
+    private readonly TimeSpan _maxStaleness;
+    private readonly object _computeLock = new();
+    private volatile CatalogStats? _stats;
+    private int _refreshing;
+
+    public CatalogAnalytics(IProductCatalog catalog, IConfiguration config, ILogger<CatalogAnalytics> logger)
+    {
+        _catalog = catalog;
+        _logger = logger;
+        _maxStaleness = TimeSpan.FromSeconds(config.GetValue("Analytics:MaxStalenessSeconds", 60));
+    }
+
+    public CatalogStats Current()
+    {
+        var stats = _stats;
+        if (stats is null)
+        {
+            lock (_computeLock)
+            {
+                return _stats ??= Compute();
+            }
+        }
+
+        if (stats.Generation != _catalog.Generation &&
+            DateTime.UtcNow - stats.ComputedAt > _maxStaleness &&
+            Interlocked.CompareExchange(ref _refreshing, 1, 0) == 0)
+        {
+            _ = Task.Run(Refresh);
+        }
+        return stats;
+    }
+
+    private void Refresh()
+    {
+        try
+        {
+            lock (_computeLock)
+            {
+                _stats = Compute();
+            }
+        }
+        catch (Exception ex)
+        {
+            _logger.LogWarning(ex, "Recomputing catalog analytics failed; serving the previous result");
+        }
+        finally
+        {
+            Interlocked.Exchange(ref _refreshing, 0);
+        }
+    }
+
+    private CatalogStats Compute()
+    {
+        var generation = _catalog.Generation;
+        // Views are small structs reading fields in place; the products are not materialized
+        var products = _catalog.Views.ToArray();
+
+        var totals = new RangeTotals();
+        if (products.Length > 0)
+        {
+            Parallel.ForEach(
+                Partitioner.Create(0, products.Length, Math.Max(MinRangeSize, products.Length / Environment.ProcessorCount + 1)),
+                () => new RangeTotals(),
+                (range, _, local) =>
+                {
+                    for (var i = range.Item1; i < range.Item2; i++)
+                        Add(local, products[i]);
+                    return local;
+                },
+                local =>
+                {
+                    lock (totals)
+                    {
+                        foreach (var (categoryId, acc) in local.Categories)
+                        {
+                            if (totals.Categories.TryGetValue(categoryId, out var existing)) existing.Merge(acc);
+                            else totals.Categories[categoryId] = acc;
+                        }
+                        for (var b = 0; b < totals.PriceBuckets.Length; b++) totals.PriceBuckets[b] += local.PriceBuckets[b];
+                        for (var b = 0; b < totals.InventoryBuckets.Length; b++) totals.InventoryBuckets[b] += local.InventoryBuckets[b];
+                    }
+                });
+        }
+
+        var categories = totals.Categories
+            .OrderBy(c => c.Key)
+            .Select(c => new CategoryStats(
+                c.Key,
+                c.Value.Count,
+                Math.Round(c.Value.PriceCents / 100m / c.Value.Count, 2),
+                c.Value.MinCents / 100m,
+                c.Value.MaxCents / 100m,
+                c.Value.Units,
+                c.Value.StockValueCents / 100m,
+                c.Value.OutOfStock))
+            .ToList();
+
+        return new CatalogStats(
+            DateTime.UtcNow,
+            generation,
+            products.Length,
+            categories.Sum(c => c.StockValue),
+            categories,
+            Buckets(PriceBounds, totals.PriceBuckets),
+            Buckets(InventoryBounds, totals.InventoryBuckets));
+    }
+
+    private static void Add(RangeTotals totals, ProductView product)
+    {
+        if (!totals.Categories.TryGetValue(product.CategoryId, out var acc))
+            totals.Categories[product.CategoryId] = acc = new Accumulator();
+
+        var cents = (long)Math.Round(product.SalePrice * 100m, MidpointRounding.AwayFromZero);
+        var units = Math.Max(0, product.Inventory);
+        acc.Count++;
+        acc.PriceCents += cents;
+        acc.MinCents = Math.Min(acc.MinCents, cents);
+        acc.MaxCents = Math.Max(acc.MaxCents, cents);
+        acc.Units += units;
+        acc.StockValueCents += cents * units;
+        if (units == 0) acc.OutOfStock++;
+
+        totals.PriceBuckets[Bucket(PriceBounds, product.SalePrice)]++;
+        totals.InventoryBuckets[Bucket(InventoryBounds, units)]++;
+    }
+
+    private static int Bucket(decimal[] bounds, decimal value)
+    {
+        var bucket = 0;
+        while (bucket < bounds.Length && value >= bounds[bucket]) bucket++;
+        return bucket;
+    }
+
+    private static IReadOnlyList<DistributionBucket> Buckets(decimal[] bounds, int[] counts)
+        => counts
+            .Select((count, i) => new DistributionBucket(
+                i == 0 ? 0m : bounds[i - 1],
+                i < bounds.Length ? bounds[i] : null,
+                count))
+            .ToList();
+}
@@ -0,0 +1,278 @@
+using System.Text;
+using Microsoft.EntityFrameworkCore;
+using Microsoft.Extensions.Primitives;
+using PartsUnlimited.Models;
+
+namespace PartsUnlimited.Utils;
+
+/// <summary>
+/// Keeps IProductCatalog loaded without re-reading the whole product table on
+/// every pod start. On startup the catalog is restored from a local binary
+/// snapshot ("CatalogSnapshot:Path", a volume the Helm chart mounts per pod,
+/// or a shared claim to survive pod replacement) and only rows with
+/// Product.Updated at or after the snapshot's watermark are read back from the
+/// database, soft-deleted ones included (SaveChanges stamps Updated on delete
+/// too), which drop out of the catalog. The same delta sync runs after every
+/// ICatalogVersion bump and every 30 seconds. The rows a sync applies come
+/// back as Catalog-sourced product events that bump the version too; a wake
+/// caused only by those is skipped, so a sync never triggers the next one.
+/// Rows removed without a stamp (the archive compactor, manual deletes) are
+/// caught by comparing the full id list, once after start and then every
+/// "CatalogSnapshot:ReconcileIntervalMinutes". The snapshot is rewritten every
+/// few minutes and on shutdown, through a temp file unique to this process so
+/// pods sharing the volume never interleave their writes. A snapshot that
+/// cannot be decoded is deleted and the catalog is loaded from the database
+/// instead.
+/// </summary>
+public class CatalogSnapshotService : BackgroundService
+{
+    private const int FormatVersion = 1;
+    private static readonly byte[] Magic = "PUCS"u8.ToArray();
+
+    // Re-read a little before the watermark to absorb replica lag and clock
+    // skew between the pods stamping Product.Updated; re-applying rows is idempotent.
+    private static readonly TimeSpan DeltaLookback = TimeSpan.FromMinutes(1);
+    private static readonly TimeSpan SyncInterval = TimeSpan.FromSeconds(30);
+
+    private readonly IProductCatalog _catalog;
+    private readonly IReadReplicaRouter _replicas;
+    private readonly ICatalogVersion _catalogVersion;
+    private readonly ILogger<CatalogSnapshotService> _logger;
+    private readonly string _path;
+    private readonly TimeSpan _writeInterval;
+    private readonly TimeSpan _reconcileInterval;
+    private readonly SemaphoreSlim _changed = new(0);
+    private readonly IDisposable _changeSubscription;
+    private DateTime _lastWrite = DateTime.MinValue;
+    private DateTime _lastReconcile = DateTime.MinValue;
+    private long _syncedVersion;
+    private IReadOnlyCollection<int> _applied = [];
+
+    public CatalogSnapshotService(
+        IProductCatalog catalog,
+        IReadReplicaRouter replicas,
+        ICatalogVersion catalogVersion,
+        IConfiguration config,
+        ILogger<CatalogSnapshotService> logger)
+    {
+        _catalog = catalog;
+        _replicas = replicas;
+        _catalogVersion = catalogVersion;
+        _logger = logger;
+        _path = config["CatalogSnapshot:Path"] is { Length: > 0 } path
+            ? path
+            : Path.Combine(Path.GetTempPath(), "partsunlimited-catalog.bin");
+        _writeInterval = TimeSpan.FromMinutes(config.GetValue("CatalogSnapshot:WriteIntervalMinutes", 5));
+        _reconcileInterval = TimeSpan.FromMinutes(config.GetValue("CatalogSnapshot:ReconcileIntervalMinutes", 60));
+        _changeSubscription = ChangeToken.OnChange(catalogVersion.GetChangeToken, () =>
+        {
+            if (_changed.CurrentCount == 0) _changed.Release();
+        });
+        _catalog.Changed += OnCatalogChanged;
+    }
+
+    protected override async Task ExecuteAsync(CancellationToken stoppingToken)
+    {
+        TryRestore();
+
+        while (!stoppingToken.IsCancellationRequested)
+        {
+            try
+            {
+                await SyncAsync(stoppingToken);
+                if (DateTime.UtcNow - _lastWrite > _writeInterval)
+                    Write();
+            }
+            catch (Exception ex) when (!stoppingToken.IsCancellationRequested)
+            {
+                _logger.LogWarning(ex, "Catalog sync failed; retrying");
+            }
+
+            await WaitForChangeAsync(stoppingToken);
+        }
+    }
+
+    public override async Task StopAsync(CancellationToken cancellationToken)
+    {
+        _changeSubscription.Dispose();
+        _catalog.Changed -= OnCatalogChanged;
+        await base.StopAsync(cancellationToken);
+        if (_catalog.IsLoaded) Write();
+    }
+
+    private async Task SyncAsync(CancellationToken cancellationToken)
+    {
+        // Read the version first: everything changed up to it is committed
+        // before the queries below run, so the loaded data includes it.
+        var version = _catalogVersion.Current;
+        await using var db = _replicas.CreateReadContext();
+
+        if (!_catalog.IsLoaded)
+        {
+            _catalog.Replace(await db.Products.ToListAsync(cancellationToken), version);
+            _syncedVersion = version;
+            _lastReconcile = DateTime.UtcNow;
+            _logger.LogInformation("Catalog loaded from database ({Count} products)", _catalog.Products.Count);
+            return;
+        }
+
+        var watermark = _catalog.Watermark == DateTime.MinValue
+            ? DateTime.MinValue
+            : _catalog.Watermark - DeltaLookback;
+        var delta = await db.Products.IgnoreQueryFilters()
+            .Where(p => p.Updated >= watermark)
+            .ToListAsync(cancellationToken);
+
+        IReadOnlyCollection<int> missing = [];
+        if (DateTime.UtcNow - _lastReconcile > _reconcileInterval)
+        {
+            missing = await MissingIdsAsync(db, cancellationToken);
+            _lastReconcile = DateTime.UtcNow;
+        }
+
+        _catalog.Apply(delta, missing, version);
+        _syncedVersion = version;
+    }
+
+    /// <summary>Waits for the next version bump not caused by the last sync, or the sync interval.</summary>
+    private async Task WaitForChangeAsync(CancellationToken cancellationToken)
+    {
+        var deadline = DateTime.UtcNow + SyncInterval;
+        while (true)
+        {
+            var remaining = deadline - DateTime.UtcNow;
+            if (remaining <= TimeSpan.Zero || !await _changed.WaitAsync(remaining, cancellationToken))
+                return;
+            if (!OnlyOwnChanges())
+                return;
+        }
+    }
+
+    // Every bump stamps one product with the new version, so the bumps since
+    // the sync all came from its own rows exactly when their count matches the
+    // number of those rows stamped since. A write to one of those rows that the
+    // bus coalesced with its Catalog event is picked up by the next timed sync.
+    private bool OnlyOwnChanges()
+    {
+        var bumps = _catalogVersion.Current - _syncedVersion;
+        var own = _applied.Count(id => _catalogVersion.ForProduct(id) > _syncedVersion);
+        return bumps == own;
+    }
+
+    private void OnCatalogChanged(CatalogChange change)
+        => _applied = change.Reset ? [] : [.. change.Changed.Select(p => p.ProductId), .. change.Removed];
+
+    private async Task<IReadOnlyCollection<int>> MissingIdsAsync(PartsUnlimitedContext db, CancellationToken cancellationToken)
+    {
+        var liveIds = (await db.Products.Select(p => p.ProductId).ToListAsync(cancellationToken)).ToHashSet();
+        var missing = new List<int>();
+        foreach (var view in _catalog.Views)
+        {
+            if (!liveIds.Contains(view.ProductId)) missing.Add(view.ProductId);
+        }
+
+        if (missing.Count > 0)
+            _logger.LogInformation("Catalog reconciliation dropped {Count} products missing from the database", missing.Count);
+        return missing;
+    }
+
+    private void TryRestore()
+    {
+        if (!File.Exists(_path)) return;
+
+        try
+        {
+            using var reader = new BinaryReader(
+                new BufferedStream(File.OpenRead(_path), 1 << 16), Encoding.UTF8);
+            if (!reader.ReadBytes(Magic.Length).AsSpan().SequenceEqual(Magic) || reader.ReadInt32() != FormatVersion)
+            {
+                _logger.LogWarning("Ignoring catalog snapshot {Path} with unknown format", _path);
+                return;
+            }
+
+            var count = reader.ReadInt32();
+            var products = new List<Product>(count);
+            for (var i = 0; i < count; i++)
+                products.Add(ReadProduct(reader));
+
+            _catalog.Replace(products);
+            _logger.LogInformation("Catalog restored from snapshot {Path} ({Count} products, watermark {Watermark:o})",
+                _path, count, _catalog.Watermark);
+        }
+        catch (Exception ex)
+        {
+            // Truncated or corrupt files surface as any decode error (bad lengths,
+            // decimals, dates); none of them may keep the host from starting
+            _logger.LogWarning(ex, "Catalog snapshot {Path} could not be read; deleting it and loading from database", _path);
+            try
+            {
+                File.Delete(_path);
+            }
+            catch (Exception deleteEx) when (deleteEx is IOException or UnauthorizedAccessException)
+            {
+                _logger.LogWarning(deleteEx, "Corrupt catalog snapshot {Path} could not be deleted", _path);
+            }
+        }
+    }
+
+    private void Write()
+    {
+        var products = _catalog.Products;
+        var temp = $"{_path}.{Environment.MachineName}.{Environment.ProcessId}.tmp";
+        try
+        {
+            using (var writer = new BinaryWriter(
+                new BufferedStream(File.Create(temp), 1 << 16), Encoding.UTF8))
+            {
+                writer.Write(Magic);
+                writer.Write(FormatVersion);
+                writer.Write(products.Count);
+                foreach (var product in products)
+                    WriteProduct(writer, product);
+            }
+
+            File.Move(temp, _path, overwrite: true);
+            _lastWrite = DateTime.UtcNow;
+        }
+        catch (Exception ex) when (ex is IOException or UnauthorizedAccessException)
+        {
+            _logger.LogWarning(ex, "Catalog snapshot {Path} could not be written", _path);
+        }
+    }
+
+    private static void WriteProduct(BinaryWriter writer, Product product)
+    {
+        writer.Write(product.ProductId);
+        writer.Write(product.CategoryId);
+        writer.Write(product.RecommendationId);
+        writer.Write(product.Inventory);
+        writer.Write(product.LeadTime);
+        writer.Write(product.Price);
+        writer.Write(product.SalePrice);
+        writer.Write(product.Created.Ticks);
+        writer.Write(product.Updated.Ticks);
+        writer.Write(product.SkuNumber);
+        writer.Write(product.Title);
+        writer.Write(product.ProductArtUrl);
+        writer.Write(product.Description);
+        writer.Write(product.ProductDetails);
+    }
+
+    private static Product ReadProduct(BinaryReader reader) => new()
+    {
+        ProductId = reader.ReadInt32(),
+        CategoryId = reader.ReadInt32(),
+        RecommendationId = reader.ReadInt32(),
+        Inventory = reader.ReadInt32(),
+        LeadTime = reader.ReadInt32(),
+        Price = reader.ReadDecimal(),
+        SalePrice = reader.ReadDecimal(),
+        Created = new DateTime(reader.ReadInt64(), DateTimeKind.Utc),
+        Updated = new DateTime(reader.ReadInt64(), DateTimeKind.Utc),
+        SkuNumber = reader.ReadString(),
+        Title = reader.ReadString(),
+        ProductArtUrl = reader.ReadString(),
+        Description = reader.ReadString(),
+        ProductDetails = reader.ReadString()
+    };
+}
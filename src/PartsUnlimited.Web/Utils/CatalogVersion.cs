@@ -0,0 +1,48 @@
+using System.Collections.Concurrent;
+using Microsoft.Extensions.Primitives;
+
+namespace PartsUnlimited.Utils;
+
+public interface ICatalogVersion
+{
+    long Current { get; }
+    long ForProduct(int productId);
+    void ProductChanged(int productId);
+    IChangeToken GetChangeToken();
+    string ListETag(string variant);
+    string ProductETag(int productId);
+}
+
+/// <summary>
+/// Monotonic catalog change counter used to derive ETags without serializing
+/// the response body. Every product write bumps the catalog version and stamps
+/// the product with it. The process epoch is part of every tag so a tag issued
+/// before a restart never validates against a fresh counter.
+/// GetChangeToken() fires on the next change, so cache entries derived from the
+/// catalog can be evicted by the same writes that move the version.
+/// </summary>
+public class CatalogVersion : ICatalogVersion
+{
+    private readonly string _epoch = DateTime.UtcNow.Ticks.ToString("x");
+    private readonly ConcurrentDictionary<int, long> _products = new();
+    private long _version;
+    private CancellationTokenSource _changed = new();
+
+    public long Current => Interlocked.Read(ref _version);
+
+    public long ForProduct(int productId)
+        => _products.TryGetValue(productId, out var version) ? version : 0;
+
+    public void ProductChanged(int productId)
+    {
+        _products[productId] = Interlocked.Increment(ref _version);
+        var previous = Interlocked.Exchange(ref _changed, new CancellationTokenSource());
+        previous.Cancel();
+    }
+
+    public IChangeToken GetChangeToken() => new CancellationChangeToken(_changed.Token);
+
+    public string ListETag(string variant) => $"\"{_epoch}-{Current}-{variant}\"";
+
+    public string ProductETag(int productId) => $"\"{_epoch}-p{productId}-{ForProduct(productId)}\"";
+}
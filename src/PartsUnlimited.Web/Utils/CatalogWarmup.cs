@@ -0,0 +1,133 @@
+using Microsoft.Extensions.Caching.Memory;
+using Microsoft.Extensions.Diagnostics.HealthChecks;
+
+namespace PartsUnlimited.Utils;
+
+/// <summary>
+/// Warms the process before it reports ready: waits for IProductCatalog to be
+/// restored, pre-loads the product_{id} cache entries used by Store/Details
+/// for a bounded hot set from it (the Warmup:ProductCount newest products, the
+/// ones the home page and announcements link to; copies with their Category
+/// filled in, so the shared catalog is left untouched), then renders the product list responses
+/// into IProductResponseCache in-process, under the same keys and queries as
+/// ProductsController. Nothing goes over loopback HTTP, where the
+/// authentication fallback policy and the HTTPS redirect would get in the way.
+/// /health/ready stays unhealthy until this completes (or fails, so a bad
+/// warmup never blocks the rollout).
+/// </summary>
+public class CatalogWarmup : BackgroundService
+{
+    private readonly IProductCatalog _catalog;
+    private readonly IEntityCache _entityCache;
+    private readonly ICatalogVersion _catalogVersion;
+    private readonly IProductResponseCache _responseCache;
+    private readonly IProductPartitions _partitions;
+    private readonly IMemoryCache _cache;
+    private readonly IHostApplicationLifetime _lifetime;
+    private readonly ILogger<CatalogWarmup> _logger;
+    private readonly int _productCount;
+    private volatile bool _complete;
+
+    public CatalogWarmup(
+        IProductCatalog catalog,
+        IEntityCache entityCache,
+        ICatalogVersion catalogVersion,
+        IProductResponseCache responseCache,
+        IProductPartitions partitions,
+        IMemoryCache cache,
+        IHostApplicationLifetime lifetime,
+        IConfiguration config,
+        ILogger<CatalogWarmup> logger)
+    {
+        _catalog = catalog;
+        _entityCache = entityCache;
+        _catalogVersion = catalogVersion;
+        _responseCache = responseCache;
+        _partitions = partitions;
+        _cache = cache;
+        _lifetime = lifetime;
+        _logger = logger;
+        _productCount = config.GetValue("Warmup:ProductCount", 200);
+    }
+
+    public bool IsComplete => _complete;
+
+    protected override async Task ExecuteAsync(CancellationToken stoppingToken)
+    {
+        var started = new TaskCompletionSource();
+        using (_lifetime.ApplicationStarted.Register(() => started.TrySetResult()))
+        using (stoppingToken.Register(() => started.TrySetCanceled()))
+        {
+            await started.Task;
+        }
+
+        var stopwatch = System.Diagnostics.Stopwatch.StartNew();
+        try
+        {
+            var count = await PreloadProductsAsync(stoppingToken);
+            await RenderProductListsAsync(stoppingToken);
+            _logger.LogInformation("Catalog warmup loaded {Count} products in {Elapsed} ms",
+                count, stopwatch.ElapsedMilliseconds);
+        }
+        catch (Exception ex) when (!stoppingToken.IsCancellationRequested)
+        {
+            _logger.LogWarning(ex, "Catalog warmup failed after {Elapsed} ms; continuing cold",
+                stopwatch.ElapsedMilliseconds);
+        }
+        finally
+        {
+            _complete = true;
+        }
+    }
+
+    private async Task<int> PreloadProductsAsync(CancellationToken cancellationToken)
+    {
+        await _catalog.WhenLoaded.WaitAsync(TimeSpan.FromMinutes(2), cancellationToken);
+
+        if (_productCount <= 0)
+            return 0;
+
+        // Same lifetime as EntityCache.GetProductAsync: absolute, and dropped
+        // on the next catalog change
+        var changeToken = _catalogVersion.GetChangeToken();
+        var newest = Comparer<ProductView>.Create((a, b) =>
+        {
+            var result = b.Created.CompareTo(a.Created);
+            return result != 0 ? result : a.ProductId.CompareTo(b.ProductId);
+        });
+        var hot = ProductRanking.Top(_catalog.Views, _productCount, newest);
+        foreach (var view in hot)
+        {
+            var cached = view.ToProduct().ShallowCopy();
+            cached.Category = await _entityCache.GetCategoryAsync(cached.CategoryId, cancellationToken);
+            var options = new MemoryCacheEntryOptions { AbsoluteExpirationRelativeToNow = TimeSpan.FromMinutes(10) };
+            options.AddExpirationToken(changeToken);
+            _cache.Set($"product_{cached.ProductId}", cached, options);
+        }
+
+        return hot.Count;
+    }
+
+    private async Task RenderProductListsAsync(CancellationToken cancellationToken)
+    {
+        // GET /api/products and /api/products?sale=true
+        await _responseCache.GetOrRenderAsync("list_all", () =>
+            _partitions.QueryAsync(null, products => products, cancellationToken));
+        await _responseCache.GetOrRenderAsync("list_sale", () =>
+            _partitions.QueryAsync(null, products => products.Where(p => p.Price != p.SalePrice), cancellationToken));
+    }
+}
+
+/// <summary>Readiness check that stays unhealthy until CatalogWarmup completes.</summary>
+public class CatalogWarmupHealthCheck : IHealthCheck
+{
+    private readonly CatalogWarmup _warmup;
+
+    public CatalogWarmupHealthCheck(CatalogWarmup warmup) => _warmup = warmup;
+
+    public Task<HealthCheckResult> CheckHealthAsync(
+        HealthCheckContext context, CancellationToken cancellationToken = default)
+        => Task.FromResult(_warmup.IsComplete
+            ? HealthCheckResult.Healthy()
+            : HealthCheckResult.Unhealthy("Catalog warmup in progress"));
+}
@@ -0,0 +1,305 @@
+using System.Formats.Cbor;
+using Microsoft.AspNetCore.Mvc;
+using Microsoft.AspNetCore.Mvc.Filters;
+using Microsoft.AspNetCore.Mvc.Formatters;
+using Microsoft.Extensions.Options;
+using PartsUnlimited.Models;
+
+namespace PartsUnlimited.Utils;
+
+/// <summary>
+/// Compact binary product encoding for internal consumers (media type
+/// application/cbor). A product is a CBOR map keyed by small integers rather
+/// than property names; prices are integers in cents (scale 2, matching the
+/// decimal(18,2) columns) and timestamps are Unix epoch milliseconds (UTC).
+/// Navigation properties and the derived ProductDetailList are not sent;
+/// decoders skip keys they don't know, so fields can be added later.
+/// </summary>
+public static class CompactProductCodec
+{
+    public const string MediaType = "application/cbor";
+
+    private const decimal PriceScale = 100m;
+
+    private static class Key
+    {
+        public const int ProductId = 0;
+        public const int Title = 1;
+        public const int Price = 2;
+        public const int SalePrice = 3;
+        public const int ProductArtUrl = 4;
+        public const int Description = 5;
+        public const int CategoryId = 6;
+        public const int SkuNumber = 7;
+        public const int RecommendationId = 8;
+        public const int Created = 9;
+        public const int Updated = 10;
+        public const int ProductDetails = 11;
+        public const int Inventory = 12;
+        public const int LeadTime = 13;
+        public const int DeletedAt = 14;
+    }
+
+    public static byte[] Encode(Product product)
+    {
+        var writer = new CborWriter();
+        WriteProduct(writer, product);
+        return writer.Encode();
+    }
+
+    public static byte[] Encode(IEnumerable<Product> products)
+    {
+        var writer = new CborWriter();
+        WriteProducts(writer, products);
+        return writer.Encode();
+    }
+
+    public static async Task<byte[]> EncodeAsync(IAsyncEnumerable<Product> products, CancellationToken cancellationToken = default)
+    {
+        // Indefinite-length array: rows are encoded as they stream in
+        var writer = new CborWriter();
+        writer.WriteStartArray(null);
+        await foreach (var product in products.WithCancellation(cancellationToken))
+            WriteProduct(writer, product);
+        writer.WriteEndArray();
+        return writer.Encode();
+    }
+
+    public static void WriteProducts(CborWriter writer, IEnumerable<Product> products)
+    {
+        if (products is IReadOnlyCollection<Product> collection)
+        {
+            writer.WriteStartArray(collection.Count);
+        }
+        else
+        {
+            writer.WriteStartArray(null);
+        }
+        foreach (var product in products)
+            WriteProduct(writer, product);
+        writer.WriteEndArray();
+    }
+
+    public static void WriteProduct(CborWriter writer, Product product)
+    {
+        writer.WriteStartMap(product.DeletedAt is null ? 14 : 15);
+        writer.WriteInt32(Key.ProductId);
+        writer.WriteInt32(product.ProductId);
+        writer.WriteInt32(Key.Title);
+        writer.WriteTextString(product.Title);
+        writer.WriteInt32(Key.Price);
+        writer.WriteInt64(ToScaled(product.Price));
+        writer.WriteInt32(Key.SalePrice);
+        writer.WriteInt64(ToScaled(product.SalePrice));
+        writer.WriteInt32(Key.ProductArtUrl);
+        writer.WriteTextString(product.ProductArtUrl);
+        writer.WriteInt32(Key.Description);
+        writer.WriteTextString(product.Description);
+        writer.WriteInt32(Key.CategoryId);
+        writer.WriteInt32(product.CategoryId);
+        writer.WriteInt32(Key.SkuNumber);
+        writer.WriteTextString(product.SkuNumber);
+        writer.WriteInt32(Key.RecommendationId);
+        writer.WriteInt32(product.RecommendationId);
+        writer.WriteInt32(Key.Created);
+        writer.WriteInt64(ToEpochMillis(product.Created));
+        writer.WriteInt32(Key.Updated);
+        writer.WriteInt64(ToEpochMillis(product.Updated));
+        writer.WriteInt32(Key.ProductDetails);
+        writer.WriteTextString(product.ProductDetails);
+        writer.WriteInt32(Key.Inventory);
+        writer.WriteInt32(product.Inventory);
+        writer.WriteInt32(Key.LeadTime);
+        writer.WriteInt32(product.LeadTime);
+        if (product.DeletedAt is { } deletedAt)
+        {
+            writer.WriteInt32(Key.DeletedAt);
+            writer.WriteInt64(ToEpochMillis(deletedAt));
+        }
+        writer.WriteEndMap();
+    }
+
+    public static Product DecodeProduct(ReadOnlyMemory<byte> data)
+        => ReadProduct(new CborReader(data, CborConformanceMode.Lax));
+
+    public static List<Product> DecodeProducts(ReadOnlyMemory<byte> data)
+        => ReadProducts(new CborReader(data, CborConformanceMode.Lax));
+
+    public static List<Product> ReadProducts(CborReader reader)
+    {
+        var count = reader.ReadStartArray();
+        var products = new List<Product>(count ?? 0);
+        while (reader.PeekState() != CborReaderState.EndArray)
+            products.Add(ReadProduct(reader));
+        reader.ReadEndArray();
+        return products;
+    }
+
+    public static Product ReadProduct(CborReader reader)
+    {
+        var product = new Product();
+        reader.ReadStartMap();
+        while (reader.PeekState() != CborReaderState.EndMap)
+        {
+            switch (reader.ReadInt32())
+            {
+                case Key.ProductId: product.ProductId = reader.ReadInt32(); break;
+                case Key.Title: product.Title = reader.ReadTextString(); break;
+                case Key.Price: product.Price = reader.ReadInt64() / PriceScale; break;
+                case Key.SalePrice: product.SalePrice = reader.ReadInt64() / PriceScale; break;
+                case Key.ProductArtUrl: product.ProductArtUrl = reader.ReadTextString(); break;
+                case Key.Description: product.Description = reader.ReadTextString(); break;
+                case Key.CategoryId: product.CategoryId = reader.ReadInt32(); break;
+                case Key.SkuNumber: product.SkuNumber = reader.ReadTextString(); break;
+                case Key.RecommendationId: product.RecommendationId = reader.ReadInt32(); break;
+                case Key.Created: product.Created = FromEpochMillis(reader.ReadInt64()); break;
+                case Key.Updated: product.Updated = FromEpochMillis(reader.ReadInt64()); break;
+                case Key.ProductDetails: product.ProductDetails = reader.ReadTextString(); break;
+                case Key.Inventory: product.Inventory = reader.ReadInt32(); break;
+                case Key.LeadTime: product.LeadTime = reader.ReadInt32(); break;
+                case Key.DeletedAt: product.DeletedAt = FromEpochMillis(reader.ReadInt64()); break;
+                default: reader.SkipValue(); break;
+            }
+        }
+        reader.ReadEndMap();
+        return product;
+    }
+
+    public static long ToScaled(decimal price)
+        => (long)Math.Round(price * PriceScale, MidpointRounding.AwayFromZero);
+
+    public static long ToEpochMillis(DateTime value)
+        => new DateTimeOffset(DateTime.SpecifyKind(value, DateTimeKind.Utc)).ToUnixTimeMilliseconds();
+
+    private static DateTime FromEpochMillis(long millis)
+        => DateTime.UnixEpoch.AddMilliseconds(millis);
+}
+
+/// <summary>
+/// Writes Product, product sequences and FacetedSearchResult as
+/// application/cbor when the request's Accept header asks for it; everything
+/// else falls through to the JSON formatter. Faceted results are a map of
+/// 0: products, 1: [categoryId, count] pairs, 2: [tag, count] pairs,
+/// 3: [minCents, maxCents or null, count] price buckets and
+/// 4: [total, page, pageSize]. Not registered globally; see
+/// CompactProductFormatFilter.
+/// </summary>
+public class CompactProductOutputFormatter : OutputFormatter
+{
+    public CompactProductOutputFormatter()
+    {
+        SupportedMediaTypes.Add(CompactProductCodec.MediaType);
+    }
+
+    protected override bool CanWriteType(Type? type)
+        => type is not null &&
+           (typeof(Product).IsAssignableFrom(type) ||
+            typeof(IEnumerable<Product>).IsAssignableFrom(type) ||
+            type == typeof(FacetedSearchResult));
+
+    public override async Task WriteResponseBodyAsync(OutputFormatterWriteContext context)
+    {
+        var writer = new CborWriter();
+        switch (context.Object)
+        {
+            case Product product:
+                CompactProductCodec.WriteProduct(writer, product);
+                break;
+            case IEnumerable<Product> products:
+                CompactProductCodec.WriteProducts(writer, products);
+                break;
+            case FacetedSearchResult result:
+                WriteFacetedResult(writer, result);
+                break;
+            default:
+                writer.WriteNull();
+                break;
+        }
+
+        var body = writer.Encode();
+        var response = context.HttpContext.Response;
+        response.ContentLength = body.Length;
+        await response.Body.WriteAsync(body, context.HttpContext.RequestAborted);
+    }
+
+    private static void WriteFacetedResult(CborWriter writer, FacetedSearchResult result)
+    {
+        writer.WriteStartMap(5);
+
+        writer.WriteInt32(0);
+        CompactProductCodec.WriteProducts(writer, result.Products);
+
+        writer.WriteInt32(1);
+        writer.WriteStartArray(result.Categories.Count);
+        foreach (var facet in result.Categories)
+        {
+            writer.WriteStartArray(2);
+            writer.WriteInt32(facet.CategoryId);
+            writer.WriteInt32(facet.Count);
+            writer.WriteEndArray();
+        }
+        writer.WriteEndArray();
+
+        writer.WriteInt32(2);
+        writer.WriteStartArray(result.Tags.Count);
+        foreach (var facet in result.Tags)
+        {
+            writer.WriteStartArray(2);
+            writer.WriteTextString(facet.Tag);
+            writer.WriteInt32(facet.Count);
+            writer.WriteEndArray();
+        }
+        writer.WriteEndArray();
+
+        writer.WriteInt32(3);
+        writer.WriteStartArray(result.PriceBuckets.Count);
+        foreach (var bucket in result.PriceBuckets)
+        {
+            writer.WriteStartArray(3);
+            writer.WriteInt64(CompactProductCodec.ToScaled(bucket.Min));
+            if (bucket.Max is { } max) writer.WriteInt64(CompactProductCodec.ToScaled(max));
+            else writer.WriteNull();
+            writer.WriteInt32(bucket.Count);
+            writer.WriteEndArray();
+        }
+        writer.WriteEndArray();
+
+        writer.WriteInt32(4);
+        writer.WriteStartArray(3);
+        writer.WriteInt32(result.Total);
+        writer.WriteInt32(result.Page);
+        writer.WriteInt32(result.PageSize);
+        writer.WriteEndArray();
+
+        writer.WriteEndMap();
+    }
+}
+
+/// <summary>
+/// Offers application/cbor on the controllers it is applied to, without
+/// registering CompactProductOutputFormatter for the rest of the app. Object
+/// results get the app's configured output formatters with the CBOR one
+/// appended, so it is chosen only when the Accept header asks for it.
+/// </summary>
+public class CompactProductFormatFilter : IResultFilter
+{
+    private readonly FormatterCollection<IOutputFormatter> _formatters;
+
+    public CompactProductFormatFilter(IOptions<MvcOptions> options)
+    {
+        _formatters = new FormatterCollection<IOutputFormatter>(options.Value.OutputFormatters.ToList())
+        {
+            new CompactProductOutputFormatter()
+        };
+    }
+
+    public void OnResultExecuting(ResultExecutingContext context)
+    {
+        if (context.Result is ObjectResult result && result.Formatters.Count == 0)
+            result.Formatters = _formatters;
+    }
+
+    public void OnResultExecuted(ResultExecutedContext context)
+    {
+    }
+}
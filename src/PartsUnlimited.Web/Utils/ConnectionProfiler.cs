@@ -0,0 +1,211 @@
+using System.Data.Common;
+using System.Diagnostics;
+using System.Diagnostics.Metrics;
+using System.Runtime.CompilerServices;
+using Microsoft.AspNetCore.Routing;
+using Microsoft.EntityFrameworkCore.Diagnostics;
+
+namespace PartsUnlimited.Utils;
+
+/// <summary>
+/// EF Core interceptor that measures how connections are used, tagged by the
+/// operation (route pattern of the current request, or "background"):
+/// <list type="bullet">
+/// <item>db.connection.wait_time: time to open, which is where pool waits show up.</item>
+/// <item>db.connection.hold_time: open to close.</item>
+/// <item>db.connection.sql_time: time executing commands while open, up to
+/// the first result for readers.</item>
+/// <item>db.connection.read_time: time readers stayed open after executing,
+/// i.e. rows streamed plus whatever the caller did between rows. Hold minus
+/// SQL and read time is connection time spent on non-database work.</item>
+/// <item>db.pool.starvation: opens slower than
+/// "Database:Profiling:StarvationThresholdMs" or failing with a pool timeout.</item>
+/// </list>
+/// Published on the "PartsUnlimited.Database" meter. Added to every
+/// PartsUnlimitedContext options: primary, replicas and partitions.
+/// </summary>
+public class ConnectionProfiler : DbConnectionInterceptor, IDbCommandInterceptor
+{
+    public const string MeterName = "PartsUnlimited.Database";
+
+    private sealed class Usage
+    {
+        public long OpenedAt;
+        public double SqlMs;
+        public double ReadMs;
+    }
+
+    private readonly ConditionalWeakTable<DbConnection, Usage> _usage = new();
+    private readonly ConditionalWeakTable<DbDataReader, StrongBox<long>> _readers = new();
+    private readonly IHttpContextAccessor _httpContextAccessor;
+    private readonly ILogger<ConnectionProfiler> _logger;
+    private readonly TimeSpan _starvationThreshold;
+    private readonly Histogram<double> _waitTime;
+    private readonly Histogram<double> _holdTime;
+    private readonly Histogram<double> _sqlTime;
+    private readonly Histogram<double> _readTime;
+    private readonly Counter<long> _starvation;
+
+    public ConnectionProfiler(
+        IHttpContextAccessor httpContextAccessor,
+        IConfiguration config,
+        IMeterFactory meterFactory,
+        ILogger<ConnectionProfiler> logger)
+    {
+        _httpContextAccessor = httpContextAccessor;
+        _logger = logger;
+        _starvationThreshold = TimeSpan.FromMilliseconds(config.GetValue("Database:Profiling:StarvationThresholdMs", 500));
+
+        var meter = meterFactory.Create(MeterName);
+        _waitTime = meter.CreateHistogram<double>("db.connection.wait_time", "ms", "Time to open a connection, including pool wait");
+        _holdTime = meter.CreateHistogram<double>("db.connection.hold_time", "ms", "Time a connection was held open");
+        _sqlTime = meter.CreateHistogram<double>("db.connection.sql_time", "ms", "Time spent executing SQL while a connection was held");
+        _readTime = meter.CreateHistogram<double>("db.connection.read_time", "ms", "Time data readers stayed open after executing while a connection was held");
+        _starvation = meter.CreateCounter<long>("db.pool.starvation", description: "Connection opens that waited past the threshold or timed out");
+    }
+
+    public override void ConnectionOpened(DbConnection connection, ConnectionEndEventData eventData)
+        => Opened(connection, eventData.Duration);
+
+    public override Task ConnectionOpenedAsync(
+        DbConnection connection, ConnectionEndEventData eventData, CancellationToken cancellationToken = default)
+    {
+        Opened(connection, eventData.Duration);
+        return Task.CompletedTask;
+    }
+
+    public override void ConnectionClosed(DbConnection connection, ConnectionEndEventData eventData)
+        => Closed(connection);
+
+    public override Task ConnectionClosedAsync(DbConnection connection, ConnectionEndEventData eventData)
+    {
+        Closed(connection);
+        return Task.CompletedTask;
+    }
+
+    public override void ConnectionFailed(DbConnection connection, ConnectionErrorEventData eventData)
+        => Failed(eventData);
+
+    public override Task ConnectionFailedAsync(
+        DbConnection connection, ConnectionErrorEventData eventData, CancellationToken cancellationToken = default)
+    {
+        Failed(eventData);
+        return Task.CompletedTask;
+    }
+
+    // Execution up to the first result is SQL time; from there to disposal is read time
+    public DbDataReader ReaderExecuted(DbCommand command, CommandExecutedEventData eventData, DbDataReader result)
+    {
+        ReaderStarted(command, eventData, result);
+        return result;
+    }
+
+    public ValueTask<DbDataReader> ReaderExecutedAsync(
+        DbCommand command, CommandExecutedEventData eventData, DbDataReader result, CancellationToken cancellationToken = default)
+    {
+        ReaderStarted(command, eventData, result);
+        return ValueTask.FromResult(result);
+    }
+
+    public InterceptionResult DataReaderDisposing(
+        DbCommand command, DataReaderDisposingEventData eventData, InterceptionResult result)
+    {
+        if (_readers.TryGetValue(eventData.DataReader, out var executedAt))
+        {
+            _readers.Remove(eventData.DataReader);
+            if (command.Connection is { } connection && _usage.TryGetValue(connection, out var usage))
+                usage.ReadMs += Stopwatch.GetElapsedTime(executedAt.Value).TotalMilliseconds;
+        }
+        return result;
+    }
+
+    public int NonQueryExecuted(DbCommand command, CommandExecutedEventData eventData, int result)
+    {
+        AddSql(command.Connection, eventData.Duration);
+        return result;
+    }
+
+    public ValueTask<int> NonQueryExecutedAsync(
+        DbCommand command, CommandExecutedEventData eventData, int result, CancellationToken cancellationToken = default)
+    {
+        AddSql(command.Connection, eventData.Duration);
+        return ValueTask.FromResult(result);
+    }
+
+    public object? ScalarExecuted(DbCommand command, CommandExecutedEventData eventData, object? result)
+    {
+        AddSql(command.Connection, eventData.Duration);
+        return result;
+    }
+
+    public ValueTask<object?> ScalarExecutedAsync(
+        DbCommand command, CommandExecutedEventData eventData, object? result, CancellationToken cancellationToken = default)
+    {
+        AddSql(command.Connection, eventData.Duration);
+        return ValueTask.FromResult(result);
+    }
+
+    private void Opened(DbConnection connection, TimeSpan openDuration)
+    {
+        var usage = _usage.GetOrCreateValue(connection);
+        usage.OpenedAt = Stopwatch.GetTimestamp();
+        usage.SqlMs = 0;
+        usage.ReadMs = 0;
+
+        var operation = Operation();
+        _waitTime.Record(openDuration.TotalMilliseconds, operation);
+        if (openDuration > _starvationThreshold)
+        {
+            _starvation.Add(1, operation);
+            _logger.LogWarning("Connection open for {Operation} took {Elapsed} ms", operation.Value, (int)openDuration.TotalMilliseconds);
+        }
+    }
+
+    private void Closed(DbConnection connection)
+    {
+        if (!_usage.TryGetValue(connection, out var usage) || usage.OpenedAt == 0) return;
+
+        var operation = Operation();
+        _holdTime.Record(Stopwatch.GetElapsedTime(usage.OpenedAt).TotalMilliseconds, operation);
+        _sqlTime.Record(usage.SqlMs, operation);
+        _readTime.Record(usage.ReadMs, operation);
+        usage.OpenedAt = 0;
+    }
+
+    private void Failed(ConnectionErrorEventData eventData)
+    {
+        // SqlClient reports an exhausted pool as InvalidOperationException ("... max pool size was reached")
+        if (eventData.Exception is InvalidOperationException ex && ex.Message.Contains("pool", StringComparison.OrdinalIgnoreCase))
+        {
+            var operation = Operation();
+            _starvation.Add(1, operation);
+            _logger.LogWarning(ex, "Connection pool exhausted for {Operation}", operation.Value);
+        }
+    }
+
+    private void ReaderStarted(DbCommand command, CommandExecutedEventData eventData, DbDataReader reader)
+    {
+        AddSql(command.Connection, eventData.Duration);
+        _readers.AddOrUpdate(reader, new StrongBox<long>(Stopwatch.GetTimestamp()));
+    }
+
+    private void AddSql(DbConnection? connection, TimeSpan duration)
+    {
+        if (connection is not null && _usage.TryGetValue(connection, out var usage))
+            usage.SqlMs += duration.TotalMilliseconds;
+
+        RequestProfile.For(_httpContextAccessor.HttpContext)?.AddSql(duration);
+    }
+
+    private KeyValuePair<string, object?> Operation()
+        => new("operation", OperationName(_httpContextAccessor.HttpContext));
+
+    /// <summary>"GET /api/Products/{id}" style name for a request, or "background" outside one.</summary>
+    public static string OperationName(HttpContext? context)
+    {
+        if (context is null) return "background";
+
+        var route = (context.GetEndpoint() as RouteEndpoint)?.RoutePattern.RawText;
+        return route is null ? "unrouted" : $"{context.Request.Method} /{route.TrimStart('/')}";
+    }
+}
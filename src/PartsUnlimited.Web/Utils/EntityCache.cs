@@ -0,0 +1,130 @@
+using System.Diagnostics.Metrics;
+using Microsoft.EntityFrameworkCore;
+using Microsoft.Extensions.Caching.Memory;
+using PartsUnlimited.Models;
+
+namespace PartsUnlimited.Utils;
+
+public interface IEntityCache
+{
+    Task<Product?> GetProductAsync(int productId, CancellationToken cancellationToken = default);
+    Task<IReadOnlyList<Category>> GetCategoriesAsync(CancellationToken cancellationToken = default);
+    Task<Category?> GetCategoryAsync(int categoryId, CancellationToken cancellationToken = default);
+    Task<T> GetOrQueryAsync<T>(string key, Func<PartsUnlimitedContext, Task<T>> query);
+    void EvictProduct(int productId);
+}
+
+/// <summary>
+/// Second-level cache over EF Core, which has none built in. Three regions:
+/// <list type="bullet">
+/// <item>product: single products by id under the existing product_{id} keys,
+/// evicted explicitly by the admin write paths (read-write strategy) and, like
+/// the query region, on any catalog change and after 10 minutes at most; the
+/// Category reference is filled from the category region rather than a join.</item>
+/// <item>category: the whole (small, admin-static) category table, refreshed
+/// hourly (read-mostly strategy).</item>
+/// <item>query: arbitrary query results, dropped on every catalog change via
+/// the ICatalogVersion change token.</item>
+/// </list>
+/// Per-region hits and misses are published on the "PartsUnlimited.EntityCache"
+/// meter (e.g. <c>dotnet-counters monitor --counters PartsUnlimited.EntityCache</c>).
+/// </summary>
+public class EntityCache : IEntityCache
+{
+    public const string MeterName = "PartsUnlimited.EntityCache";
+
+    private const string CategoriesKey = "nav_categories";
+
+    private readonly IMemoryCache _cache;
+    private readonly IReadReplicaRouter _replicas;
+    private readonly ICatalogVersion _catalogVersion;
+    private readonly Counter<long> _hits;
+    private readonly Counter<long> _misses;
+
+    public EntityCache(
+        IMemoryCache cache,
+        IReadReplicaRouter replicas,
+        ICatalogVersion catalogVersion,
+        IMeterFactory meterFactory)
+    {
+        _cache = cache;
+        _replicas = replicas;
+        _catalogVersion = catalogVersion;
+
+        var meter = meterFactory.Create(MeterName);
+        _hits = meter.CreateCounter<long>("entity_cache.hits", description: "Second-level cache hits by region");
+        _misses = meter.CreateCounter<long>("entity_cache.misses", description: "Second-level cache misses by region");
+    }
+
+    public async Task<Product?> GetProductAsync(int productId, CancellationToken cancellationToken = default)
+    {
+        var key = $"product_{productId}";
+        if (_cache.TryGetValue(key, out Product? cached))
+        {
+            Record("product", hit: true);
+            return cached;
+        }
+
+        Record("product", hit: false);
+        // Taken before the query so a change committed while it runs drops the entry
+        var changeToken = _catalogVersion.GetChangeToken();
+        Product? product;
+        await using (var db = _replicas.CreateReadContext())
+        {
+            product = await db.Products.SingleOrDefaultAsync(p => p.ProductId == productId, cancellationToken);
+        }
+
+        if (product is null) return null;
+
+        product.Category = await GetCategoryAsync(product.CategoryId, cancellationToken);
+        var options = new MemoryCacheEntryOptions { AbsoluteExpirationRelativeToNow = TimeSpan.FromMinutes(10) };
+        options.AddExpirationToken(changeToken);
+        return _cache.Set(key, product, options);
+    }
+
+    public async Task<IReadOnlyList<Category>> GetCategoriesAsync(CancellationToken cancellationToken = default)
+    {
+        if (_cache.TryGetValue(CategoriesKey, out List<Category>? cached))
+        {
+            Record("category", hit: true);
+            return cached!;
+        }
+
+        Record("category", hit: false);
+        await using var db = _replicas.CreateReadContext();
+        var categories = await db.Categories.ToListAsync(cancellationToken);
+        return _cache.Set(CategoriesKey, categories, TimeSpan.FromHours(1));
+    }
+
+    public async Task<Category?> GetCategoryAsync(int categoryId, CancellationToken cancellationToken = default)
+        => (await GetCategoriesAsync(cancellationToken)).FirstOrDefault(c => c.CategoryId == categoryId);
+
+    public async Task<T> GetOrQueryAsync<T>(string key, Func<PartsUnlimitedContext, Task<T>> query)
+    {
+        var cacheKey = $"query_{key}";
+        if (_cache.TryGetValue(cacheKey, out T? cached))
+        {
+            Record("query", hit: true);
+            return cached!;
+        }
+
+        Record("query", hit: false);
+        var changeToken = _catalogVersion.GetChangeToken();
+        T result;
+        await using (var db = _replicas.CreateReadContext())
+        {
+            result = await query(db);
+        }
+
+        using var entry = _cache.CreateEntry(cacheKey);
+        entry.Value = result;
+        entry.AbsoluteExpirationRelativeToNow = TimeSpan.FromMinutes(10);
+        entry.AddExpirationToken(changeToken);
+        return result;
+    }
+
+    public void EvictProduct(int productId) => _cache.Remove($"product_{productId}");
+
+    private void Record(string region, bool hit)
+        => (hit ? _hits : _misses).Add(1, new KeyValuePair<string, object?>("region", region));
+}
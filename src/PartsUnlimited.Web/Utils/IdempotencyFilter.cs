@@ -0,0 +1,233 @@
+using System.Collections.Concurrent;
+using System.Security.Cryptography;
+using Microsoft.AspNetCore.Mvc;
+using Microsoft.AspNetCore.Mvc.Filters;
+
+namespace PartsUnlimited.Utils;
+
+/// <summary>
+/// Makes a write action safe to retry. A request carrying an
+/// "Idempotency-Key" header runs once; a later request with the same key
+/// (same client, method and path) gets the stored status, Location and body
+/// back with "Idempotent-Replayed: true" and never reaches the action.
+/// Duplicates arriving while the first is still running wait for it and
+/// replay its response instead of running concurrently: on the same pod they
+/// await it directly; across pods the first claims the key in the store for
+/// "Idempotency:ClaimSeconds" and the others poll for its record for up to
+/// "Idempotency:WaitSeconds", then get 409. If the store cannot be reached
+/// the request is answered with 503 rather than run unguarded. Reusing a key
+/// with a different request body is answered with 422.
+/// Only responses below 500 are stored, so a failed attempt can be retried
+/// under the same key. Requests without the header are not affected.
+/// The client is the signed-in user, or the client IP address (after
+/// forwarded headers) for anonymous requests, so anonymous callers do not
+/// share one key space.
+/// </summary>
+public class IdempotencyFilter : IAsyncResourceFilter
+{
+    public const string HeaderName = "Idempotency-Key";
+    private const int MaxKeyLength = 200;
+    private static readonly TimeSpan PollInterval = TimeSpan.FromMilliseconds(100);
+
+    private readonly IIdempotencyStore _store;
+    private readonly ILogger<IdempotencyFilter> _logger;
+    private readonly int _maxBodyBytes;
+    private readonly TimeSpan _claimLease;
+    private readonly TimeSpan _maxWait;
+    private readonly ConcurrentDictionary<string, Task<IdempotencyRecord?>> _inFlight = new();
+
+    public IdempotencyFilter(IIdempotencyStore store, IConfiguration config, ILogger<IdempotencyFilter> logger)
+    {
+        _store = store;
+        _logger = logger;
+        _maxBodyBytes = config.GetValue("Idempotency:MaxResponseBytes", 256 * 1024);
+        _claimLease = TimeSpan.FromSeconds(config.GetValue("Idempotency:ClaimSeconds", 30));
+        _maxWait = TimeSpan.FromSeconds(config.GetValue("Idempotency:WaitSeconds", 10));
+    }
+
+    public async Task OnResourceExecutionAsync(ResourceExecutingContext context, ResourceExecutionDelegate next)
+    {
+        var http = context.HttpContext;
+        var idempotencyKey = http.Request.Headers[HeaderName].ToString();
+        if (string.IsNullOrEmpty(idempotencyKey))
+        {
+            await next();
+            return;
+        }
+        if (idempotencyKey.Length > MaxKeyLength)
+        {
+            context.Result = new BadRequestObjectResult($"{HeaderName} must be at most {MaxKeyLength} characters");
+            return;
+        }
+
+        var key = $"{ClientOf(http)}:{http.Request.Method}:{http.Request.Path}:{idempotencyKey}";
+        var fingerprint = await FingerprintAsync(http.Request);
+
+        IdempotencyRecord? stored;
+        try
+        {
+            stored = await _store.GetAsync(key, http.RequestAborted);
+        }
+        catch (Exception ex) when (ex is not OperationCanceledException)
+        {
+            Unavailable(context, ex);
+            return;
+        }
+        if (stored is not null)
+        {
+            await ReplayAsync(context, stored, fingerprint);
+            return;
+        }
+
+        var completion = new TaskCompletionSource<IdempotencyRecord?>(TaskCreationOptions.RunContinuationsAsynchronously);
+        var running = _inFlight.GetOrAdd(key, completion.Task);
+        if (running != completion.Task)
+        {
+            var original = await running.WaitAsync(http.RequestAborted);
+            if (original is null)
+            {
+                // The original attempt failed and stored nothing; the client may retry
+                Conflict(context);
+                return;
+            }
+            await ReplayAsync(context, original, fingerprint);
+            return;
+        }
+
+        IdempotencyRecord? record = null;
+        var owner = Guid.NewGuid().ToString("n");
+        var claimed = false;
+        try
+        {
+            try
+            {
+                claimed = await _store.TryClaimAsync(key, owner, _claimLease, http.RequestAborted);
+                // The previous owner of the key may have finished between the lookup and the claim
+                record = claimed
+                    ? await _store.GetAsync(key, http.RequestAborted)
+                    : await WaitForRecordAsync(key, http.RequestAborted);
+            }
+            catch (Exception ex) when (ex is not OperationCanceledException)
+            {
+                Unavailable(context, ex);
+                return;
+            }
+
+            if (record is not null)
+            {
+                await ReplayAsync(context, record, fingerprint);
+                return;
+            }
+            if (!claimed)
+            {
+                // Another pod still holds the key, or failed without storing a response
+                Conflict(context);
+                return;
+            }
+
+            record = await ExecuteAndCaptureAsync(http, next, fingerprint);
+            if (record is not null)
+                await _store.SetAsync(key, record, CancellationToken.None);
+        }
+        finally
+        {
+            if (claimed)
+                await _store.ReleaseAsync(key, owner, CancellationToken.None);
+            completion.SetResult(record);
+            _inFlight.TryRemove(key, out _);
+        }
+    }
+
+    /// <summary>Polls for the record of a request another pod is running.</summary>
+    private async Task<IdempotencyRecord?> WaitForRecordAsync(string key, CancellationToken cancellationToken)
+    {
+        var deadline = DateTime.UtcNow + _maxWait;
+        while (DateTime.UtcNow < deadline)
+        {
+            await Task.Delay(PollInterval, cancellationToken);
+            if (await _store.GetAsync(key, cancellationToken) is { } record)
+                return record;
+        }
+        return null;
+    }
+
+    private void Unavailable(ResourceExecutingContext context, Exception ex)
+    {
+        _logger.LogWarning(ex, "Idempotency store unavailable; refusing to run the request unguarded");
+        context.HttpContext.Response.Headers.RetryAfter = "5";
+        context.Result = new StatusCodeResult(StatusCodes.Status503ServiceUnavailable);
+    }
+
+    private static void Conflict(ResourceExecutingContext context)
+    {
+        context.HttpContext.Response.Headers.RetryAfter = "1";
+        context.Result = new StatusCodeResult(StatusCodes.Status409Conflict);
+    }
+
+    private async Task<IdempotencyRecord?> ExecuteAndCaptureAsync(HttpContext http, ResourceExecutionDelegate next, string fingerprint)
+    {
+        var original = http.Response.Body;
+        using var buffer = new MemoryStream();
+        http.Response.Body = buffer;
+        ResourceExecutedContext executed;
+        try
+        {
+            executed = await next();
+        }
+        finally
+        {
+            http.Response.Body = original;
+            buffer.Position = 0;
+            await buffer.CopyToAsync(original, http.RequestAborted);
+        }
+
+        var response = http.Response;
+        if (executed.Exception is not null && !executed.ExceptionHandled) return null;
+        if (response.StatusCode >= StatusCodes.Status500InternalServerError) return null;
+        if (buffer.Length > _maxBodyBytes)
+        {
+            _logger.LogWarning("Response of {Length} bytes is too large to store for idempotent replay", buffer.Length);
+            return null;
+        }
+
+        return new IdempotencyRecord(
+            fingerprint,
+            response.StatusCode,
+            response.ContentType,
+            response.Headers.Location.ToString() is { Length: > 0 } location ? location : null,
+            buffer.ToArray());
+    }
+
+    private static async Task ReplayAsync(ResourceExecutingContext context, IdempotencyRecord record, string fingerprint)
+    {
+        if (record.Fingerprint != fingerprint)
+        {
+            context.Result = new UnprocessableEntityObjectResult($"{HeaderName} was already used with a different request body");
+            return;
+        }
+
+        var response = context.HttpContext.Response;
+        response.StatusCode = record.StatusCode;
+        response.ContentType = record.ContentType;
+        if (record.Location is not null)
+            response.Headers.Location = record.Location;
+        response.Headers["Idempotent-Replayed"] = "true";
+        response.ContentLength = record.Body.Length;
+        await response.Body.WriteAsync(record.Body, context.HttpContext.RequestAborted);
+        context.Result = new EmptyResult();
+    }
+
+    private static string ClientOf(HttpContext http)
+        => http.User.Identity is { IsAuthenticated: true, Name: { } name }
+            ? $"user:{name}"
+            : $"anon:{http.Connection.RemoteIpAddress}";
+
+    private static async Task<string> FingerprintAsync(HttpRequest request)
+    {
+        // Buffer the body so model binding can read it again afterwards
+        request.EnableBuffering();
+        var hash = await SHA256.HashDataAsync(request.Body, request.HttpContext.RequestAborted);
+        request.Body.Position = 0;
+        return Convert.ToHexString(hash);
+    }
+}
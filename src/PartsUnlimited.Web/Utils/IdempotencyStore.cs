@@ -0,0 +1,169 @@
+using System.Text.Json;
+using Microsoft.Extensions.Caching.Memory;
+using StackExchange.Redis;
+
+namespace PartsUnlimited.Utils;
+
+/// <summary>A completed response stored under an idempotency key, replayed verbatim.</summary>
+public sealed record IdempotencyRecord(
+    string Fingerprint,
+    int StatusCode,
+    string? ContentType,
+    string? Location,
+    byte[] Body);
+
+public interface IIdempotencyStore
+{
+    Task<IdempotencyRecord?> GetAsync(string key, CancellationToken cancellationToken);
+    Task SetAsync(string key, IdempotencyRecord record, CancellationToken cancellationToken);
+
+    /// <summary>
+    /// Marks the key as being executed by <paramref name="owner"/> for at most
+    /// <paramref name="lease"/>. False when another request holds the claim.
+    /// </summary>
+    Task<bool> TryClaimAsync(string key, string owner, TimeSpan lease, CancellationToken cancellationToken);
+
+    /// <summary>Drops the claim if <paramref name="owner"/> still holds it.</summary>
+    Task ReleaseAsync(string key, string owner, CancellationToken cancellationToken);
+}
+
+/// <summary>
+/// Bounded, expiring in-process store: at most "Idempotency:MaxEntries" records,
+/// each kept for "Idempotency:RetentionMinutes". It has its own MemoryCache so
+/// the size limit does not apply to (or get exhausted by) the app's cache.
+/// Claims only cover this process, which is enough for a single pod.
+/// </summary>
+public class MemoryIdempotencyStore : IIdempotencyStore, IDisposable
+{
+    private readonly MemoryCache _cache;
+    private readonly TimeSpan _retention;
+    private readonly Dictionary<string, (string Owner, DateTime ExpiresAt)> _claims = new();
+
+    public MemoryIdempotencyStore(IConfiguration config)
+    {
+        _cache = new MemoryCache(new MemoryCacheOptions
+        {
+            SizeLimit = Math.Max(1, config.GetValue("Idempotency:MaxEntries", 10_000))
+        });
+        _retention = TimeSpan.FromMinutes(config.GetValue("Idempotency:RetentionMinutes", 60));
+    }
+
+    public Task<IdempotencyRecord?> GetAsync(string key, CancellationToken cancellationToken)
+        => Task.FromResult(_cache.Get<IdempotencyRecord>(key));
+
+    public Task SetAsync(string key, IdempotencyRecord record, CancellationToken cancellationToken)
+    {
+        _cache.Set(key, record, new MemoryCacheEntryOptions
+        {
+            Size = 1,
+            AbsoluteExpirationRelativeToNow = _retention
+        });
+        return Task.CompletedTask;
+    }
+
+    public Task<bool> TryClaimAsync(string key, string owner, TimeSpan lease, CancellationToken cancellationToken)
+    {
+        var now = DateTime.UtcNow;
+        lock (_claims)
+        {
+            if (_claims.TryGetValue(key, out var claim) && claim.ExpiresAt > now)
+                return Task.FromResult(false);
+
+            _claims[key] = (owner, now + lease);
+            return Task.FromResult(true);
+        }
+    }
+
+    public Task ReleaseAsync(string key, string owner, CancellationToken cancellationToken)
+    {
+        lock (_claims)
+        {
+            if (_claims.TryGetValue(key, out var claim) && claim.Owner == owner)
+                _claims.Remove(key);
+        }
+        return Task.CompletedTask;
+    }
+
+    public void Dispose() => _cache.Dispose();
+}
+
+/// <summary>
+/// Memory tier in front of Redis ("Idempotency:RedisConnection"), so a retry
+/// that lands on another pod still replays the original response. Claims are
+/// taken in Redis only (SET NX with the lease as TTL), so two pods never run
+/// the same key at once. Lookups and claims that fail in Redis throw rather
+/// than degrade to the memory tier: that would let a retry on another pod
+/// execute the write a second time. Only storing the finished record is best
+/// effort, since the write has already happened by then.
+/// </summary>
+public sealed class TieredIdempotencyStore : IIdempotencyStore, IDisposable
+{
+    private readonly MemoryIdempotencyStore _memory;
+    private readonly ConnectionMultiplexer _redis;
+    private readonly ILogger<TieredIdempotencyStore> _logger;
+    private readonly TimeSpan _retention;
+
+    public TieredIdempotencyStore(
+        MemoryIdempotencyStore memory,
+        IConfiguration config,
+        ILogger<TieredIdempotencyStore> logger)
+    {
+        _memory = memory;
+        _logger = logger;
+        _retention = TimeSpan.FromMinutes(config.GetValue("Idempotency:RetentionMinutes", 60));
+
+        var options = ConfigurationOptions.Parse(config["Idempotency:RedisConnection"]!);
+        options.AbortOnConnectFail = false;
+        _redis = ConnectionMultiplexer.Connect(options);
+    }
+
+    public async Task<IdempotencyRecord?> GetAsync(string key, CancellationToken cancellationToken)
+    {
+        var record = await _memory.GetAsync(key, cancellationToken);
+        if (record is not null) return record;
+
+        var value = await _redis.GetDatabase().StringGetAsync(RecordKey(key));
+        if (value.IsNullOrEmpty) return null;
+
+        record = JsonSerializer.Deserialize<IdempotencyRecord>((byte[])value!);
+        if (record is not null)
+            await _memory.SetAsync(key, record, cancellationToken);
+        return record;
+    }
+
+    public async Task SetAsync(string key, IdempotencyRecord record, CancellationToken cancellationToken)
+    {
+        await _memory.SetAsync(key, record, cancellationToken);
+        try
+        {
+            await _redis.GetDatabase().StringSetAsync(
+                RecordKey(key), JsonSerializer.SerializeToUtf8Bytes(record), _retention);
+        }
+        catch (Exception ex) when (ex is RedisException or TimeoutException)
+        {
+            _logger.LogError(ex, "Storing an idempotency record in Redis failed; only this pod can replay it");
+        }
+    }
+
+    public Task<bool> TryClaimAsync(string key, string owner, TimeSpan lease, CancellationToken cancellationToken)
+        => _redis.GetDatabase().LockTakeAsync(ClaimKey(key), owner, lease);
+
+    public async Task ReleaseAsync(string key, string owner, CancellationToken cancellationToken)
+    {
+        try
+        {
+            await _redis.GetDatabase().LockReleaseAsync(ClaimKey(key), owner);
+        }
+        catch (Exception ex) when (ex is RedisException or TimeoutException)
+        {
+            // The claim lapses with its lease
+            _logger.LogWarning(ex, "Releasing an idempotency claim in Redis failed");
+        }
+    }
+
+    public void Dispose() => _redis.Dispose();
+
+    private static string RecordKey(string key) => $"idempotency:{key}";
+
+    private static string ClaimKey(string key) => $"idempotency:{key}:claim";
+}
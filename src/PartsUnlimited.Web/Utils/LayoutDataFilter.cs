@@ -13,23 +13,25 @@ public class LayoutDataFilter : IAsyncActionFilter
 {
     private readonly IPartsUnlimitedContext _db;
     private readonly IMemoryCache _cache;
+    private readonly IEntityCache _entityCache;
     private readonly IHttpContextAccessor _httpContextAccessor;
 
-    public LayoutDataFilter(IPartsUnlimitedContext db, IMemoryCache cache, IHttpContextAccessor httpContextAccessor)
+    public LayoutDataFilter(
+        IPartsUnlimitedContext db,
+        IMemoryCache cache,
+        IEntityCache entityCache,
+        IHttpContextAccessor httpContextAccessor)
     {
         _db = db;
         _cache = cache;
+        _entityCache = entityCache;
         _httpContextAccessor = httpContextAccessor;
     }
 
     public async Task OnActionExecutionAsync(ActionExecutingContext context, ActionExecutionDelegate next)
     {
         // Populate categories for the nav category bar
-        var categories = await _cache.GetOrCreateAsync("nav_categories", async entry =>
-        {
-            entry.AbsoluteExpirationRelativeToNow = TimeSpan.FromMinutes(10);
-            return await _db.Categories.ToListAsync();
-        });
+        var categories = await _entityCache.GetCategoriesAsync();
 
         // Populate latest product for announcement banner
         var latestProduct = await _cache.GetOrCreateAsync("latestProduct", async entry =>
@@ -40,7 +42,7 @@ public async Task OnActionExecutionAsync(ActionExecutingContext context, ActionE
 
         if (context.Controller is Microsoft.AspNetCore.Mvc.Controller controller)
         {
-            controller.ViewBag.Categories = categories ?? new List<Category>();
+            controller.ViewBag.Categories = categories;
             controller.ViewBag.Product = latestProduct;
         }
 
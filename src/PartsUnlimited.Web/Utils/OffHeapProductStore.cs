@@ -0,0 +1,390 @@
+using System.Collections;
+using System.Runtime.InteropServices;
+using System.Text;
+using PartsUnlimited.Models;
+
+namespace PartsUnlimited.Utils;
+
+/// <summary>
+/// Immutable product table held in native (unmanaged) memory so a very large
+/// catalog adds nothing for the GC to trace or compact. Each product is a
+/// fixed-layout record in a segment of RecordsPerSegment slots; strings live
+/// UTF-8 encoded in separate arena chunks and are decoded on access. The
+/// id→slot index is a Dictionary&lt;int, int&gt;, whose entries contain no
+/// references and are therefore never scanned.
+/// Segments and chunks are append-only and shared between successive stores:
+/// a catalog change writes the changed records into fresh slots past the end
+/// of the previous store (which never reads beyond its own end) and copies
+/// only the index, so unchanged records are never copied. Each native block is
+/// owned by a SafeHandle that every read holds a reference on; a block is
+/// released (with its GC memory pressure) once no store or ProductView that
+/// can reach it is left. Superseded slots are reclaimed by compacting into new
+/// blocks when they outnumber the live ones, or when the same store is
+/// extended twice, since only one successor may write past its end.
+/// </summary>
+public sealed unsafe class OffHeapProductStore : IReadOnlyCollection<ProductView>
+{
+    private const int SegmentShift = 12;
+    private const int RecordsPerSegment = 1 << SegmentShift;
+    private const int ChunkBytes = 1 << 20;
+
+    [StructLayout(LayoutKind.Sequential)]
+    internal struct StringRef
+    {
+        public int Chunk;
+        public int Offset;
+        public int Length;
+    }
+
+    [StructLayout(LayoutKind.Sequential)]
+    internal struct Record
+    {
+        public int ProductId;
+        public int CategoryId;
+        public int RecommendationId;
+        public int Inventory;
+        public int LeadTime;
+        public decimal Price;
+        public decimal SalePrice;
+        public long CreatedTicks;
+        public long UpdatedTicks;
+        public StringRef SkuNumber;
+        public StringRef Title;
+        public StringRef ProductArtUrl;
+        public StringRef Description;
+        public StringRef ProductDetails;
+    }
+
+    /// <summary>One native allocation, and the GC memory pressure reported for it.</summary>
+    private sealed class NativeBlock : SafeHandle
+    {
+        public NativeBlock(long bytes) : base(IntPtr.Zero, ownsHandle: true)
+        {
+            var memory = NativeMemory.Alloc((nuint)Math.Max(bytes, 1));
+            try
+            {
+                // AddMemoryPressure rejects 0
+                if (bytes > 0) GC.AddMemoryPressure(bytes);
+            }
+            catch
+            {
+                NativeMemory.Free(memory);
+                throw;
+            }
+
+            Bytes = bytes;
+            SetHandle((IntPtr)memory);
+        }
+
+        public long Bytes { get; }
+
+        public override bool IsInvalid => handle == IntPtr.Zero;
+
+        protected override bool ReleaseHandle()
+        {
+            NativeMemory.Free((void*)handle);
+            if (Bytes > 0) GC.RemoveMemoryPressure(Bytes);
+            return true;
+        }
+    }
+
+    private readonly Dictionary<int, int> _index;
+    private NativeBlock[] _segments;
+    private NativeBlock[] _chunks;
+    private int _slots;
+    private long _chunkUsed;
+    private long _stringBytes;
+    private long _liveStringBytes;
+    private int _extended;
+
+    private OffHeapProductStore(int capacity)
+    {
+        _index = new Dictionary<int, int>(capacity);
+        _segments = [];
+        _chunks = [];
+    }
+
+    private OffHeapProductStore(OffHeapProductStore previous)
+    {
+        // Same-comparer Dictionary copies are a flat array copy
+        _index = new Dictionary<int, int>(previous._index);
+        _segments = previous._segments;
+        _chunks = previous._chunks;
+        _slots = previous._slots;
+        _chunkUsed = previous._chunkUsed;
+        _stringBytes = previous._stringBytes;
+        _liveStringBytes = previous._liveStringBytes;
+    }
+
+    public int Count => _index.Count;
+
+    public long AllocatedBytes => _segments.Sum(b => b.Bytes) + _chunks.Sum(b => b.Bytes);
+
+    public bool TryGet(int productId, out ProductView view)
+    {
+        if (_index.TryGetValue(productId, out var slot))
+        {
+            view = new ProductView(this, slot);
+            return true;
+        }
+
+        view = default;
+        return false;
+    }
+
+    public IEnumerator<ProductView> GetEnumerator()
+    {
+        foreach (var slot in _index.Values)
+            yield return new ProductView(this, slot);
+    }
+
+    IEnumerator IEnumerable.GetEnumerator() => GetEnumerator();
+
+    internal Record RecordAt(int slot)
+    {
+        var block = _segments[slot >> SegmentShift];
+        var added = false;
+        block.DangerousAddRef(ref added);
+        try
+        {
+            return ((Record*)block.DangerousGetHandle())[slot & (RecordsPerSegment - 1)];
+        }
+        finally
+        {
+            if (added) block.DangerousRelease();
+        }
+    }
+
+    internal string ReadString(StringRef value)
+    {
+        if (value.Length == 0) return string.Empty;
+
+        var block = _chunks[value.Chunk];
+        var added = false;
+        block.DangerousAddRef(ref added);
+        try
+        {
+            return Encoding.UTF8.GetString((byte*)block.DangerousGetHandle() + value.Offset, value.Length);
+        }
+        finally
+        {
+            if (added) block.DangerousRelease();
+        }
+    }
+
+    /// <summary>
+    /// Builds a store holding the records of <paramref name="previous"/>, less
+    /// <paramref name="removedIds"/>, overlaid with <paramref name="changed"/>.
+    /// Pass a null previous store to build from scratch. The previous store
+    /// stays valid and unchanged.
+    /// </summary>
+    public static OffHeapProductStore Build(
+        OffHeapProductStore? previous,
+        IReadOnlyCollection<Product> changed,
+        IReadOnlySet<int>? removedIds = null)
+    {
+        OffHeapProductStore store;
+        if (previous is null)
+        {
+            store = new OffHeapProductStore(changed.Count);
+        }
+        else if (Interlocked.Exchange(ref previous._extended, 1) != 0)
+        {
+            // Another store already owns the space past previous's end
+            return Compact(previous, changed, removedIds);
+        }
+        else
+        {
+            store = new OffHeapProductStore(previous);
+            foreach (var id in removedIds ?? Enumerable.Empty<int>())
+                store.Remove(id);
+        }
+
+        foreach (var product in changed)
+        {
+            store.Remove(product.ProductId);
+            store.Append(product);
+        }
+
+        var dead = store._slots - store._index.Count;
+        return dead > Math.Max(store._index.Count, RecordsPerSegment)
+            || store._stringBytes - store._liveStringBytes > Math.Max(store._liveStringBytes, ChunkBytes)
+            ? Compact(store, [], null)
+            : store;
+    }
+
+    /// <summary>Copies the live records of a store, less the changes, into new blocks.</summary>
+    private static OffHeapProductStore Compact(
+        OffHeapProductStore source,
+        IReadOnlyCollection<Product> changed,
+        IReadOnlySet<int>? removedIds)
+    {
+        var changedIds = changed.Select(p => p.ProductId).ToHashSet();
+        var store = new OffHeapProductStore(source._index.Count + changed.Count);
+        foreach (var (id, slot) in source._index)
+        {
+            if (changedIds.Contains(id) || (removedIds is not null && removedIds.Contains(id)))
+                continue;
+
+            var record = source.RecordAt(slot);
+            record.SkuNumber = store.CopyString(source, record.SkuNumber);
+            record.Title = store.CopyString(source, record.Title);
+            record.ProductArtUrl = store.CopyString(source, record.ProductArtUrl);
+            record.Description = store.CopyString(source, record.Description);
+            record.ProductDetails = store.CopyString(source, record.ProductDetails);
+            store.Add(record);
+        }
+
+        foreach (var product in changed)
+            store.Append(product);
+        return store;
+    }
+
+    private void Remove(int productId)
+    {
+        if (_index.Remove(productId, out var slot))
+            _liveStringBytes -= StringBytes(RecordAt(slot));
+    }
+
+    private void Append(Product product)
+    {
+        Add(new Record
+        {
+            ProductId = product.ProductId,
+            CategoryId = product.CategoryId,
+            RecommendationId = product.RecommendationId,
+            Inventory = product.Inventory,
+            LeadTime = product.LeadTime,
+            Price = product.Price,
+            SalePrice = product.SalePrice,
+            CreatedTicks = product.Created.Ticks,
+            UpdatedTicks = product.Updated.Ticks,
+            SkuNumber = WriteString(product.SkuNumber),
+            Title = WriteString(product.Title),
+            ProductArtUrl = WriteString(product.ProductArtUrl),
+            Description = WriteString(product.Description),
+            ProductDetails = WriteString(product.ProductDetails)
+        });
+    }
+
+    private void Add(in Record record)
+    {
+        var slot = _slots++;
+        if (slot >> SegmentShift == _segments.Length)
+            _segments = [.. _segments, new NativeBlock((long)RecordsPerSegment * sizeof(Record))];
+
+        ((Record*)_segments[slot >> SegmentShift].DangerousGetHandle())[slot & (RecordsPerSegment - 1)] = record;
+        _index[record.ProductId] = slot;
+        _liveStringBytes += StringBytes(record);
+    }
+
+    private StringRef WriteString(string value)
+    {
+        var length = Encoding.UTF8.GetByteCount(value);
+        if (length == 0) return default;
+
+        var result = Reserve(length, out var target);
+        Encoding.UTF8.GetBytes(value, new Span<byte>(target, length));
+        return result;
+    }
+
+    private StringRef CopyString(OffHeapProductStore source, StringRef value)
+    {
+        if (value.Length == 0) return default;
+
+        var result = Reserve(value.Length, out var target);
+        var block = source._chunks[value.Chunk];
+        Buffer.MemoryCopy((byte*)block.DangerousGetHandle() + value.Offset, target, value.Length, value.Length);
+        return result;
+    }
+
+    /// <summary>Claims <paramref name="length"/> bytes at the end of the last chunk, or in a new one.</summary>
+    private StringRef Reserve(int length, out byte* target)
+    {
+        if (_chunks.Length == 0 || _chunkUsed + length > _chunks[^1].Bytes)
+        {
+            _chunks = [.. _chunks, new NativeBlock(Math.Max(ChunkBytes, length))];
+            _chunkUsed = 0;
+        }
+
+        var offset = (int)_chunkUsed;
+        _chunkUsed += length;
+        _stringBytes += length;
+        target = (byte*)_chunks[^1].DangerousGetHandle() + offset;
+        return new StringRef { Chunk = _chunks.Length - 1, Offset = offset, Length = length };
+    }
+
+    private static long StringBytes(in Record record)
+        => (long)record.SkuNumber.Length + record.Title.Length + record.ProductArtUrl.Length
+            + record.Description.Length + record.ProductDetails.Length;
+}
+
+/// <summary>
+/// Read-only view of one catalog product: either a managed Product or a
+/// flyweight over an OffHeapProductStore record whose getters read straight
+/// from native memory (strings are decoded per access). Indexes and scans
+/// should read views and keep ids rather than materialized products.
+/// ToProduct() returns the managed instance itself (shared, treat it as
+/// read-only) or, off-heap, a detached copy.
+/// </summary>
+public readonly struct ProductView
+{
+    private readonly Product? _product;
+    private readonly OffHeapProductStore? _store;
+    private readonly int _slot;
+
+    public ProductView(Product product)
+    {
+        _product = product;
+        _store = null;
+        _slot = 0;
+    }
+
+    internal ProductView(OffHeapProductStore store, int slot)
+    {
+        _product = null;
+        _store = store;
+        _slot = slot;
+    }
+
+    private OffHeapProductStore.Record Record => _store!.RecordAt(_slot);
+
+    public int ProductId => _product?.ProductId ?? Record.ProductId;
+    public int CategoryId => _product?.CategoryId ?? Record.CategoryId;
+    public int RecommendationId => _product?.RecommendationId ?? Record.RecommendationId;
+    public int Inventory => _product?.Inventory ?? Record.Inventory;
+    public int LeadTime => _product?.LeadTime ?? Record.LeadTime;
+    public decimal Price => _product?.Price ?? Record.Price;
+    public decimal SalePrice => _product?.SalePrice ?? Record.SalePrice;
+    public DateTime Created => _product?.Created ?? new DateTime(Record.CreatedTicks, DateTimeKind.Utc);
+    public DateTime Updated => _product?.Updated ?? new DateTime(Record.UpdatedTicks, DateTimeKind.Utc);
+    public string SkuNumber => _product?.SkuNumber ?? _store!.ReadString(Record.SkuNumber);
+    public string Title => _product?.Title ?? _store!.ReadString(Record.Title);
+    public string ProductArtUrl => _product?.ProductArtUrl ?? _store!.ReadString(Record.ProductArtUrl);
+    public string Description => _product?.Description ?? _store!.ReadString(Record.Description);
+    public string ProductDetails => _product?.ProductDetails ?? _store!.ReadString(Record.ProductDetails);
+
+    public Product ToProduct()
+    {
+        if (_product is not null) return _product;
+
+        var record = Record;
+        return new Product
+        {
+            ProductId = record.ProductId,
+            CategoryId = record.CategoryId,
+            RecommendationId = record.RecommendationId,
+            Inventory = record.Inventory,
+            LeadTime = record.LeadTime,
+            Price = record.Price,
+            SalePrice = record.SalePrice,
+            Created = new DateTime(record.CreatedTicks, DateTimeKind.Utc),
+            Updated = new DateTime(record.UpdatedTicks, DateTimeKind.Utc),
+            SkuNumber = _store!.ReadString(record.SkuNumber),
+            Title = _store.ReadString(record.Title),
+            ProductArtUrl = _store.ReadString(record.ProductArtUrl),
+            Description = _store.ReadString(record.Description),
+            ProductDetails = _store.ReadString(record.ProductDetails)
+        };
+    }
+}
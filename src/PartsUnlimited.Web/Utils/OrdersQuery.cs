@@ -21,6 +21,7 @@ public class OrdersQuery : IOrdersQuery
         var query = _db.Orders
             .Include(o => o.OrderDetails)
                 .ThenInclude(od => od.Product)
+            .IgnoreQueryFilters()
             .AsQueryable();
 
         if (!string.IsNullOrWhiteSpace(username))
@@ -45,5 +46,6 @@ public class OrdersQuery : IOrdersQuery
         => await _db.Orders
             .Include(o => o.OrderDetails)
                 .ThenInclude(od => od.Product)
+            .IgnoreQueryFilters()
             .SingleOrDefaultAsync(o => o.OrderId == orderId);
 }
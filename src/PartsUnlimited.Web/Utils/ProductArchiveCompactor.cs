@@ -0,0 +1,86 @@
+using Microsoft.EntityFrameworkCore;
+using PartsUnlimited.Models;
+
+namespace PartsUnlimited.Utils;
+
+/// <summary>
+/// Moves products soft-deleted more than "SoftDelete:ArchiveAfterDays" ago out
+/// of the Products table into ArchivedProducts, so the hot table and its
+/// indexes only carry live rows and recently deleted ones. Rows move in
+/// batches of "SoftDelete:BatchSize" with one DELETE ... OUTPUT INTO statement
+/// each (atomic, short locks), every "SoftDelete:IntervalMinutes".
+/// Products still referenced by an order or raincheck stay in place so that
+/// history keeps resolving; cart items for archived products are removed by
+/// the existing cascade.
+/// </summary>
+public class ProductArchiveCompactor : BackgroundService
+{
+    private readonly IServiceScopeFactory _scopeFactory;
+    private readonly ILogger<ProductArchiveCompactor> _logger;
+    private readonly TimeSpan _archiveAfter;
+    private readonly TimeSpan _interval;
+    private readonly int _batchSize;
+
+    public ProductArchiveCompactor(
+        IServiceScopeFactory scopeFactory,
+        IConfiguration config,
+        ILogger<ProductArchiveCompactor> logger)
+    {
+        _scopeFactory = scopeFactory;
+        _logger = logger;
+        _archiveAfter = TimeSpan.FromDays(config.GetValue("SoftDelete:ArchiveAfterDays", 30));
+        _interval = TimeSpan.FromMinutes(config.GetValue("SoftDelete:IntervalMinutes", 60));
+        _batchSize = Math.Max(1, config.GetValue("SoftDelete:BatchSize", 500));
+    }
+
+    protected override async Task ExecuteAsync(CancellationToken stoppingToken)
+    {
+        using var timer = new PeriodicTimer(_interval);
+        do
+        {
+            try
+            {
+                var archived = await CompactAsync(stoppingToken);
+                if (archived > 0)
+                    _logger.LogInformation("Archived {Count} soft-deleted products", archived);
+            }
+            catch (Exception ex) when (!stoppingToken.IsCancellationRequested)
+            {
+                _logger.LogWarning(ex, "Product archive compaction failed");
+            }
+        }
+        while (await timer.WaitForNextTickAsync(stoppingToken));
+    }
+
+    private async Task<int> CompactAsync(CancellationToken cancellationToken)
+    {
+        await using var scope = _scopeFactory.CreateAsyncScope();
+        var db = scope.ServiceProvider.GetRequiredService<PartsUnlimitedContext>();
+        var cutoff = DateTime.UtcNow - _archiveAfter;
+
+        var total = 0;
+        int moved;
+        do
+        {
+            moved = await db.Database.ExecuteSqlInterpolatedAsync($"""
+                DELETE TOP ({_batchSize}) p
+                OUTPUT DELETED.ProductId, DELETED.Title, DELETED.Price, DELETED.SalePrice,
+                       DELETED.ProductArtUrl, DELETED.Description, DELETED.CategoryId, DELETED.SkuNumber,
+                       DELETED.RecommendationId, DELETED.Created, DELETED.Updated, DELETED.DeletedAt,
+                       DELETED.ProductDetails, DELETED.Inventory, DELETED.LeadTime
+                INTO ArchivedProducts (ProductId, Title, Price, SalePrice,
+                       ProductArtUrl, Description, CategoryId, SkuNumber,
+                       RecommendationId, Created, Updated, DeletedAt,
+                       ProductDetails, Inventory, LeadTime)
+                FROM Products p
+                WHERE p.DeletedAt < {cutoff}
+                  AND NOT EXISTS (SELECT 1 FROM OrderDetails od WHERE od.ProductId = p.ProductId)
+                  AND NOT EXISTS (SELECT 1 FROM RainChecks r WHERE r.ProductId = p.ProductId)
+                """, cancellationToken);
+            total += moved;
+        }
+        while (moved == _batchSize && !cancellationToken.IsCancellationRequested);
+
+        return total;
+    }
+}
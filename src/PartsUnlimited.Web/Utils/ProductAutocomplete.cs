@@ -0,0 +1,243 @@
+namespace PartsUnlimited.Utils;
+
+public sealed record AutocompleteSuggestion(int ProductId, string Title, string SkuNumber, int Distance);
+
+public interface IProductAutocomplete
+{
+    IReadOnlyList<AutocompleteSuggestion> Suggest(string query, int limit);
+}
+
+/// <summary>
+/// Search-as-you-type over product titles and SKUs, served from a trie built
+/// from IProductCatalog. Each title word, the whole title and the SKU are
+/// indexed lower-cased, so "ultra", "ultra t" and "tire" all reach
+/// "Ultra Tire". Prefix matches come first; if they do not fill the page the
+/// trie is walked again with a Levenshtein row per node, accepting subtrees
+/// whose prefix is within one edit (two for queries of six characters or
+/// more) of the query. The trie is built once from the catalog and then kept
+/// current from IProductCatalog.Changed: only the terms of changed and
+/// removed products are taken out and re-inserted (emptied branches are
+/// pruned); a full catalog reload rebuilds it. It holds only ids; titles and
+/// SKUs of the suggestions returned are read from catalog views.
+/// </summary>
+public class ProductAutocomplete : IProductAutocomplete, IDisposable
+{
+    public const int MaxLimit = 20;
+
+    private sealed class Node
+    {
+        public SortedList<char, Node> Children { get; } = new();
+        public List<int> ProductIds { get; } = new();
+    }
+
+    private readonly IProductCatalog _catalog;
+    private readonly ReaderWriterLockSlim _lock = new();
+    private readonly Dictionary<int, string[]> _terms = new();
+    private Node _root = new();
+
+    public ProductAutocomplete(IProductCatalog catalog)
+    {
+        _catalog = catalog;
+        _catalog.Changed += OnCatalogChanged;
+        Reset(_catalog.Views);
+    }
+
+    public IReadOnlyList<AutocompleteSuggestion> Suggest(string query, int limit)
+    {
+        query = query.Trim().ToLowerInvariant();
+        limit = Math.Clamp(limit, 1, MaxLimit);
+        if (query.Length == 0) return [];
+
+        var found = new Dictionary<int, int>();
+        _lock.EnterReadLock();
+        try
+        {
+            var node = _root;
+            foreach (var c in query)
+            {
+                if (!node.Children.TryGetValue(c, out node!)) break;
+            }
+            if (node is not null) Collect(node, 0, found, limit);
+
+            var maxDistance = query.Length < 3 ? 0 : query.Length < 6 ? 1 : 2;
+            if (found.Count < limit && maxDistance > 0)
+            {
+                var row = Enumerable.Range(0, query.Length + 1).ToArray();
+                foreach (var (c, child) in _root.Children)
+                    Fuzzy(child, c, row, query, maxDistance, found, limit);
+            }
+        }
+        finally
+        {
+            _lock.ExitReadLock();
+        }
+
+        var suggestions = new List<AutocompleteSuggestion>(found.Count);
+        foreach (var (id, distance) in found)
+        {
+            // A product removed since the trie was last updated is skipped
+            if (_catalog.TryGetView(id, out var product))
+                suggestions.Add(new AutocompleteSuggestion(id, product.Title, product.SkuNumber, distance));
+        }
+
+        return suggestions
+            .OrderBy(s => s.Distance).ThenBy(s => s.Title, StringComparer.OrdinalIgnoreCase)
+            .Take(limit)
+            .ToList();
+    }
+
+    public void Dispose() => _catalog.Changed -= OnCatalogChanged;
+
+    private static void Fuzzy(
+        Node node, char c, int[] previous, string query, int maxDistance, Dictionary<int, int> found, int limit)
+    {
+        if (found.Count >= limit) return;
+
+        var row = new int[previous.Length];
+        row[0] = previous[0] + 1;
+        var best = row[0];
+        for (var i = 1; i < row.Length; i++)
+        {
+            var substitute = previous[i - 1] + (query[i - 1] == c ? 0 : 1);
+            row[i] = Math.Min(substitute, Math.Min(row[i - 1], previous[i]) + 1);
+            best = Math.Min(best, row[i]);
+        }
+
+        // The whole query is matched within budget: every term below this node qualifies
+        if (row[^1] <= maxDistance)
+        {
+            Collect(node, row[^1], found, limit);
+            return;
+        }
+
+        if (best > maxDistance) return;
+
+        foreach (var (next, child) in node.Children)
+            Fuzzy(child, next, row, query, maxDistance, found, limit);
+    }
+
+    private static void Collect(Node node, int distance, Dictionary<int, int> found, int limit)
+    {
+        foreach (var id in node.ProductIds)
+        {
+            if (found.Count >= limit) return;
+            found.TryAdd(id, distance);
+        }
+
+        foreach (var child in node.Children.Values)
+        {
+            if (found.Count >= limit) return;
+            Collect(child, distance, found, limit);
+        }
+    }
+
+    private void OnCatalogChanged(CatalogChange change)
+    {
+        if (change.Reset)
+        {
+            Reset(change.Changed.Select(p => new ProductView(p)));
+            return;
+        }
+
+        _lock.EnterWriteLock();
+        try
+        {
+            foreach (var id in change.Removed)
+                Remove(id);
+            foreach (var product in change.Changed)
+            {
+                Remove(product.ProductId);
+                Add(product.ProductId, TermsOf(product.Title, product.SkuNumber));
+            }
+        }
+        finally
+        {
+            _lock.ExitWriteLock();
+        }
+    }
+
+    private void Reset(IEnumerable<ProductView> catalog)
+    {
+        var terms = new Dictionary<int, string[]>();
+        var sorted = new List<(string Term, int ProductId)>();
+        foreach (var product in catalog)
+        {
+            var productTerms = TermsOf(product.Title, product.SkuNumber);
+            terms[product.ProductId] = productTerms;
+            foreach (var term in productTerms)
+                sorted.Add((term, product.ProductId));
+        }
+
+        // Sorted insertion keeps every SortedList append-only
+        sorted.Sort((a, b) => string.CompareOrdinal(a.Term, b.Term));
+
+        var root = new Node();
+        foreach (var (term, productId) in sorted)
+            Insert(root, term, productId);
+
+        _lock.EnterWriteLock();
+        try
+        {
+            _root = root;
+            _terms.Clear();
+            foreach (var (id, productTerms) in terms)
+                _terms[id] = productTerms;
+        }
+        finally
+        {
+            _lock.ExitWriteLock();
+        }
+    }
+
+    private void Add(int productId, string[] terms)
+    {
+        _terms[productId] = terms;
+        foreach (var term in terms)
+            Insert(_root, term, productId);
+    }
+
+    private void Remove(int productId)
+    {
+        if (!_terms.Remove(productId, out var terms)) return;
+        foreach (var term in terms)
+            Delete(_root, term, 0, productId);
+    }
+
+    private static void Insert(Node root, string term, int productId)
+    {
+        var node = root;
+        foreach (var c in term)
+        {
+            if (!node.Children.TryGetValue(c, out var child))
+                node.Children.Add(c, child = new Node());
+            node = child;
+        }
+        node.ProductIds.Add(productId);
+    }
+
+    /// <summary>Removes the id under term; returns whether the node is now empty and can be pruned.</summary>
+    private static bool Delete(Node node, string term, int depth, int productId)
+    {
+        if (depth == term.Length)
+        {
+            node.ProductIds.Remove(productId);
+        }
+        else if (node.Children.TryGetValue(term[depth], out var child) && Delete(child, term, depth + 1, productId))
+        {
+            node.Children.Remove(term[depth]);
+        }
+
+        return node.ProductIds.Count == 0 && node.Children.Count == 0;
+    }
+
+    private static string[] TermsOf(string title, string sku)
+    {
+        var lower = title.ToLowerInvariant();
+        return lower.Split(' ', StringSplitOptions.RemoveEmptyEntries | StringSplitOptions.TrimEntries)
+            .Skip(1)
+            .Prepend(sku.ToLowerInvariant())
+            .Prepend(lower)
+            .Distinct()
+            .ToArray();
+    }
+}
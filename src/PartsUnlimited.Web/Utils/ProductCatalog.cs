@@ -0,0 +1,223 @@
+using System.Collections;
+using PartsUnlimited.Models;
+
+namespace PartsUnlimited.Utils;
+
+/// <summary>
+/// One catalog update: the products added or changed (rows re-read with an
+/// unchanged Updated stamp are left out) and the ids removed.
+/// Reset means the whole catalog was replaced and derived state should be
+/// rebuilt from Products.
+/// </summary>
+public sealed record CatalogChange(IReadOnlyCollection<Product> Changed, IReadOnlyCollection<int> Removed, bool Reset);
+
+public interface IProductCatalog
+{
+    bool IsLoaded { get; }
+    Task WhenLoaded { get; }
+    DateTime Watermark { get; }
+    long Version { get; }
+    int Generation { get; }
+    IReadOnlyCollection<Product> Products { get; }
+    Product? Find(int productId);
+
+    /// <summary>Every product as a ProductView; nothing is materialized off-heap.</summary>
+    IReadOnlyCollection<ProductView> Views { get; }
+    bool TryGetView(int productId, out ProductView view);
+
+    void Replace(IEnumerable<Product> products, long version = 0);
+
+    /// <summary>
+    /// Applies a delta read with IgnoreQueryFilters: rows with DeletedAt set are
+    /// removed, the rest added or replaced. <paramref name="removed"/> lists
+    /// further ids to drop, e.g. rows found missing by a full id reconciliation.
+    /// </summary>
+    void Apply(IReadOnlyCollection<Product> delta, IReadOnlyCollection<int> removed, long version = 0);
+
+    /// <summary>Raised after each update is published, on the updating thread.</summary>
+    event Action<CatalogChange>? Changed;
+}
+
+/// <summary>
+/// In-memory copy of the product table, kept current by CatalogSnapshotService.
+/// Readers see an immutable state that is swapped atomically on every change,
+/// so lookups never lock. Watermark is the newest Product.Updated seen, i.e.
+/// the point from which the next delta must be read. Version is the
+/// ICatalogVersion value the loaded data is known to include, so callers can
+/// tell whether a product changed on this pod since the last sync.
+/// Generation increments on every swap; derived indexes compare it to know
+/// when to rebuild, or subscribe to Changed to update incrementally.
+/// With "Catalog:OffHeap" enabled the products are kept in an
+/// OffHeapProductStore instead of as managed objects; Find and Products then
+/// hand out short-lived copies materialized from native memory, while Views
+/// and TryGetView read fields in place. Indexes, scans and rankings should
+/// use views and keep ids, materializing only the products they return.
+/// </summary>
+public class ProductCatalog : IProductCatalog
+{
+    private sealed record State(
+        IReadOnlyDictionary<int, Product>? Products,
+        OffHeapProductStore? Store,
+        DateTime Watermark,
+        long Version)
+    {
+        public int Generation { get; init; }
+    }
+
+    private readonly TaskCompletionSource _loaded = new(TaskCreationOptions.RunContinuationsAsynchronously);
+    private readonly bool _offHeap;
+    private volatile State? _state;
+
+    public event Action<CatalogChange>? Changed;
+
+    public ProductCatalog(IConfiguration config)
+        => _offHeap = config.GetValue<bool>("Catalog:OffHeap");
+
+    public bool IsLoaded => _state is not null;
+
+    public Task WhenLoaded => _loaded.Task;
+
+    public DateTime Watermark => _state?.Watermark ?? DateTime.MinValue;
+
+    public long Version => _state?.Version ?? -1;
+
+    public int Generation => _state?.Generation ?? 0;
+
+    public IReadOnlyCollection<Product> Products => _state switch
+    {
+        { Store: { } store } => new MaterializedProducts(store),
+        { Products: { } products } => (IReadOnlyCollection<Product>)products.Values,
+        _ => []
+    };
+
+    public Product? Find(int productId) => _state switch
+    {
+        { Store: { } store } => store.TryGet(productId, out var view) ? view.ToProduct() : null,
+        { Products: { } products } => products.GetValueOrDefault(productId),
+        _ => null
+    };
+
+    public IReadOnlyCollection<ProductView> Views => _state switch
+    {
+        { Store: { } store } => store,
+        { Products: { } products } => new ManagedViews(products.Values),
+        _ => []
+    };
+
+    public bool TryGetView(int productId, out ProductView view)
+    {
+        switch (_state)
+        {
+            case { Store: { } store }:
+                return store.TryGet(productId, out view);
+            case { Products: { } products } when products.TryGetValue(productId, out var product):
+                view = new ProductView(product);
+                return true;
+            default:
+                view = default;
+                return false;
+        }
+    }
+
+    public void Replace(IEnumerable<Product> products, long version = 0)
+    {
+        var list = products as IReadOnlyCollection<Product> ?? products.ToList();
+        var watermark = list.Count == 0 ? DateTime.MinValue : list.Max(p => p.Updated);
+        Publish(_offHeap
+            ? new State(null, OffHeapProductStore.Build(null, list), watermark, version)
+            : new State(list.ToDictionary(p => p.ProductId), null, watermark, version));
+        Changed?.Invoke(new CatalogChange(list, [], Reset: true));
+    }
+
+    public void Apply(IReadOnlyCollection<Product> delta, IReadOnlyCollection<int> removed, long version = 0)
+    {
+        var current = _state;
+        if (current is null)
+        {
+            Replace(delta.Where(p => p.DeletedAt == null), version);
+            return;
+        }
+
+        var watermark = delta.Count == 0
+            ? current.Watermark
+            : new DateTime(Math.Max(current.Watermark.Ticks, delta.Max(p => p.Updated).Ticks));
+
+        // The delta lookback re-reads rows already applied; only report real changes
+        var reported = delta
+            .Where(p => p.DeletedAt == null && Updated(current, p.ProductId) != p.Updated)
+            .ToList();
+        var removedIds = delta
+            .Where(p => p.DeletedAt != null)
+            .Select(p => p.ProductId)
+            .Concat(removed)
+            .Where(id => Updated(current, id) is not null)
+            .ToHashSet();
+
+        if (reported.Count == 0 && removedIds.Count == 0)
+        {
+            // Nothing to rebuild: keep the data and Generation, so derived
+            // indexes stay valid, and only record how far the sync got
+            _state = current with { Watermark = watermark, Version = version };
+            return;
+        }
+
+        if (current.Store is not null)
+        {
+            Publish(new State(null, OffHeapProductStore.Build(current.Store, reported, removedIds), watermark, version));
+        }
+        else
+        {
+            var map = new Dictionary<int, Product>(current.Products!.Count);
+            foreach (var (id, product) in current.Products)
+            {
+                if (!removedIds.Contains(id)) map[id] = product;
+            }
+
+            foreach (var product in reported)
+                map[product.ProductId] = product;
+
+            Publish(new State(map, null, watermark, version));
+        }
+
+        Changed?.Invoke(new CatalogChange(reported, removedIds, Reset: false));
+    }
+
+    private static DateTime? Updated(State state, int productId) => state switch
+    {
+        { Store: { } store } => store.TryGet(productId, out var view) ? view.Updated : null,
+        { Products: { } products } => products.GetValueOrDefault(productId)?.Updated,
+        _ => null
+    };
+
+    private void Publish(State state)
+    {
+        _state = state with { Generation = (_state?.Generation ?? 0) + 1 };
+        _loaded.TrySetResult();
+    }
+
+    private sealed class MaterializedProducts(OffHeapProductStore store) : IReadOnlyCollection<Product>
+    {
+        public int Count => store.Count;
+
+        public IEnumerator<Product> GetEnumerator()
+        {
+            foreach (var view in store)
+                yield return view.ToProduct();
+        }
+
+        IEnumerator IEnumerable.GetEnumerator() => GetEnumerator();
+    }
+
+    private sealed class ManagedViews(IReadOnlyCollection<Product> products) : IReadOnlyCollection<ProductView>
+    {
+        public int Count => products.Count;
+
+        public IEnumerator<ProductView> GetEnumerator()
+        {
+            foreach (var product in products)
+                yield return new ProductView(product);
+        }
+
+        IEnumerator IEnumerable.GetEnumerator() => GetEnumerator();
+    }
+}
@@ -0,0 +1,130 @@
+using System.Data.Common;
+using System.Runtime.CompilerServices;
+using Microsoft.EntityFrameworkCore;
+using Microsoft.EntityFrameworkCore.ChangeTracking;
+using Microsoft.EntityFrameworkCore.Diagnostics;
+using PartsUnlimited.Models;
+
+namespace PartsUnlimited.Utils;
+
+/// <summary>
+/// Publishes a ProductChangeEvent to IProductEventBus for every product a
+/// SaveChanges inserts, updates, soft-deletes (DeletedAt set) or deletes, once
+/// the write has committed: right after SaveChanges when it ran in its own
+/// transaction, or when the caller's explicit transaction commits (nothing is
+/// published if it rolls back). Ids of inserted products are read after the
+/// save, so they carry their generated keys.
+/// </summary>
+public class ProductChangeInterceptor : SaveChangesInterceptor, IDbTransactionInterceptor
+{
+    private readonly IProductEventBus _bus;
+    private readonly ConditionalWeakTable<DbContext, List<(EntityEntry Entry, ProductChangeKind Kind)>> _saving = new();
+    private readonly ConditionalWeakTable<DbContext, List<ProductChangeEvent>> _uncommitted = new();
+
+    public ProductChangeInterceptor(IProductEventBus bus) => _bus = bus;
+
+    public override InterceptionResult<int> SavingChanges(DbContextEventData eventData, InterceptionResult<int> result)
+    {
+        Capture(eventData.Context);
+        return result;
+    }
+
+    public override ValueTask<InterceptionResult<int>> SavingChangesAsync(
+        DbContextEventData eventData, InterceptionResult<int> result, CancellationToken cancellationToken = default)
+    {
+        Capture(eventData.Context);
+        return ValueTask.FromResult(result);
+    }
+
+    public override int SavedChanges(SaveChangesCompletedEventData eventData, int result)
+    {
+        Saved(eventData.Context);
+        return result;
+    }
+
+    public override ValueTask<int> SavedChangesAsync(
+        SaveChangesCompletedEventData eventData, int result, CancellationToken cancellationToken = default)
+    {
+        Saved(eventData.Context);
+        return ValueTask.FromResult(result);
+    }
+
+    public override void SaveChangesFailed(DbContextErrorEventData eventData)
+    {
+        if (eventData.Context is not null) _saving.Remove(eventData.Context);
+    }
+
+    public override Task SaveChangesFailedAsync(DbContextErrorEventData eventData, CancellationToken cancellationToken = default)
+    {
+        SaveChangesFailed(eventData);
+        return Task.CompletedTask;
+    }
+
+    public void TransactionCommitted(DbTransaction transaction, TransactionEndEventData eventData)
+    {
+        if (eventData.Context is not null && _uncommitted.TryGetValue(eventData.Context, out var changes))
+        {
+            _uncommitted.Remove(eventData.Context);
+            _bus.Publish(changes, ProductEventSource.Local);
+        }
+    }
+
+    public Task TransactionCommittedAsync(DbTransaction transaction, TransactionEndEventData eventData, CancellationToken cancellationToken = default)
+    {
+        TransactionCommitted(transaction, eventData);
+        return Task.CompletedTask;
+    }
+
+    public void TransactionRolledBack(DbTransaction transaction, TransactionEndEventData eventData)
+    {
+        if (eventData.Context is not null) _uncommitted.Remove(eventData.Context);
+    }
+
+    public Task TransactionRolledBackAsync(DbTransaction transaction, TransactionEndEventData eventData, CancellationToken cancellationToken = default)
+    {
+        TransactionRolledBack(transaction, eventData);
+        return Task.CompletedTask;
+    }
+
+    private void Capture(DbContext? context)
+    {
+        if (context is null) return;
+
+        var entries = new List<(EntityEntry, ProductChangeKind)>();
+        foreach (var entry in context.ChangeTracker.Entries<Product>())
+        {
+            var kind = entry.State switch
+            {
+                EntityState.Added => ProductChangeKind.Created,
+                EntityState.Deleted => ProductChangeKind.Deleted,
+                EntityState.Modified when entry.Entity.DeletedAt is not null
+                    && entry.Property(p => p.DeletedAt).IsModified => ProductChangeKind.Deleted,
+                EntityState.Modified => ProductChangeKind.Updated,
+                _ => (ProductChangeKind?)null
+            };
+            if (kind is not null) entries.Add((entry, kind.Value));
+        }
+
+        if (entries.Count > 0) _saving.AddOrUpdate(context, entries);
+        else _saving.Remove(context);
+    }
+
+    private void Saved(DbContext? context)
+    {
+        if (context is null || !_saving.TryGetValue(context, out var entries)) return;
+        _saving.Remove(context);
+
+        var changes = entries
+            .Select(e => new ProductChangeEvent(((Product)e.Entry.Entity).ProductId, e.Kind))
+            .ToList();
+
+        if (context.Database.CurrentTransaction is null)
+        {
+            _bus.Publish(changes, ProductEventSource.Local);
+        }
+        else
+        {
+            _uncommitted.GetOrCreateValue(context).AddRange(changes);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+using System.Diagnostics.Metrics;
+using System.Text.Json;
+using Microsoft.Extensions.Caching.Memory;
+using StackExchange.Redis;
+
+namespace PartsUnlimited.Utils;
+
+/// <summary>Ordered by precedence when coalescing changes to one product.</summary>
+public enum ProductChangeKind
+{
+    Updated,
+    Created,
+    Deleted
+}
+
+/// <summary>
+/// One product change. Source is set by IProductEventBus when the change is
+/// published, so handlers can tell committed writes from catalog sync results.
+/// </summary>
+public sealed record ProductChangeEvent(
+    int ProductId,
+    ProductChangeKind Kind,
+    ProductEventSource Source = ProductEventSource.Local);
+
+/// <summary>
+/// Where a change was learned: a commit on this pod, another pod, or a catalog
+/// sync. Ordered by precedence when coalescing (a commit beats a sync).
+/// </summary>
+public enum ProductEventSource
+{
+    Local,
+    Remote,
+    Catalog
+}
+
+public interface IProductEventBus
+{
+    /// <summary>Queues changes for the next batch; never blocks on handlers.</summary>
+    void Publish(IEnumerable<ProductChangeEvent> changes, ProductEventSource source);
+}
+
+/// <summary>Receives coalesced batches of product changes from IProductEventBus.</summary>
+public interface IProductChangeHandler
+{
+    Task HandleAsync(IReadOnlyList<ProductChangeEvent> changes, CancellationToken cancellationToken);
+}
+
+/// <summary>Optional cross-node transport for locally committed product changes.</summary>
+public interface IProductEventTransport
+{
+    event Action<IReadOnlyList<ProductChangeEvent>>? Received;
+    Task PublishAsync(IReadOnlyList<ProductChangeEvent> changes, CancellationToken cancellationToken);
+}
+
+/// <summary>
+/// In-process product change bus. Changes come from three places:
+/// ProductChangeInterceptor after a SaveChanges commits on this pod, the
+/// IProductEventTransport (other pods' commits) and IProductCatalog.Changed
+/// (rows the catalog delta sync found changed, which covers writers outside
+/// this app as long as they stamp Product.Updated; the sync keys on that
+/// column, so a raw UPDATE that leaves it alone is never seen). Changes are coalesced per product id over
+/// "ProductEvents:BatchWindowMs" (Deleted beats Created beats Updated, and a
+/// Local or Remote source beats Catalog) and handed to every
+/// IProductChangeHandler as one batch. Only Local changes are forwarded to
+/// the transport, so pods never echo each other.
+/// </summary>
+public class ProductEventBus : BackgroundService, IProductEventBus
+{
+    public const string MeterName = "PartsUnlimited.ProductEvents";
+
+    private readonly IReadOnlyList<IProductChangeHandler> _handlers;
+    private readonly IProductCatalog _catalog;
+    private readonly IProductEventTransport? _transport;
+    private readonly ILogger<ProductEventBus> _logger;
+    private readonly TimeSpan _batchWindow;
+    private readonly object _sync = new();
+    private readonly SemaphoreSlim _signal = new(0);
+    private Dictionary<int, ProductChangeEvent> _pending = new();
+    private Dictionary<int, ProductChangeEvent> _pendingLocal = new();
+    private readonly Counter<long> _published;
+    private readonly Counter<long> _dispatched;
+
+    public ProductEventBus(
+        IEnumerable<IProductChangeHandler> handlers,
+        IProductCatalog catalog,
+        IConfiguration config,
+        IMeterFactory meterFactory,
+        ILogger<ProductEventBus> logger,
+        IProductEventTransport? transport = null)
+    {
+        _handlers = handlers.ToList();
+        _catalog = catalog;
+        _transport = transport;
+        _logger = logger;
+        _batchWindow = TimeSpan.FromMilliseconds(Math.Max(0, config.GetValue("ProductEvents:BatchWindowMs", 50)));
+
+        var meter = meterFactory.Create(MeterName);
+        _published = meter.CreateCounter<long>("product_events.published", description: "Product changes published, by source");
+        _dispatched = meter.CreateCounter<long>("product_events.dispatched", description: "Coalesced product changes handed to handlers");
+
+        _catalog.Changed += OnCatalogChanged;
+        if (_transport is not null)
+            _transport.Received += changes => Publish(changes, ProductEventSource.Remote);
+    }
+
+    public void Publish(IEnumerable<ProductChangeEvent> changes, ProductEventSource source)
+    {
+        var count = 0;
+        lock (_sync)
+        {
+            foreach (var change in changes)
+            {
+                var sourced = change with { Source = source };
+                Coalesce(_pending, sourced);
+                if (source == ProductEventSource.Local)
+                    Coalesce(_pendingLocal, sourced);
+                count++;
+            }
+        }
+        if (count == 0) return;
+
+        _published.Add(count, new KeyValuePair<string, object?>("source", source.ToString()));
+        if (_signal.CurrentCount == 0) _signal.Release();
+    }
+
+    public override void Dispose()
+    {
+        _catalog.Changed -= OnCatalogChanged;
+        base.Dispose();
+    }
+
+    protected override async Task ExecuteAsync(CancellationToken stoppingToken)
+    {
+        while (!stoppingToken.IsCancellationRequested)
+        {
+            await _signal.WaitAsync(stoppingToken);
+            // Let a burst of writes accumulate into one batch
+            if (_batchWindow > TimeSpan.Zero)
+                await Task.Delay(_batchWindow, stoppingToken);
+
+            Dictionary<int, ProductChangeEvent> pending, local;
+            lock (_sync)
+            {
+                (pending, _pending) = (_pending, new Dictionary<int, ProductChangeEvent>());
+                (local, _pendingLocal) = (_pendingLocal, new Dictionary<int, ProductChangeEvent>());
+            }
+            if (pending.Count == 0) continue;
+
+            var batch = pending.Values.ToList();
+            _dispatched.Add(batch.Count);
+            foreach (var handler in _handlers)
+            {
+                try
+                {
+                    await handler.HandleAsync(batch, stoppingToken);
+                }
+                catch (Exception ex) when (!stoppingToken.IsCancellationRequested)
+                {
+                    _logger.LogWarning(ex, "Product change handler {Handler} failed for {Count} changes", handler.GetType().Name, batch.Count);
+                }
+            }
+
+            if (_transport is not null && local.Count > 0)
+            {
+                try
+                {
+                    await _transport.PublishAsync(local.Values.ToList(), stoppingToken);
+                }
+                catch (Exception ex) when (!stoppingToken.IsCancellationRequested)
+                {
+                    _logger.LogWarning(ex, "Broadcasting {Count} product changes failed; other pods catch up on their next catalog sync", local.Count);
+                }
+            }
+        }
+    }
+
+    private void OnCatalogChanged(CatalogChange change)
+    {
+        // A full load is not a change to anything already cached
+        if (change.Reset) return;
+
+        Publish(
+            change.Changed.Select(p => new ProductChangeEvent(p.ProductId, ProductChangeKind.Updated))
+                .Concat(change.Removed.Select(id => new ProductChangeEvent(id, ProductChangeKind.Deleted))),
+            ProductEventSource.Catalog);
+    }
+
+    private static void Coalesce(Dictionary<int, ProductChangeEvent> pending, ProductChangeEvent change)
+    {
+        if (!pending.TryGetValue(change.ProductId, out var current))
+        {
+            pending[change.ProductId] = change;
+            return;
+        }
+
+        pending[change.ProductId] = new ProductChangeEvent(
+            change.ProductId,
+            change.Kind > current.Kind ? change.Kind : current.Kind,
+            change.Source < current.Source ? change.Source : current.Source);
+    }
+}
+
+/// <summary>
+/// Keeps per-product caches coherent with every published change: evicts the
+/// IEntityCache entry and the layout's latest-product entry and bumps
+/// ICatalogVersion, which re-keys ETags, expires IProductResponseCache
+/// entries and wakes CatalogSnapshotService. It first pins this pod's reads to
+/// the primary (IReadReplicaRouter.MarkWrite), so the refills that follow,
+/// which every client then shares, cannot come from a replica still missing
+/// the change, e.g. one written on another pod. This is the only place
+/// product writes invalidate anything; controllers just save. The catalog
+/// sync then refreshes IProductCatalog and, through its Changed event, every
+/// derived index (facets, autocomplete, slugs, promotions, restock levels).
+/// Catalog-sourced changes (writes made outside this app) are bumped like any
+/// other, since ETags are derived from the version alone; the sync ignores
+/// the bumps it caused itself.
+/// </summary>
+public class CacheInvalidationHandler : IProductChangeHandler
+{
+    private readonly IEntityCache _entityCache;
+    private readonly ICatalogVersion _catalogVersion;
+    private readonly IMemoryCache _cache;
+    private readonly IReadReplicaRouter _replicas;
+
+    public CacheInvalidationHandler(
+        IEntityCache entityCache,
+        ICatalogVersion catalogVersion,
+        IMemoryCache cache,
+        IReadReplicaRouter replicas)
+    {
+        _entityCache = entityCache;
+        _catalogVersion = catalogVersion;
+        _cache = cache;
+        _replicas = replicas;
+    }
+
+    public Task HandleAsync(IReadOnlyList<ProductChangeEvent> changes, CancellationToken cancellationToken)
+    {
+        _replicas.MarkWrite();
+        foreach (var change in changes)
+        {
+            _entityCache.EvictProduct(change.ProductId);
+            _catalogVersion.ProductChanged(change.ProductId);
+        }
+        _cache.Remove("latestProduct");
+        return Task.CompletedTask;
+    }
+}
+
+/// <summary>
+/// Redis pub/sub transport ("ProductEvents:RedisConnection"). Each pod tags
+/// its messages with a node id and ignores its own. Delivery is best effort:
+/// a pod that misses a message still converges on its next catalog sync.
+/// </summary>
+public sealed class RedisProductEventTransport : IProductEventTransport, IDisposable
+{
+    private const string Channel = "partsunlimited:product-changes";
+
+    private sealed record Message(string Node, List<ProductChangeEvent> Changes);
+
+    private readonly string _node = Guid.NewGuid().ToString("n");
+    private readonly ConnectionMultiplexer _redis;
+    private readonly RedisChannel _channel = new(Channel, RedisChannel.PatternMode.Literal);
+    private readonly ILogger<RedisProductEventTransport> _logger;
+
+    public event Action<IReadOnlyList<ProductChangeEvent>>? Received;
+
+    public RedisProductEventTransport(IConfiguration config, ILogger<RedisProductEventTransport> logger)
+    {
+        _logger = logger;
+        var options = ConfigurationOptions.Parse(config["ProductEvents:RedisConnection"]!);
+        options.AbortOnConnectFail = false;
+        _redis = ConnectionMultiplexer.Connect(options);
+        _redis.GetSubscriber().Subscribe(_channel, (_, value) => OnMessage(value));
+    }
+
+    public async Task PublishAsync(IReadOnlyList<ProductChangeEvent> changes, CancellationToken cancellationToken)
+    {
+        var payload = JsonSerializer.Serialize(new Message(_node, changes.ToList()));
+        await _redis.GetSubscriber().PublishAsync(_channel, payload);
+    }
+
+    public void Dispose() => _redis.Dispose();
+
+    private void OnMessage(RedisValue value)
+    {
+        try
+        {
+            var message = JsonSerializer.Deserialize<Message>(value.ToString());
+            if (message is null || message.Node == _node) return;
+            Received?.Invoke(message.Changes);
+        }
+        catch (JsonException ex)
+        {
+            _logger.LogWarning(ex, "Ignoring malformed product change message");
+        }
+    }
+}
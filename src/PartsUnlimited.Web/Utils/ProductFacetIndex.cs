@@ -0,0 +1,294 @@
+using System.Text.Json;
+using PartsUnlimited.Models;
+
+namespace PartsUnlimited.Utils;
+
+public sealed record CategoryFacet(int CategoryId, int Count);
+
+public sealed record TagFacet(string Tag, int Count);
+
+public sealed record PriceBucketFacet(decimal Min, decimal? Max, int Count);
+
+/// <summary>
+/// One page of matching products (ProductId order) with the facet counts for
+/// the whole match set; Total is the number of matching products.
+/// </summary>
+public sealed record FacetedSearchResult(
+    IReadOnlyList<Product> Products,
+    IReadOnlyList<CategoryFacet> Categories,
+    IReadOnlyList<TagFacet> Tags,
+    IReadOnlyList<PriceBucketFacet> PriceBuckets,
+    int Total,
+    int Page,
+    int PageSize);
+
+/// <summary>
+/// Tag predicate: every tag in All, at least one in Any (when non-empty),
+/// none in None.
+/// </summary>
+public sealed record TagQuery(
+    IReadOnlyCollection<string> All,
+    IReadOnlyCollection<string> Any,
+    IReadOnlyCollection<string> None)
+{
+    public bool IsEmpty => All.Count == 0 && Any.Count == 0 && None.Count == 0;
+}
+
+public interface IProductFacetIndex
+{
+    FacetedSearchResult Search(
+        string? q, int? categoryId, decimal? minPrice, decimal? maxPrice, TagQuery? tags, int page, int pageSize);
+}
+
+/// <summary>
+/// Bitmap index over IProductCatalog for faceted search: one RoaringBitmap
+/// per category, per tag, per sale-price bucket and per title/description
+/// trigram, plus the slots ordered by sale price, rebuilt when the catalog
+/// generation moves. A search builds a bitmap per active filter, ANDs them for
+/// the result, and counts each facet by intersecting its bitmap with the
+/// other filters (a facet never narrows its own counts), so the UI gets all
+/// counts from one call with no extra SQL.
+/// Text search intersects the trigram bitmaps of the query and confirms the
+/// substring match on those candidates only (queries under three characters
+/// still scan); a price range is two binary searches over the price order.
+/// Tags are the ProductDetails attributes, as "Key:Value"; tag queries
+/// (AND/OR/NOT) are evaluated as bitmap operations and compose with the
+/// other filters. The snapshot holds ProductViews, not product copies, and
+/// only the requested page of matches is materialized.
+/// </summary>
+public class ProductFacetIndex : IProductFacetIndex
+{
+    public const int MaxPageSize = 200;
+
+    private static readonly decimal[] PriceBucketBounds = [25m, 50m, 100m, 200m];
+    private const int MaxTagFacets = 20;
+    private const int TrigramLength = 3;
+
+    private sealed record Snapshot(
+        int Generation,
+        ProductView[] Products,
+        RoaringBitmap All,
+        Dictionary<int, RoaringBitmap> Categories,
+        Dictionary<string, RoaringBitmap> Tags,
+        RoaringBitmap[] PriceBuckets,
+        Dictionary<long, RoaringBitmap> Trigrams,
+        decimal[] SortedPrices,
+        int[] SlotsByPrice);
+
+    private readonly IProductCatalog _catalog;
+    private readonly object _rebuildLock = new();
+    private volatile Snapshot? _snapshot;
+
+    public ProductFacetIndex(IProductCatalog catalog) => _catalog = catalog;
+
+    public FacetedSearchResult Search(
+        string? q, int? categoryId, decimal? minPrice, decimal? maxPrice, TagQuery? tags, int page, int pageSize)
+    {
+        page = Math.Max(1, page);
+        pageSize = Math.Clamp(pageSize, 1, MaxPageSize);
+
+        var snapshot = Current();
+        var products = snapshot.Products;
+        var all = snapshot.All;
+
+        var text = string.IsNullOrWhiteSpace(q) ? null : Text(snapshot, q);
+        var price = minPrice is null && maxPrice is null ? null : Price(snapshot, minPrice, maxPrice);
+        var category = categoryId is { } c ? snapshot.Categories.GetValueOrDefault(c) ?? RoaringBitmap.Empty : null;
+        var tagged = tags is null || tags.IsEmpty ? null : Evaluate(snapshot, tags, all);
+
+        RoaringBitmap Filter(params RoaringBitmap?[] filters)
+            => filters.Aggregate(all, (result, filter) => filter is null ? result : result.And(filter));
+
+        var forCategories = Filter(text, price, tagged);
+        var forTags = Filter(text, price, category);
+        var forPrices = Filter(text, category, tagged);
+        var matches = forCategories.And(category ?? all);
+
+        return new FacetedSearchResult(
+            matches.Indexes()
+                .Skip((int)Math.Min((long)(page - 1) * pageSize, int.MaxValue))
+                .Take(pageSize)
+                .Select(i => products[i].ToProduct())
+                .ToList(),
+            snapshot.Categories
+                .Select(kv => new CategoryFacet(kv.Key, forCategories.AndCount(kv.Value)))
+                .Where(f => f.Count > 0)
+                .OrderBy(f => f.CategoryId)
+                .ToList(),
+            snapshot.Tags
+                .Select(kv => new TagFacet(kv.Key, forTags.AndCount(kv.Value)))
+                .Where(f => f.Count > 0)
+                .OrderByDescending(f => f.Count).ThenBy(f => f.Tag)
+                .Take(MaxTagFacets)
+                .ToList(),
+            snapshot.PriceBuckets
+                .Select((bits, i) => new PriceBucketFacet(
+                    i == 0 ? 0m : PriceBucketBounds[i - 1],
+                    i < PriceBucketBounds.Length ? PriceBucketBounds[i] : null,
+                    forPrices.AndCount(bits)))
+                .ToList(),
+            matches.Count,
+            page,
+            pageSize);
+    }
+
+    private static RoaringBitmap Evaluate(Snapshot snapshot, TagQuery tags, RoaringBitmap all)
+    {
+        var none = RoaringBitmap.Empty;
+        RoaringBitmap Tag(string tag) => snapshot.Tags.GetValueOrDefault(tag) ?? none;
+
+        var result = tags.All.Aggregate(all, (bits, tag) => bits.And(Tag(tag)));
+        if (tags.Any.Count > 0)
+            result = result.And(tags.Any.Aggregate(none, (bits, tag) => bits.Or(Tag(tag))));
+        return tags.None.Aggregate(result, (bits, tag) => bits.AndNot(Tag(tag)));
+    }
+
+    private static RoaringBitmap Text(Snapshot snapshot, string q)
+    {
+        var candidates = snapshot.All;
+        // Smallest bitmaps first, so the intersection shrinks as early as possible
+        var grams = TrigramsOf(q)
+            .Select(gram => snapshot.Trigrams.GetValueOrDefault(gram) ?? RoaringBitmap.Empty)
+            .OrderBy(bits => bits.Count);
+        foreach (var bits in grams)
+        {
+            candidates = candidates.And(bits);
+            if (candidates.Count == 0) return candidates;
+        }
+
+        // Every occurrence of q contains all of its trigrams, so this only drops false positives
+        var matches = new RoaringBitmap.Builder();
+        foreach (var slot in candidates.Indexes())
+        {
+            var product = snapshot.Products[slot];
+            if (product.Title.Contains(q, StringComparison.OrdinalIgnoreCase) ||
+                product.Description.Contains(q, StringComparison.OrdinalIgnoreCase))
+                matches.Add(slot);
+        }
+        return matches.Build();
+    }
+
+    private static RoaringBitmap Price(Snapshot snapshot, decimal? minPrice, decimal? maxPrice)
+    {
+        var prices = snapshot.SortedPrices;
+        var from = minPrice is { } min ? FirstIndex(prices, p => p >= min) : 0;
+        var to = maxPrice is { } max ? FirstIndex(prices, p => p > max) : prices.Length;
+        if (from >= to) return RoaringBitmap.Empty;
+
+        var slots = snapshot.SlotsByPrice[from..to];
+        Array.Sort(slots);
+        return RoaringBitmap.FromSorted(slots);
+    }
+
+    /// <summary>First index whose price satisfies a predicate that is monotone over the sorted prices.</summary>
+    private static int FirstIndex(decimal[] sorted, Func<decimal, bool> predicate)
+    {
+        int lo = 0, hi = sorted.Length;
+        while (lo < hi)
+        {
+            var mid = (lo + hi) >> 1;
+            if (predicate(sorted[mid])) hi = mid;
+            else lo = mid + 1;
+        }
+        return lo;
+    }
+
+    private Snapshot Current()
+    {
+        var snapshot = _snapshot;
+        var generation = _catalog.Generation;
+        if (snapshot?.Generation == generation) return snapshot;
+
+        lock (_rebuildLock)
+        {
+            snapshot = _snapshot;
+            if (snapshot?.Generation == generation) return snapshot;
+            return _snapshot = Build(generation, _catalog.Views.OrderBy(p => p.ProductId).ToArray());
+        }
+    }
+
+    private static Snapshot Build(int generation, ProductView[] products)
+    {
+        var categories = new Dictionary<int, RoaringBitmap.Builder>();
+        var tags = new Dictionary<string, RoaringBitmap.Builder>(StringComparer.OrdinalIgnoreCase);
+        var trigrams = new Dictionary<long, RoaringBitmap.Builder>();
+        var buckets = Enumerable.Range(0, PriceBucketBounds.Length + 1)
+            .Select(_ => new RoaringBitmap.Builder())
+            .ToArray();
+        var prices = new decimal[products.Length];
+        var slotsByPrice = new int[products.Length];
+
+        // Slots are visited in ascending order, which is what the builders require
+        for (var slot = 0; slot < products.Length; slot++)
+        {
+            var product = products[slot];
+            Bits(categories, product.CategoryId).Add(slot);
+
+            foreach (var tag in TagsOf(product.ProductDetails))
+                Bits(tags, tag).Add(slot);
+
+            foreach (var gram in TrigramsOf(product.Title).Concat(TrigramsOf(product.Description)))
+                Bits(trigrams, gram).Add(slot);
+
+            var salePrice = product.SalePrice;
+            var bucket = Array.FindIndex(PriceBucketBounds, bound => salePrice < bound);
+            buckets[bucket < 0 ? PriceBucketBounds.Length : bucket].Add(slot);
+
+            prices[slot] = salePrice;
+            slotsByPrice[slot] = slot;
+        }
+        Array.Sort(prices, slotsByPrice);
+
+        return new Snapshot(
+            generation,
+            products,
+            RoaringBitmap.Range(products.Length),
+            categories.ToDictionary(kv => kv.Key, kv => kv.Value.Build()),
+            tags.ToDictionary(kv => kv.Key, kv => kv.Value.Build(), StringComparer.OrdinalIgnoreCase),
+            buckets.Select(b => b.Build()).ToArray(),
+            trigrams.ToDictionary(kv => kv.Key, kv => kv.Value.Build()),
+            prices,
+            slotsByPrice);
+    }
+
+    /// <summary>
+    /// Distinct case-folded three-character windows of the text, packed into a
+    /// long. Folding uses ToUpperInvariant, the per-character mapping
+    /// OrdinalIgnoreCase compares with, so trigrams do not rule out a match.
+    /// </summary>
+    internal static IEnumerable<long> TrigramsOf(string text)
+    {
+        if (string.IsNullOrEmpty(text) || text.Length < TrigramLength) return [];
+
+        var grams = new HashSet<long>();
+        for (var i = 0; i + TrigramLength <= text.Length; i++)
+        {
+            grams.Add(((long)char.ToUpperInvariant(text[i]) << 32) |
+                      ((long)char.ToUpperInvariant(text[i + 1]) << 16) |
+                      char.ToUpperInvariant(text[i + 2]));
+        }
+        return grams;
+    }
+
+    internal static IEnumerable<string> TagsOf(string productDetails)
+    {
+        if (string.IsNullOrWhiteSpace(productDetails)) return [];
+
+        try
+        {
+            var details = JsonSerializer.Deserialize<Dictionary<string, string>>(productDetails);
+            return details is null ? [] : details.Select(kv => $"{kv.Key}:{kv.Value}").ToList();
+        }
+        catch (JsonException)
+        {
+            return [];
+        }
+    }
+
+    private static RoaringBitmap.Builder Bits<TKey>(Dictionary<TKey, RoaringBitmap.Builder> index, TKey key) where TKey : notnull
+    {
+        if (!index.TryGetValue(key, out var bits))
+            index[key] = bits = new RoaringBitmap.Builder();
+        return bits;
+    }
+}
@@ -0,0 +1,376 @@
+using System.Runtime.CompilerServices;
+using Microsoft.EntityFrameworkCore;
+using PartsUnlimited.Models;
+
+namespace PartsUnlimited.Utils;
+
+public interface IProductPartitions
+{
+    int Count { get; }
+
+    /// <summary>False when the only partition is the default database itself.</summary>
+    bool IsPartitioned { get; }
+
+    int PartitionFor(int categoryId);
+    IAsyncEnumerable<Product> QueryAsync(
+        int? categoryId,
+        Func<IQueryable<Product>, IQueryable<Product>> query,
+        CancellationToken cancellationToken = default);
+
+    /// <summary>
+    /// Upserts each product (with its Category) into the partition owning its
+    /// category, removes it from every other partition (so a category change
+    /// moves the row) and deletes the removed ids everywhere.
+    /// </summary>
+    Task WriteAsync(
+        IReadOnlyCollection<Product> products,
+        IReadOnlyCollection<int> removed,
+        CancellationToken cancellationToken = default);
+}
+
+/// <summary>
+/// Routes product reads to category partitions configured under
+/// "Partitioning:ProductConnectionStrings" (partition = categoryId mod count).
+/// Category-scoped reads go to a single partition; unscoped reads fan out to
+/// every partition in parallel and are streamed back through a k-way merge
+/// in ProductId order, holding one row per partition rather than whole results.
+/// Writes are routed the same way by WriteAsync, which ProductPartitionSync
+/// drives from the default database. With no partitions configured the only
+/// partition is the default database, read through IReadReplicaRouter, and
+/// WriteAsync does nothing.
+/// With "Database:ReleaseConnectionsEarly" single-partition reads are
+/// buffered and the connection returned to the pool before the caller starts
+/// serializing, trading streaming memory for shorter connection hold times.
+/// </summary>
+public class ProductPartitions : IProductPartitions
+{
+    private readonly Func<PartsUnlimitedContext>[] _partitions;
+    private readonly bool _releaseConnectionsEarly;
+    private readonly bool _isPartitioned;
+
+    public ProductPartitions(IConfiguration config, IReadReplicaRouter replicas, ConnectionProfiler profiler)
+    {
+        _releaseConnectionsEarly = config.GetValue<bool>("Database:ReleaseConnectionsEarly");
+
+        var connectionStrings = config.GetSection("Partitioning:ProductConnectionStrings").Get<string[]>() ?? [];
+        if (connectionStrings.Length == 0)
+        {
+            _partitions = [replicas.CreateReadContext];
+            return;
+        }
+
+        _isPartitioned = true;
+        _partitions = connectionStrings
+            .Select(cs => new DbContextOptionsBuilder<PartsUnlimitedContext>()
+                .UseSqlServer(cs, sqlOptions => sqlOptions.EnableRetryOnFailure())
+                .UseQueryTrackingBehavior(QueryTrackingBehavior.NoTracking)
+                .AddInterceptors(profiler)
+                .Options)
+            .Select(options => (Func<PartsUnlimitedContext>)(() => new PartsUnlimitedContext(options)))
+            .ToArray();
+    }
+
+    /// <summary>Partitions over caller-supplied databases, e.g. local embedded ones in tests.</summary>
+    public ProductPartitions(IReadOnlyList<Func<PartsUnlimitedContext>> partitions, bool releaseConnectionsEarly = false)
+    {
+        if (partitions.Count == 0)
+            throw new ArgumentException("At least one partition is required", nameof(partitions));
+
+        _partitions = partitions.ToArray();
+        _releaseConnectionsEarly = releaseConnectionsEarly;
+        _isPartitioned = true;
+    }
+
+    public int Count => _partitions.Length;
+
+    public bool IsPartitioned => _isPartitioned;
+
+    public int PartitionFor(int categoryId) => (int)((uint)categoryId % (uint)_partitions.Length);
+
+    public IAsyncEnumerable<Product> QueryAsync(
+        int? categoryId,
+        Func<IQueryable<Product>, IQueryable<Product>> query,
+        CancellationToken cancellationToken = default)
+    {
+        if (categoryId.HasValue)
+            return StreamPartitionAsync(PartitionFor(categoryId.Value), query, cancellationToken);
+
+        return _partitions.Length == 1
+            ? StreamPartitionAsync(0, query, cancellationToken)
+            : FanOutAsync(query, cancellationToken);
+    }
+
+    private async IAsyncEnumerable<Product> StreamPartitionAsync(
+        int partition,
+        Func<IQueryable<Product>, IQueryable<Product>> query,
+        [EnumeratorCancellation] CancellationToken cancellationToken)
+    {
+        await using var db = _partitions[partition]();
+        if (_releaseConnectionsEarly)
+        {
+            var buffered = await query(db.Products).ToListAsync(cancellationToken);
+            await db.DisposeAsync();
+            foreach (var product in buffered)
+                yield return product;
+            yield break;
+        }
+
+        await foreach (var product in query(db.Products).AsAsyncEnumerable().WithCancellation(cancellationToken))
+            yield return product;
+    }
+
+    public async Task WriteAsync(
+        IReadOnlyCollection<Product> products,
+        IReadOnlyCollection<int> removed,
+        CancellationToken cancellationToken = default)
+    {
+        // The default database is the system of record; it has already been written
+        if (!_isPartitioned || (products.Count == 0 && removed.Count == 0)) return;
+
+        var touched = products.Select(p => p.ProductId).Concat(removed).Distinct().ToList();
+        for (var partition = 0; partition < _partitions.Length; partition++)
+        {
+            var owned = products.Where(p => PartitionFor(p.CategoryId) == partition).ToList();
+            await WritePartitionAsync(partition, owned, touched, cancellationToken);
+        }
+    }
+
+    private async Task WritePartitionAsync(
+        int partition, List<Product> owned, List<int> touched, CancellationToken cancellationToken)
+    {
+        await using var db = _partitions[partition]();
+        var ownedIds = owned.Select(p => p.ProductId).ToList();
+
+        // Rows this partition no longer owns: removed, or moved to another category
+        await db.Products.IgnoreQueryFilters()
+            .Where(p => touched.Contains(p.ProductId) && !ownedIds.Contains(p.ProductId))
+            .ExecuteDeleteAsync(cancellationToken);
+        if (owned.Count == 0) return;
+
+        var categoryIds = owned.Select(p => p.CategoryId).Distinct().ToList();
+        var knownCategories = await db.Categories
+            .Where(c => categoryIds.Contains(c.CategoryId))
+            .Select(c => c.CategoryId)
+            .ToListAsync(cancellationToken);
+        var newCategories = owned
+            .Where(p => !knownCategories.Contains(p.CategoryId))
+            .DistinctBy(p => p.CategoryId)
+            .Select(p => p.Category is { } category
+                ? new Category { CategoryId = category.CategoryId, Name = category.Name, Description = category.Description, ImageUrl = category.ImageUrl }
+                : throw new InvalidOperationException($"Product {p.ProductId} was written without its category {p.CategoryId}"))
+            .ToList();
+
+        var existing = await db.Products.IgnoreQueryFilters().AsTracking()
+            .Where(p => ownedIds.Contains(p.ProductId))
+            .ToDictionaryAsync(p => p.ProductId, cancellationToken);
+        var newProducts = new List<Product>();
+        foreach (var product in owned)
+        {
+            if (existing.TryGetValue(product.ProductId, out var row))
+            {
+                db.Entry(row).CurrentValues.SetValues(product);
+            }
+            else
+            {
+                row = new Product();
+                CopyValues(product, row);
+                newProducts.Add(row);
+            }
+        }
+
+        await SaveWithKeysAsync(db, newCategories, newProducts, cancellationToken);
+    }
+
+    /// <summary>
+    /// Saves rows that keep the ids the default database assigned. SQL Server
+    /// only accepts explicit identity values with IDENTITY_INSERT on, which is
+    /// per table and per session, hence one save per table in a transaction.
+    /// </summary>
+    private static async Task SaveWithKeysAsync(
+        PartsUnlimitedContext db, List<Category> categories, List<Product> products, CancellationToken cancellationToken)
+    {
+        if (!db.Database.IsSqlServer())
+        {
+            db.Categories.AddRange(categories);
+            db.Products.AddRange(products);
+            await db.SaveChangesAsync(cancellationToken);
+            return;
+        }
+
+        var strategy = db.Database.CreateExecutionStrategy();
+        await strategy.ExecuteAsync(async () =>
+        {
+            await using var transaction = await db.Database.BeginTransactionAsync(cancellationToken);
+            if (categories.Count > 0)
+            {
+                db.Categories.AddRange(categories);
+                await db.Database.ExecuteSqlRawAsync("SET IDENTITY_INSERT [Categories] ON", cancellationToken);
+                await db.SaveChangesAsync(cancellationToken);
+                await db.Database.ExecuteSqlRawAsync("SET IDENTITY_INSERT [Categories] OFF", cancellationToken);
+            }
+
+            db.Products.AddRange(products);
+            await db.Database.ExecuteSqlRawAsync("SET IDENTITY_INSERT [Products] ON", cancellationToken);
+            await db.SaveChangesAsync(cancellationToken);
+            await db.Database.ExecuteSqlRawAsync("SET IDENTITY_INSERT [Products] OFF", cancellationToken);
+            await transaction.CommitAsync(cancellationToken);
+        });
+    }
+
+    private static void CopyValues(Product from, Product to)
+    {
+        to.ProductId = from.ProductId;
+        to.Title = from.Title;
+        to.Price = from.Price;
+        to.SalePrice = from.SalePrice;
+        to.ProductArtUrl = from.ProductArtUrl;
+        to.Description = from.Description;
+        to.CategoryId = from.CategoryId;
+        to.SkuNumber = from.SkuNumber;
+        to.RecommendationId = from.RecommendationId;
+        to.Created = from.Created;
+        to.Updated = from.Updated;
+        to.DeletedAt = from.DeletedAt;
+        to.ProductDetails = from.ProductDetails;
+        to.Inventory = from.Inventory;
+        to.LeadTime = from.LeadTime;
+    }
+
+    private async IAsyncEnumerable<Product> FanOutAsync(
+        Func<IQueryable<Product>, IQueryable<Product>> query,
+        [EnumeratorCancellation] CancellationToken cancellationToken)
+    {
+        var contexts = new List<PartsUnlimitedContext>(_partitions.Length);
+        var cursors = new List<IAsyncEnumerator<Product>>(_partitions.Length);
+        try
+        {
+            foreach (var createContext in _partitions)
+            {
+                var db = createContext();
+                contexts.Add(db);
+                cursors.Add(query(db.Products).OrderBy(p => p.ProductId).AsAsyncEnumerable().GetAsyncEnumerator(cancellationToken));
+            }
+
+            // k-way merge: every partition streams in ProductId order, the heap holds each one's head row
+            var heads = new PriorityQueue<IAsyncEnumerator<Product>, int>(cursors.Count);
+            var started = await Task.WhenAll(cursors.Select(cursor => cursor.MoveNextAsync().AsTask()));
+            for (var i = 0; i < cursors.Count; i++)
+            {
+                if (started[i]) heads.Enqueue(cursors[i], cursors[i].Current.ProductId);
+            }
+
+            while (heads.TryDequeue(out var cursor, out _))
+            {
+                yield return cursor.Current;
+                if (await cursor.MoveNextAsync())
+                    heads.Enqueue(cursor, cursor.Current.ProductId);
+            }
+        }
+        finally
+        {
+            foreach (var cursor in cursors)
+                await cursor.DisposeAsync();
+            foreach (var db in contexts)
+                await db.DisposeAsync();
+        }
+    }
+}
+
+/// <summary>
+/// Keeps the category partitions in step with the default database, which
+/// stays the system of record for writes (carts, orders and rainchecks
+/// reference its rows). Changes from each coalesced IProductEventBus batch
+/// (local commits and rows the catalog sync found changed, including writes
+/// from outside the app; other pods' commits are left to those pods) are
+/// re-read from the default database and routed through IProductPartitions.WriteAsync; rows that are
+/// gone or soft-deleted are removed from every partition. On startup, when
+/// every partition is still empty and "Partitioning:BackfillWhenEmpty" is
+/// set, the whole catalog is copied over in batches of "Partitioning:BatchSize".
+/// </summary>
+public class ProductPartitionSync : BackgroundService, IProductChangeHandler
+{
+    private readonly IProductPartitions _partitions;
+    private readonly IServiceScopeFactory _scopeFactory;
+    private readonly ILogger<ProductPartitionSync> _logger;
+    private readonly bool _backfillWhenEmpty;
+    private readonly int _batchSize;
+
+    public ProductPartitionSync(
+        IProductPartitions partitions,
+        IServiceScopeFactory scopeFactory,
+        IConfiguration config,
+        ILogger<ProductPartitionSync> logger)
+    {
+        _partitions = partitions;
+        _scopeFactory = scopeFactory;
+        _logger = logger;
+        _backfillWhenEmpty = config.GetValue("Partitioning:BackfillWhenEmpty", true);
+        _batchSize = Math.Max(1, config.GetValue("Partitioning:BatchSize", 500));
+    }
+
+    public async Task HandleAsync(IReadOnlyList<ProductChangeEvent> changes, CancellationToken cancellationToken)
+    {
+        if (!_partitions.IsPartitioned) return;
+
+        // Another pod's commit is written to the partitions by that pod
+        var ids = changes
+            .Where(c => c.Source != ProductEventSource.Remote)
+            .Select(c => c.ProductId)
+            .Distinct()
+            .ToList();
+        if (ids.Count == 0) return;
+
+        await using var scope = _scopeFactory.CreateAsyncScope();
+        var db = scope.ServiceProvider.GetRequiredService<PartsUnlimitedContext>();
+
+        // The query filter hides soft-deleted rows, so they count as removed
+        var live = await db.Products.AsNoTracking()
+            .Include(p => p.Category)
+            .Where(p => ids.Contains(p.ProductId))
+            .ToListAsync(cancellationToken);
+        var removed = ids.Except(live.Select(p => p.ProductId)).ToList();
+
+        await _partitions.WriteAsync(live, removed, cancellationToken);
+    }
+
+    protected override async Task ExecuteAsync(CancellationToken stoppingToken)
+    {
+        if (!_partitions.IsPartitioned || !_backfillWhenEmpty) return;
+
+        try
+        {
+            await foreach (var _ in _partitions.QueryAsync(null, products => products.Take(1), stoppingToken))
+                return;
+
+            var copied = await BackfillAsync(stoppingToken);
+            _logger.LogInformation("Copied {Count} products into {Partitions} empty partitions", copied, _partitions.Count);
+        }
+        catch (Exception ex) when (!stoppingToken.IsCancellationRequested)
+        {
+            _logger.LogWarning(ex, "Product partition backfill failed");
+        }
+    }
+
+    private async Task<int> BackfillAsync(CancellationToken cancellationToken)
+    {
+        await using var scope = _scopeFactory.CreateAsyncScope();
+        var db = scope.ServiceProvider.GetRequiredService<PartsUnlimitedContext>();
+
+        var copied = 0;
+        var after = 0;
+        while (true)
+        {
+            var batch = await db.Products.AsNoTracking()
+                .Include(p => p.Category)
+                .Where(p => p.ProductId > after)
+                .OrderBy(p => p.ProductId)
+                .Take(_batchSize)
+                .ToListAsync(cancellationToken);
+            if (batch.Count == 0) return copied;
+
+            await _partitions.WriteAsync(batch, [], cancellationToken);
+            copied += batch.Count;
+            after = batch[^1].ProductId;
+        }
+    }
+}
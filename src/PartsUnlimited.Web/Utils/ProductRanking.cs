@@ -0,0 +1,60 @@
+namespace PartsUnlimited.Utils;
+
+public enum ProductSort
+{
+    PriceAsc,
+    PriceDesc,
+    Newest,
+    Stock
+}
+
+/// <summary>
+/// Top-N selection over the in-memory catalog. Rather than sorting every
+/// product, a bounded heap of size k holds the best candidates seen so far
+/// (worst at the root), so a query costs O(n log k) and allocates O(k).
+/// Ties are broken by ProductId to keep pages stable. It ranks ProductViews,
+/// which read only the sort key, so an off-heap catalog materializes just the
+/// products returned.
+/// </summary>
+public static class ProductRanking
+{
+    public const int MaxCount = 100;
+
+    public static IReadOnlyList<ProductView> Top(IEnumerable<ProductView> products, ProductSort sort, int count)
+        => Top(products, Math.Clamp(count, 1, MaxCount), ComparerFor(sort));
+
+    public static IReadOnlyList<T> Top<T>(IEnumerable<T> source, int count, IComparer<T> order)
+    {
+        // Reverse the order so the heap root is the worst item currently kept
+        var heap = new PriorityQueue<T, T>(count + 1, Comparer<T>.Create((a, b) => order.Compare(b, a)));
+        foreach (var item in source)
+        {
+            if (heap.Count < count)
+                heap.Enqueue(item, item);
+            else if (order.Compare(item, heap.Peek()) < 0)
+                heap.EnqueueDequeue(item, item);
+        }
+
+        var result = new T[heap.Count];
+        for (var i = result.Length - 1; i >= 0; i--)
+            result[i] = heap.Dequeue();
+        return result;
+    }
+
+    private static IComparer<ProductView> ComparerFor(ProductSort sort) => sort switch
+    {
+        ProductSort.PriceAsc => By(p => p.SalePrice, descending: false),
+        ProductSort.PriceDesc => By(p => p.SalePrice, descending: true),
+        ProductSort.Newest => By(p => p.Created, descending: true),
+        ProductSort.Stock => By(p => p.Inventory, descending: true),
+        _ => throw new ArgumentOutOfRangeException(nameof(sort), sort, null)
+    };
+
+    private static IComparer<ProductView> By<TKey>(Func<ProductView, TKey> key, bool descending) where TKey : IComparable<TKey>
+        => Comparer<ProductView>.Create((a, b) =>
+        {
+            var result = key(a).CompareTo(key(b));
+            if (descending) result = -result;
+            return result != 0 ? result : a.ProductId.CompareTo(b.ProductId);
+        });
+}
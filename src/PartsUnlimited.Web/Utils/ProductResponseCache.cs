@@ -0,0 +1,122 @@
+using System.Diagnostics;
+using System.IO.Compression;
+using System.Text.Json;
+using Microsoft.AspNetCore.Mvc;
+using Microsoft.Extensions.Caching.Memory;
+using Microsoft.Extensions.Options;
+using PartsUnlimited.Models;
+
+namespace PartsUnlimited.Utils;
+
+/// <summary>
+/// Serialized product payload, kept both as plain UTF-8 JSON and gzip.
+/// Gzip is null when compressing did not make the payload smaller.
+/// </summary>
+public sealed record RenderedResponse(byte[] Json, byte[]? Gzip);
+
+public interface IProductResponseCache
+{
+    Task<RenderedResponse> GetOrRenderAsync(string key, Func<IAsyncEnumerable<Product>> products);
+
+    /// <summary>Same as GetOrRenderAsync, rendered with CompactProductCodec (application/cbor).</summary>
+    Task<byte[]> GetOrRenderCompactAsync(string key, Func<IAsyncEnumerable<Product>> products);
+}
+
+/// <summary>
+/// Caches product list and search responses as serialized bytes so a cache hit
+/// skips JSON serialization entirely. Entries expire on the ICatalogVersion
+/// change token, i.e. on the same admin writes that evict product_{id}.
+/// The compact (CBOR) rendering is cached separately, only once requested.
+/// Search keys are open-ended, so the cache is its own MemoryCache limited to
+/// "ResponseCache:SizeLimitMB" of payload bytes (JSON, gzip and CBOR all
+/// count); once full, the least recently used renders are compacted away.
+/// Entries also live at most "ResponseCache:MaxAgeSeconds" however often they
+/// are hit: a render read from a lagging replica is cached under the current
+/// change token, and a fixed lifetime bounds how long it can be served.
+/// </summary>
+public class ProductResponseCache : IProductResponseCache, IDisposable
+{
+    private readonly MemoryCache _cache;
+    private readonly ICatalogVersion _catalogVersion;
+    private readonly JsonSerializerOptions _jsonOptions;
+    private readonly IHttpContextAccessor _httpContextAccessor;
+    private readonly TimeSpan _maxAge;
+
+    public ProductResponseCache(
+        ICatalogVersion catalogVersion,
+        IOptions<JsonOptions> jsonOptions,
+        IHttpContextAccessor httpContextAccessor,
+        IConfiguration config)
+    {
+        _cache = new MemoryCache(new MemoryCacheOptions
+        {
+            SizeLimit = Math.Max(1, config.GetValue("ResponseCache:SizeLimitMB", 64)) * 1024L * 1024L
+        });
+        _catalogVersion = catalogVersion;
+        _jsonOptions = jsonOptions.Value.JsonSerializerOptions;
+        _httpContextAccessor = httpContextAccessor;
+        _maxAge = TimeSpan.FromSeconds(Math.Max(1, config.GetValue("ResponseCache:MaxAgeSeconds", 60)));
+    }
+
+    public async Task<RenderedResponse> GetOrRenderAsync(
+        string key, Func<IAsyncEnumerable<Product>> products)
+    {
+        var rendered = await _cache.GetOrCreateAsync($"products_json_{key}", async entry =>
+        {
+            // Take the token before reading so a write that lands mid-render
+            // expires the entry instead of leaving stale bytes behind.
+            entry.AddExpirationToken(_catalogVersion.GetChangeToken());
+            entry.AbsoluteExpirationRelativeToNow = _maxAge;
+            var response = await RenderAsync(products());
+            entry.Size = response.Json.Length + (response.Gzip?.Length ?? 0);
+            return response;
+        });
+
+        return rendered!;
+    }
+
+    public async Task<byte[]> GetOrRenderCompactAsync(
+        string key, Func<IAsyncEnumerable<Product>> products)
+    {
+        var rendered = await _cache.GetOrCreateAsync($"products_cbor_{key}", async entry =>
+        {
+            entry.AddExpirationToken(_catalogVersion.GetChangeToken());
+            entry.AbsoluteExpirationRelativeToNow = _maxAge;
+
+            var profile = RequestProfile.For(_httpContextAccessor.HttpContext);
+            var started = Stopwatch.GetTimestamp();
+            var sqlBefore = profile?.SqlMs ?? 0;
+            var body = await CompactProductCodec.EncodeAsync(products());
+            profile?.AddSerialization(Stopwatch.GetElapsedTime(started) - TimeSpan.FromMilliseconds(profile.SqlMs - sqlBefore));
+            entry.Size = body.Length;
+            return body;
+        });
+
+        return rendered!;
+    }
+
+    public void Dispose() => _cache.Dispose();
+
+    private async Task<RenderedResponse> RenderAsync(IAsyncEnumerable<Product> products)
+    {
+        // Rows are read while serializing; the profile subtracts the SQL time spent meanwhile
+        var profile = RequestProfile.For(_httpContextAccessor.HttpContext);
+        var started = Stopwatch.GetTimestamp();
+        var sqlBefore = profile?.SqlMs ?? 0;
+
+        using var json = new MemoryStream();
+        await JsonSerializer.SerializeAsync(json, products, _jsonOptions);
+
+        using var gzip = new MemoryStream();
+        await using (var compressor = new GZipStream(gzip, CompressionLevel.Optimal, leaveOpen: true))
+        {
+            json.Position = 0;
+            await json.CopyToAsync(compressor);
+        }
+
+        profile?.AddSerialization(Stopwatch.GetElapsedTime(started) - TimeSpan.FromMilliseconds(profile.SqlMs - sqlBefore));
+        return new RenderedResponse(
+            json.ToArray(),
+            gzip.Length < json.Length ? gzip.ToArray() : null);
+    }
+}
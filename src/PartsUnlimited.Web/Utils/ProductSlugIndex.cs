@@ -0,0 +1,71 @@
+using System.Globalization;
+using System.Text;
+
+namespace PartsUnlimited.Utils;
+
+public interface IProductSlugIndex
+{
+    /// <summary>Resolves a slug to a catalog product id; also accepts outdated title parts.</summary>
+    bool TryGetProductId(string slug, out int productId);
+
+    /// <summary>The canonical slug of a catalog product, or null when it is not in the catalog.</summary>
+    string? SlugFor(int productId);
+}
+
+/// <summary>
+/// SEO product slugs: the title slugified ("Ultra Tire 15\"" → "ultra-tire-15")
+/// followed by the ProductId ("ultra-tire-15-42"). The id suffix makes every
+/// slug unique without a collision table and keeps it resolving after the
+/// product is renamed or a look-alike is deleted; only the title part goes
+/// out of date, and callers redirect to SlugFor's canonical form. A title
+/// with no letters or digits gets just the id. Both directions are computed
+/// from IProductCatalog, so no index has to be rebuilt on catalog changes.
+/// </summary>
+public class ProductSlugIndex : IProductSlugIndex
+{
+    private readonly IProductCatalog _catalog;
+
+    public ProductSlugIndex(IProductCatalog catalog) => _catalog = catalog;
+
+    public bool TryGetProductId(string slug, out int productId)
+    {
+        var dash = slug.LastIndexOf('-');
+        if (int.TryParse(slug.AsSpan(dash + 1), NumberStyles.None, CultureInfo.InvariantCulture, out productId)
+            && _catalog.TryGetView(productId, out _))
+            return true;
+
+        productId = 0;
+        return false;
+    }
+
+    public string? SlugFor(int productId)
+        => _catalog.TryGetView(productId, out var product) ? SlugFor(product.ProductId, product.Title) : null;
+
+    public static string SlugFor(int productId, string title)
+    {
+        var slug = Slugify(title);
+        return slug.Length == 0 ? $"{productId}" : $"{slug}-{productId}";
+    }
+
+    public static string Slugify(string title)
+    {
+        var builder = new StringBuilder(title.Length);
+        var pendingDash = false;
+        foreach (var c in title.Normalize(NormalizationForm.FormD))
+        {
+            if (CharUnicodeInfo.GetUnicodeCategory(c) == UnicodeCategory.NonSpacingMark) continue;
+
+            if (char.IsAsciiLetterOrDigit(c))
+            {
+                if (pendingDash && builder.Length > 0) builder.Append('-');
+                builder.Append(char.ToLowerInvariant(c));
+                pendingDash = false;
+            }
+            else
+            {
+                pendingDash = true;
+            }
+        }
+        return builder.ToString();
+    }
+}
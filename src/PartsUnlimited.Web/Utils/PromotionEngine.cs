@@ -0,0 +1,194 @@
+using System.Collections.Concurrent;
+using Microsoft.Extensions.Options;
+
+namespace PartsUnlimited.Utils;
+
+/// <summary>A category-wide discount, in percent of the sale price.</summary>
+public sealed class Promotion
+{
+    public int CategoryId { get; set; }
+    public decimal Percent { get; set; }
+    public DateTime? EndsAt { get; set; }
+}
+
+public sealed class PromotionOptions
+{
+    public List<Promotion> Active { get; set; } = [];
+}
+
+public sealed record PromotionalPrice(int ProductId, decimal Price, decimal? PromotionPercent);
+
+public interface IPromotionEngine
+{
+    IReadOnlyCollection<Promotion> Active { get; }
+    PromotionalPrice? PriceFor(int productId);
+}
+
+/// <summary>
+/// Category promotions from "Promotions:Active" (config reloads, e.g. a
+/// ConfigMap edit, apply to every pod at once). Discounted prices for every
+/// product in a promoted category are precomputed into a productId → cents
+/// table, so a lookup is one hash probe with no database read or decimal
+/// math. Discounts are capped at MaxPercent. When several promotions name the
+/// same category, the last one still running wins; expired entries are
+/// dropped first, so a stale promotion later in the list cannot hide a live
+/// one, and the table is rebuilt when the winning promotion ends.
+/// The table is rebuilt when the promotions change or the catalog is
+/// replaced, and otherwise updated per product from IProductCatalog.Changed,
+/// so a price edit costs one recomputation rather than a rebuild.
+/// </summary>
+public class PromotionEngine : IPromotionEngine, IDisposable
+{
+    public const decimal MaxPercent = 50m;
+
+    private sealed record Rules(IReadOnlyDictionary<int, Promotion> ByCategory, DateTime? NextExpiry);
+
+    // Longest due time a System.Threading.Timer accepts is about 49 days; re-check daily instead
+    private static readonly TimeSpan MaxExpiryWait = TimeSpan.FromDays(1);
+
+    private readonly record struct Entry(long Cents, Promotion Promotion);
+
+    private readonly IProductCatalog _catalog;
+    private readonly ILogger<PromotionEngine> _logger;
+    private readonly IDisposable? _optionsSubscription;
+    private readonly Timer _expiryTimer;
+    private readonly object _sync = new();
+    private volatile ConcurrentDictionary<int, Entry> _prices = new();
+    private volatile PromotionOptions _options;
+    private volatile Rules _rules;
+
+    public PromotionEngine(
+        IProductCatalog catalog,
+        IOptionsMonitor<PromotionOptions> options,
+        ILogger<PromotionEngine> logger)
+    {
+        _catalog = catalog;
+        _logger = logger;
+        _options = options.CurrentValue;
+        _rules = ToRules(_options, DateTime.UtcNow);
+        _expiryTimer = new Timer(_ => Refresh());
+        _optionsSubscription = options.OnChange(value =>
+        {
+            _options = value;
+            Refresh();
+        });
+        _catalog.Changed += OnCatalogChanged;
+        Rebuild();
+        ScheduleExpiry();
+    }
+
+    public IReadOnlyCollection<Promotion> Active => _rules.ByCategory.Values
+        .Where(p => p.EndsAt is null || p.EndsAt > DateTime.UtcNow)
+        .ToList();
+
+    public PromotionalPrice? PriceFor(int productId)
+    {
+        if (_prices.TryGetValue(productId, out var entry) &&
+            (entry.Promotion.EndsAt is null || entry.Promotion.EndsAt > DateTime.UtcNow))
+        {
+            return new PromotionalPrice(productId, entry.Cents / 100m, Math.Min(entry.Promotion.Percent, MaxPercent));
+        }
+
+        return _catalog.TryGetView(productId, out var view)
+            ? new PromotionalPrice(productId, view.SalePrice, null)
+            : null;
+    }
+
+    public void Dispose()
+    {
+        _catalog.Changed -= OnCatalogChanged;
+        _optionsSubscription?.Dispose();
+        _expiryTimer.Dispose();
+    }
+
+    private void Refresh()
+    {
+        try
+        {
+            _rules = ToRules(_options, DateTime.UtcNow);
+            Rebuild();
+            ScheduleExpiry();
+        }
+        catch (Exception ex)
+        {
+            _logger.LogError(ex, "Refreshing promotions failed");
+        }
+    }
+
+    private void ScheduleExpiry()
+    {
+        if (_rules.NextExpiry is not { } expiry)
+        {
+            _expiryTimer.Change(Timeout.Infinite, Timeout.Infinite);
+            return;
+        }
+
+        var due = expiry - DateTime.UtcNow;
+        _expiryTimer.Change(due < TimeSpan.Zero ? TimeSpan.Zero : due > MaxExpiryWait ? MaxExpiryWait : due, Timeout.InfiniteTimeSpan);
+    }
+
+    private void OnCatalogChanged(CatalogChange change)
+    {
+        try
+        {
+            if (change.Reset)
+            {
+                Rebuild();
+                return;
+            }
+
+            lock (_sync)
+            {
+                var rules = _rules;
+                foreach (var id in change.Removed)
+                    _prices.TryRemove(id, out _);
+                foreach (var product in change.Changed)
+                    Update(_prices, rules, new ProductView(product));
+            }
+        }
+        catch (Exception ex)
+        {
+            _logger.LogError(ex, "Updating promotional prices failed; rebuilding");
+            Rebuild();
+        }
+    }
+
+    private void Rebuild()
+    {
+        lock (_sync)
+        {
+            // Build aside and swap, so readers never see a half-empty table
+            var rules = _rules;
+            var prices = new ConcurrentDictionary<int, Entry>();
+            if (rules.ByCategory.Count > 0)
+            {
+                // Views read the two fields in place; nothing is materialized off-heap
+                foreach (var view in _catalog.Views)
+                    Update(prices, rules, view);
+            }
+            _prices = prices;
+        }
+    }
+
+    private static void Update(ConcurrentDictionary<int, Entry> prices, Rules rules, ProductView product)
+    {
+        if (!rules.ByCategory.TryGetValue(product.CategoryId, out var promotion))
+        {
+            prices.TryRemove(product.ProductId, out _);
+            return;
+        }
+
+        var percent = Math.Clamp(promotion.Percent, 0m, MaxPercent);
+        var discounted = product.SalePrice * (100m - percent) / 100m;
+        prices[product.ProductId] = new Entry((long)Math.Round(discounted * 100m, MidpointRounding.AwayFromZero), promotion);
+    }
+
+    private static Rules ToRules(PromotionOptions options, DateTime now)
+    {
+        var byCategory = options.Active
+            .Where(p => p.Percent > 0 && (p.EndsAt is null || p.EndsAt > now))
+            .GroupBy(p => p.CategoryId)
+            .ToDictionary(g => g.Key, g => g.Last());
+        return new Rules(byCategory, byCategory.Values.Min(p => p.EndsAt));
+    }
+}
@@ -19,11 +19,13 @@ public async Task<List<Raincheck>> GetAllRainchecksAsync()
         => await _db.RainChecks
             .Include(r => r.Store)
             .Include(r => r.Product)
+            .IgnoreQueryFilters()
             .ToListAsync();
 
     public async Task<Raincheck?> FindRaincheckAsync(int id)
         => await _db.RainChecks
             .Include(r => r.Store)
             .Include(r => r.Product)
+            .IgnoreQueryFilters()
             .SingleOrDefaultAsync(r => r.RaincheckId == id);
 }
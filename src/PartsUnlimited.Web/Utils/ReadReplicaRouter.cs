@@ -0,0 +1,175 @@
+using Microsoft.EntityFrameworkCore;
+using PartsUnlimited.Models;
+
+namespace PartsUnlimited.Utils;
+
+public interface IReadReplicaRouter
+{
+    /// <summary>Creates a no-tracking context for a read; the caller disposes it.</summary>
+    PartsUnlimitedContext CreateReadContext();
+
+    /// <summary>
+    /// Records a write so following reads see it: on this pod, and for the
+    /// calling client when there is a request. Called without one (e.g. for
+    /// another pod's write) it pins this pod only, so shared caches filled
+    /// meanwhile are read from the primary.
+    /// </summary>
+    void MarkWrite();
+}
+
+/// <summary>
+/// Sends read-only queries to the replicas in "ReadReplicas:ConnectionStrings"
+/// (e.g. the Azure SQL read scale-out endpoint, ApplicationIntent=ReadOnly),
+/// round-robin across the ones that passed the last health probe.
+/// Falls back to the primary when no replica is healthy, when a replica's lag
+/// (from the optional "ReadReplicas:LagQuery", a single column named Value in
+/// seconds) exceeds "ReadReplicas:MaxLagSeconds", and within that window after
+/// a write: globally on this pod, and per client via a short-lived cookie or
+/// an explicit X-Read-Your-Writes request header.
+/// </summary>
+public class ReadReplicaRouter : BackgroundService, IReadReplicaRouter
+{
+    private const string ReadYourWritesCookie = "pu_ryw";
+    private const string ReadYourWritesHeader = "X-Read-Your-Writes";
+
+    private sealed class Replica(DbContextOptions<PartsUnlimitedContext> options)
+    {
+        public DbContextOptions<PartsUnlimitedContext> Options { get; } = options;
+        public volatile bool Healthy;
+    }
+
+    private readonly DbContextOptions<PartsUnlimitedContext> _primary;
+    private readonly Replica[] _replicas;
+    private readonly TimeSpan _maxLag;
+    private readonly string? _lagQuery;
+    private readonly IHttpContextAccessor _httpContextAccessor;
+    private readonly ILogger<ReadReplicaRouter> _logger;
+    private long _lastWriteTicks;
+    private int _next;
+
+    public ReadReplicaRouter(
+        IConfiguration config,
+        IHttpContextAccessor httpContextAccessor,
+        ConnectionProfiler profiler,
+        ILogger<ReadReplicaRouter> logger)
+        : this(
+            ReadOptions(config.GetConnectionString("DefaultConnectionString")!, profiler),
+            (config.GetSection("ReadReplicas:ConnectionStrings").Get<string[]>() ?? [])
+                .Select(cs => ReadOptions(cs, profiler))
+                .ToList(),
+            config,
+            httpContextAccessor,
+            logger)
+    {
+    }
+
+    /// <summary>Routes over caller-supplied databases, e.g. local embedded ones in tests.</summary>
+    public ReadReplicaRouter(
+        DbContextOptions<PartsUnlimitedContext> primary,
+        IReadOnlyList<DbContextOptions<PartsUnlimitedContext>> replicas,
+        IConfiguration config,
+        IHttpContextAccessor httpContextAccessor,
+        ILogger<ReadReplicaRouter> logger)
+    {
+        _httpContextAccessor = httpContextAccessor;
+        _logger = logger;
+        _maxLag = TimeSpan.FromSeconds(config.GetValue("ReadReplicas:MaxLagSeconds", 5));
+        _lagQuery = config["ReadReplicas:LagQuery"];
+        if (string.IsNullOrWhiteSpace(_lagQuery)) _lagQuery = null;
+
+        _primary = primary;
+        _replicas = replicas.Select(options => new Replica(options)).ToArray();
+    }
+
+    public PartsUnlimitedContext CreateReadContext()
+    {
+        if (_replicas.Length == 0 || MustReadPrimary())
+            return new PartsUnlimitedContext(_primary);
+
+        for (var i = 0; i < _replicas.Length; i++)
+        {
+            var replica = _replicas[(uint)Interlocked.Increment(ref _next) % (uint)_replicas.Length];
+            if (replica.Healthy) return new PartsUnlimitedContext(replica.Options);
+        }
+
+        return new PartsUnlimitedContext(_primary);
+    }
+
+    public void MarkWrite()
+    {
+        Interlocked.Exchange(ref _lastWriteTicks, DateTime.UtcNow.Ticks);
+
+        var response = _httpContextAccessor.HttpContext?.Response;
+        if (_replicas.Length > 0 && response is { HasStarted: false })
+        {
+            response.Cookies.Append(ReadYourWritesCookie, "1", new CookieOptions
+            {
+                MaxAge = _maxLag,
+                HttpOnly = true,
+                SameSite = SameSiteMode.Lax
+            });
+        }
+    }
+
+    protected override async Task ExecuteAsync(CancellationToken stoppingToken)
+    {
+        if (_replicas.Length == 0) return;
+
+        using var timer = new PeriodicTimer(TimeSpan.FromSeconds(10));
+        do
+        {
+            await ProbeAsync(stoppingToken);
+        }
+        while (await timer.WaitForNextTickAsync(stoppingToken));
+    }
+
+    /// <summary>Runs one health (and lag) probe of every replica.</summary>
+    public async Task ProbeAsync(CancellationToken cancellationToken)
+    {
+        foreach (var replica in _replicas)
+            await ProbeReplicaAsync(replica, cancellationToken);
+    }
+
+    private bool MustReadPrimary()
+    {
+        if (DateTime.UtcNow.Ticks - Interlocked.Read(ref _lastWriteTicks) < _maxLag.Ticks)
+            return true;
+
+        var request = _httpContextAccessor.HttpContext?.Request;
+        return request is not null &&
+            (request.Cookies.ContainsKey(ReadYourWritesCookie) ||
+             request.Headers.ContainsKey(ReadYourWritesHeader));
+    }
+
+    private async Task ProbeReplicaAsync(Replica replica, CancellationToken stoppingToken)
+    {
+        using var timeout = CancellationTokenSource.CreateLinkedTokenSource(stoppingToken);
+        timeout.CancelAfter(TimeSpan.FromSeconds(5));
+        try
+        {
+            await using var db = new PartsUnlimitedContext(replica.Options);
+            if (_lagQuery is null)
+            {
+                replica.Healthy = await db.Database.CanConnectAsync(timeout.Token);
+                return;
+            }
+
+            var lag = await db.Database.SqlQueryRaw<int>(_lagQuery).FirstOrDefaultAsync(timeout.Token);
+            replica.Healthy = lag <= _maxLag.TotalSeconds;
+            if (!replica.Healthy)
+                _logger.LogWarning("Read replica lag {Lag}s exceeds {MaxLag}s; reading from primary", lag, _maxLag.TotalSeconds);
+        }
+        catch (Exception ex) when (!stoppingToken.IsCancellationRequested)
+        {
+            replica.Healthy = false;
+            _logger.LogWarning(ex, "Read replica health probe failed");
+        }
+    }
+
+    private static DbContextOptions<PartsUnlimitedContext> ReadOptions(string connectionString, ConnectionProfiler profiler)
+        => new DbContextOptionsBuilder<PartsUnlimitedContext>()
+            .UseSqlServer(connectionString, sqlOptions => sqlOptions.EnableRetryOnFailure())
+            .UseQueryTrackingBehavior(QueryTrackingBehavior.NoTracking)
+            .AddInterceptors(profiler)
+            .Options;
+}
@@ -0,0 +1,169 @@
+using System.Collections.Concurrent;
+using System.Diagnostics;
+using Microsoft.AspNetCore.Mvc.Filters;
+
+namespace PartsUnlimited.Utils;
+
+/// <summary>
+/// Phase timings of one profiled request. SQL time is reported by
+/// ConnectionProfiler, serialization time by ProductResponseCache and
+/// ProfilingResultFilter; the handler phase is whatever remains.
+/// </summary>
+public sealed class RequestProfile
+{
+    private long _sqlTicks;
+    private long _serializationTicks;
+
+    public double SqlMs => TimeSpan.FromTicks(Interlocked.Read(ref _sqlTicks)).TotalMilliseconds;
+    public double SerializationMs => TimeSpan.FromTicks(Interlocked.Read(ref _serializationTicks)).TotalMilliseconds;
+
+    public void AddSql(TimeSpan elapsed) => Interlocked.Add(ref _sqlTicks, elapsed.Ticks);
+    public void AddSerialization(TimeSpan elapsed) => Interlocked.Add(ref _serializationTicks, elapsed.Ticks);
+
+    public static RequestProfile? For(HttpContext? context) => context?.Features.Get<RequestProfile>();
+}
+
+public sealed record ProfiledRequest(
+    DateTime At,
+    string Operation,
+    int StatusCode,
+    double ElapsedMs,
+    double SqlMs,
+    double SerializationMs,
+    double HandlerMs,
+    long AllocatedBytes,
+    double CpuMs,
+    int Concurrent);
+
+public sealed record OperationProfile(
+    string Operation,
+    int Requests,
+    double MeanElapsedMs,
+    double MaxElapsedMs,
+    double MeanSqlMs,
+    double MeanSerializationMs,
+    double MeanHandlerMs,
+    long MeanAllocatedBytes,
+    double MeanCpuMs);
+
+/// <summary>
+/// On-demand per-request profiling. Off until an administrator enables it for
+/// a bounded window (see ProfilingController); while on, a sampled share of
+/// requests get a RequestProfile and are summarized per route.
+/// Allocated bytes and CPU time are process-wide deltas over the request
+/// (GC.GetTotalAllocatedBytes, Process.TotalProcessorTime) because async
+/// requests hop threads; each sample records how many requests were in flight
+/// alongside it, so profile at low concurrency for clean attribution and use
+/// an EventPipe trace for per-method detail.
+/// </summary>
+public class RequestProfiler
+{
+    private const int RecentCapacity = 200;
+
+    private readonly ConcurrentQueue<ProfiledRequest> _recent = new();
+    private long _enabledUntilTicks;
+    private double _sampleRate;
+    private int _inFlight;
+
+    public bool IsEnabled => DateTime.UtcNow.Ticks < Interlocked.Read(ref _enabledUntilTicks);
+
+    public DateTime? EnabledUntil => IsEnabled ? new DateTime(Interlocked.Read(ref _enabledUntilTicks), DateTimeKind.Utc) : null;
+
+    public void Enable(TimeSpan duration, double sampleRate)
+    {
+        _sampleRate = Math.Clamp(sampleRate, 0.001, 1.0);
+        _recent.Clear();
+        Interlocked.Exchange(ref _enabledUntilTicks, (DateTime.UtcNow + duration).Ticks);
+    }
+
+    public void Disable() => Interlocked.Exchange(ref _enabledUntilTicks, 0);
+
+    public IReadOnlyList<ProfiledRequest> Recent => _recent.ToArray();
+
+    public IReadOnlyList<OperationProfile> Summary() => _recent
+        .GroupBy(r => r.Operation)
+        .Select(g => new OperationProfile(
+            g.Key,
+            g.Count(),
+            g.Average(r => r.ElapsedMs),
+            g.Max(r => r.ElapsedMs),
+            g.Average(r => r.SqlMs),
+            g.Average(r => r.SerializationMs),
+            g.Average(r => r.HandlerMs),
+            (long)g.Average(r => r.AllocatedBytes),
+            g.Average(r => r.CpuMs)))
+        .OrderByDescending(p => p.MeanElapsedMs * p.Requests)
+        .ToList();
+
+    public async Task ProfileAsync(HttpContext context, RequestDelegate next)
+    {
+        if (!IsEnabled || Random.Shared.NextDouble() >= _sampleRate)
+        {
+            await next(context);
+            return;
+        }
+
+        var profile = new RequestProfile();
+        context.Features.Set(profile);
+        var concurrent = Interlocked.Increment(ref _inFlight);
+        var allocatedBefore = GC.GetTotalAllocatedBytes();
+        var cpuBefore = ProcessorTime();
+        var started = Stopwatch.GetTimestamp();
+        try
+        {
+            await next(context);
+        }
+        finally
+        {
+            var elapsed = Stopwatch.GetElapsedTime(started).TotalMilliseconds;
+            var cpu = (ProcessorTime() - cpuBefore).TotalMilliseconds;
+            var allocated = GC.GetTotalAllocatedBytes() - allocatedBefore;
+            concurrent = Math.Max(concurrent, Interlocked.Decrement(ref _inFlight) + 1);
+
+            Record(new ProfiledRequest(
+                DateTime.UtcNow,
+                ConnectionProfiler.OperationName(context),
+                context.Response.StatusCode,
+                elapsed,
+                profile.SqlMs,
+                profile.SerializationMs,
+                Math.Max(0, elapsed - profile.SqlMs - profile.SerializationMs),
+                allocated,
+                cpu,
+                concurrent));
+        }
+    }
+
+    private static TimeSpan ProcessorTime()
+    {
+        using var process = Process.GetCurrentProcess();
+        return process.TotalProcessorTime;
+    }
+
+    private void Record(ProfiledRequest request)
+    {
+        _recent.Enqueue(request);
+        while (_recent.Count > RecentCapacity && _recent.TryDequeue(out _))
+        {
+        }
+    }
+}
+
+/// <summary>Attributes MVC result execution (JSON output formatting) to the serialization phase.</summary>
+public class ProfilingResultFilter : IAsyncResultFilter
+{
+    public async Task OnResultExecutionAsync(ResultExecutingContext context, ResultExecutionDelegate next)
+    {
+        var profile = RequestProfile.For(context.HttpContext);
+        if (profile is null)
+        {
+            await next();
+            return;
+        }
+
+        var started = Stopwatch.GetTimestamp();
+        var sqlBefore = profile.SqlMs;
+        await next();
+        profile.AddSerialization(Stopwatch.GetElapsedTime(started) - TimeSpan.FromMilliseconds(profile.SqlMs - sqlBefore));
+    }
+}
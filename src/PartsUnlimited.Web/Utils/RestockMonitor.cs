@@ -0,0 +1,264 @@
+using System.Diagnostics.Metrics;
+using Microsoft.EntityFrameworkCore;
+using PartsUnlimited.Models;
+
+namespace PartsUnlimited.Utils;
+
+public sealed record LowStockProduct(int ProductId, int CategoryId, int Inventory, int Threshold);
+
+/// <summary>A threshold crossing; At is the Product.Updated stamp of the change, the same on every replica.</summary>
+public sealed record RestockEvent(int ProductId, int CategoryId, int Inventory, int Threshold, DateTime At);
+
+public interface IRestockMonitor
+{
+    /// <summary>Products below their category threshold, lowest headroom first.</summary>
+    IReadOnlyList<LowStockProduct> BelowThreshold(int limit);
+
+    /// <summary>Takes up to <paramref name="max"/> pending threshold crossings, oldest first.</summary>
+    IReadOnlyList<RestockEvent> Drain(int max);
+
+    int Threshold(int categoryId);
+}
+
+/// <summary>
+/// Keeps every product ordered by stock headroom (Inventory minus its
+/// category's threshold from "Restock:Thresholds", else
+/// "Restock:DefaultThreshold"), so the products needing restock are always
+/// the prefix of a sorted set. The set is maintained from
+/// IProductCatalog.Changed: each sync costs O(changed · log n), never a catalog
+/// scan. A product crossing from at/above its threshold to below it queues
+/// one RestockEvent; it queues again only after it has been restocked.
+/// </summary>
+public class RestockMonitor : IRestockMonitor, IDisposable
+{
+    public const string MeterName = "PartsUnlimited.Restock";
+    private const int MaxPending = 10_000;
+
+    private readonly IProductCatalog _catalog;
+    private readonly ILogger<RestockMonitor> _logger;
+    private readonly int _defaultThreshold;
+    private readonly IReadOnlyDictionary<int, int> _thresholds;
+    private readonly object _sync = new();
+    private readonly SortedSet<(int Headroom, int ProductId)> _levels = new();
+    private readonly Dictionary<int, (int Headroom, int CategoryId)> _byProduct = new();
+    private readonly Queue<RestockEvent> _pending = new();
+    private readonly Counter<long> _crossings;
+
+    public RestockMonitor(
+        IProductCatalog catalog,
+        IConfiguration config,
+        IMeterFactory meterFactory,
+        ILogger<RestockMonitor> logger)
+    {
+        _catalog = catalog;
+        _logger = logger;
+        _defaultThreshold = config.GetValue("Restock:DefaultThreshold", 5);
+        _thresholds = config.GetSection("Restock:Thresholds").GetChildren()
+            .Where(s => int.TryParse(s.Key, out _) && int.TryParse(s.Value, out _))
+            .ToDictionary(s => int.Parse(s.Key), s => int.Parse(s.Value!));
+
+        var meter = meterFactory.Create(MeterName);
+        _crossings = meter.CreateCounter<long>("restock.crossings", description: "Products that fell below their restock threshold");
+        meter.CreateObservableGauge("restock.below_threshold", () => BelowCount(), description: "Products currently below their restock threshold");
+
+        _catalog.Changed += OnCatalogChanged;
+        Reset(_catalog.Views);
+    }
+
+    public int Threshold(int categoryId) => _thresholds.GetValueOrDefault(categoryId, _defaultThreshold);
+
+    public IReadOnlyList<LowStockProduct> BelowThreshold(int limit)
+    {
+        lock (_sync)
+        {
+            return _levels
+                .TakeWhile(l => l.Headroom < 0)
+                .Take(limit)
+                .Select(l =>
+                {
+                    var categoryId = _byProduct[l.ProductId].CategoryId;
+                    var threshold = Threshold(categoryId);
+                    return new LowStockProduct(l.ProductId, categoryId, l.Headroom + threshold, threshold);
+                })
+                .ToList();
+        }
+    }
+
+    public IReadOnlyList<RestockEvent> Drain(int max)
+    {
+        lock (_sync)
+        {
+            var batch = new List<RestockEvent>(Math.Min(max, _pending.Count));
+            while (batch.Count < max && _pending.TryDequeue(out var restock))
+                batch.Add(restock);
+            return batch;
+        }
+    }
+
+    public void Dispose() => _catalog.Changed -= OnCatalogChanged;
+
+    private void OnCatalogChanged(CatalogChange change)
+    {
+        if (change.Reset)
+        {
+            Reset(change.Changed.Select(p => new ProductView(p)));
+            return;
+        }
+
+        lock (_sync)
+        {
+            foreach (var id in change.Removed)
+            {
+                if (_byProduct.Remove(id, out var old))
+                    _levels.Remove((old.Headroom, id));
+            }
+            foreach (var product in change.Changed)
+                Track(new ProductView(product), raiseEvents: true);
+        }
+    }
+
+    private void Reset(IEnumerable<ProductView> products)
+    {
+        // A full reload only re-baselines: crossings are detected between
+        // known levels, so a restart does not replay every low product.
+        lock (_sync)
+        {
+            _levels.Clear();
+            _byProduct.Clear();
+            foreach (var product in products)
+                Track(product, raiseEvents: false);
+        }
+    }
+
+    private void Track(ProductView product, bool raiseEvents)
+    {
+        var threshold = Threshold(product.CategoryId);
+        var headroom = product.Inventory - threshold;
+        var wasBelow = false;
+        if (_byProduct.TryGetValue(product.ProductId, out var old))
+        {
+            if (old.Headroom == headroom && old.CategoryId == product.CategoryId) return;
+            _levels.Remove((old.Headroom, product.ProductId));
+            wasBelow = old.Headroom < 0;
+        }
+
+        _byProduct[product.ProductId] = (headroom, product.CategoryId);
+        _levels.Add((headroom, product.ProductId));
+
+        if (raiseEvents && headroom < 0 && !wasBelow)
+        {
+            _crossings.Add(1, new KeyValuePair<string, object?>("category", product.CategoryId));
+            if (_pending.Count >= MaxPending)
+            {
+                _logger.LogWarning("Restock queue full; dropping event for product {ProductId}", product.ProductId);
+                return;
+            }
+            _pending.Enqueue(new RestockEvent(product.ProductId, product.CategoryId, product.Inventory, threshold, product.Updated));
+        }
+    }
+
+    private int BelowCount()
+    {
+        lock (_sync)
+        {
+            return _levels.Count == 0 || _levels.Min.Headroom >= 0
+                ? 0
+                : _levels.GetViewBetween(_levels.Min, (-1, int.MaxValue)).Count;
+        }
+    }
+}
+
+/// <summary>
+/// Publishes queued restock crossings every "Restock:IntervalSeconds" in
+/// batches of "Restock:BatchSize": one structured log entry per batch, which
+/// the log pipeline forwards to purchasing. Every replica detects the same
+/// crossing from its own catalog, so each event is first claimed in the
+/// RestockClaims table, keyed by product and the change's Updated stamp, and
+/// only the replica whose insert wins publishes it. If the claim cannot be
+/// made the batch is published anyway, flagged unclaimed: a duplicate is
+/// cheaper for purchasing than a missed restock. Claims older than a day are
+/// pruned.
+/// </summary>
+public class RestockNotifier : BackgroundService
+{
+    private static readonly TimeSpan ClaimRetention = TimeSpan.FromDays(1);
+
+    private readonly IRestockMonitor _monitor;
+    private readonly IServiceScopeFactory _scopeFactory;
+    private readonly ILogger<RestockNotifier> _logger;
+    private readonly TimeSpan _interval;
+    private readonly int _batchSize;
+
+    public RestockNotifier(
+        IRestockMonitor monitor,
+        IServiceScopeFactory scopeFactory,
+        IConfiguration config,
+        ILogger<RestockNotifier> logger)
+    {
+        _monitor = monitor;
+        _scopeFactory = scopeFactory;
+        _logger = logger;
+        _interval = TimeSpan.FromSeconds(Math.Max(1, config.GetValue("Restock:IntervalSeconds", 30)));
+        _batchSize = Math.Max(1, config.GetValue("Restock:BatchSize", 100));
+    }
+
+    protected override async Task ExecuteAsync(CancellationToken stoppingToken)
+    {
+        using var timer = new PeriodicTimer(_interval);
+        while (await timer.WaitForNextTickAsync(stoppingToken))
+        {
+            IReadOnlyList<RestockEvent> batch;
+            while ((batch = _monitor.Drain(_batchSize)).Count > 0)
+            {
+                IReadOnlyList<RestockEvent> claimed;
+                try
+                {
+                    claimed = await ClaimAsync(batch, stoppingToken);
+                }
+                catch (Exception ex) when (!stoppingToken.IsCancellationRequested)
+                {
+                    _logger.LogWarning(ex, "Restock claims failed; publishing {Count} events unclaimed", batch.Count);
+                    Publish(batch, unclaimed: true);
+                    continue;
+                }
+
+                if (claimed.Count > 0)
+                    Publish(claimed, unclaimed: false);
+            }
+        }
+    }
+
+    private void Publish(IReadOnlyList<RestockEvent> batch, bool unclaimed)
+    {
+        _logger.LogWarning(
+            "Restock needed for {Count} products (unclaimed: {Unclaimed}): {@Products}",
+            batch.Count,
+            unclaimed,
+            batch.Select(e => new { e.ProductId, e.CategoryId, e.Inventory, e.Threshold }));
+    }
+
+    private async Task<IReadOnlyList<RestockEvent>> ClaimAsync(IReadOnlyList<RestockEvent> batch, CancellationToken cancellationToken)
+    {
+        await using var scope = _scopeFactory.CreateAsyncScope();
+        var db = scope.ServiceProvider.GetRequiredService<PartsUnlimitedContext>();
+
+        var claimed = new List<RestockEvent>(batch.Count);
+        foreach (var restock in batch)
+        {
+            // UPDLOCK + HOLDLOCK serialize replicas racing on the same key
+            var inserted = await db.Database.ExecuteSqlInterpolatedAsync($"""
+                INSERT INTO RestockClaims (ProductId, At)
+                SELECT {restock.ProductId}, {restock.At}
+                WHERE NOT EXISTS (
+                    SELECT 1 FROM RestockClaims WITH (UPDLOCK, HOLDLOCK)
+                    WHERE ProductId = {restock.ProductId} AND At = {restock.At})
+                """, cancellationToken);
+            if (inserted > 0) claimed.Add(restock);
+        }
+
+        var cutoff = DateTime.UtcNow - ClaimRetention;
+        await db.Database.ExecuteSqlInterpolatedAsync(
+            $"DELETE FROM RestockClaims WHERE ClaimedAt < {cutoff}", cancellationToken);
+        return claimed;
+    }
+}
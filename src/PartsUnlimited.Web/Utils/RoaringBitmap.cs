@@ -0,0 +1,588 @@
+using System.Numerics;
+
+namespace PartsUnlimited.Utils;
+
+/// <summary>
+/// Compressed bitmap over catalog slots in the style of Roaring bitmaps, used
+/// by the in-memory product indexes. Values are split into 65536-value chunks
+/// by their high 16 bits and each chunk is kept in whichever container is
+/// smallest for its contents: a sorted array (sparse, at most 4096 values), a
+/// 1024-word bitmap (dense) or a list of runs (contiguous ranges such as "every
+/// slot" or a category whose products were inserted together). Bitmaps are
+/// immutable; set operations return new ones, pair containers by chunk and
+/// skip chunks missing on either side. AndCount answers |a ∧ b| without
+/// allocating, which is what facet counting needs.
+/// </summary>
+public sealed class RoaringBitmap
+{
+    private const int ChunkBits = 16;
+    private const int ChunkSize = 1 << ChunkBits;
+    private const int MaxArrayValues = 4096;
+    private const int BitmapWords = ChunkSize / 64;
+
+    public static readonly RoaringBitmap Empty = new([], []);
+
+    private readonly ushort[] _keys;
+    private readonly Container[] _containers;
+
+    private RoaringBitmap(ushort[] keys, Container[] containers)
+    {
+        _keys = keys;
+        _containers = containers;
+        foreach (var container in containers)
+            Count += container.Cardinality;
+    }
+
+    public int Count { get; }
+
+    /// <summary>Every value in [0, length), one run per chunk.</summary>
+    public static RoaringBitmap Range(int length)
+    {
+        var chunks = (length + ChunkSize - 1) / ChunkSize;
+        var keys = new ushort[chunks];
+        var containers = new Container[chunks];
+        for (var key = 0; key < chunks; key++)
+        {
+            var last = Math.Min(length - (key << ChunkBits), ChunkSize) - 1;
+            keys[key] = (ushort)key;
+            containers[key] = new RunContainer([((ushort)0, (ushort)last)]);
+        }
+        return new RoaringBitmap(keys, containers);
+    }
+
+    public static RoaringBitmap FromSorted(IEnumerable<int> values)
+    {
+        var builder = new Builder();
+        foreach (var value in values)
+            builder.Add(value);
+        return builder.Build();
+    }
+
+    public bool Contains(int value)
+    {
+        var index = Array.BinarySearch(_keys, (ushort)(value >> ChunkBits));
+        return index >= 0 && _containers[index].Contains((ushort)value);
+    }
+
+    public RoaringBitmap And(RoaringBitmap other)
+    {
+        var keys = new List<ushort>();
+        var containers = new List<Container>();
+        for (int i = 0, j = 0; i < _keys.Length && j < other._keys.Length;)
+        {
+            if (_keys[i] < other._keys[j]) i++;
+            else if (_keys[i] > other._keys[j]) j++;
+            else
+            {
+                if (Container.And(_containers[i], other._containers[j]) is { } container)
+                {
+                    keys.Add(_keys[i]);
+                    containers.Add(container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return new RoaringBitmap(keys.ToArray(), containers.ToArray());
+    }
+
+    public RoaringBitmap Or(RoaringBitmap other)
+    {
+        var keys = new List<ushort>();
+        var containers = new List<Container>();
+        int i = 0, j = 0;
+        while (i < _keys.Length || j < other._keys.Length)
+        {
+            if (j == other._keys.Length || (i < _keys.Length && _keys[i] < other._keys[j]))
+            {
+                keys.Add(_keys[i]);
+                containers.Add(_containers[i++]);
+            }
+            else if (i == _keys.Length || _keys[i] > other._keys[j])
+            {
+                keys.Add(other._keys[j]);
+                containers.Add(other._containers[j++]);
+            }
+            else
+            {
+                keys.Add(_keys[i]);
+                containers.Add(Container.Or(_containers[i++], other._containers[j++]));
+            }
+        }
+        return new RoaringBitmap(keys.ToArray(), containers.ToArray());
+    }
+
+    public RoaringBitmap AndNot(RoaringBitmap other)
+    {
+        var keys = new List<ushort>();
+        var containers = new List<Container>();
+        var j = 0;
+        for (var i = 0; i < _keys.Length; i++)
+        {
+            while (j < other._keys.Length && other._keys[j] < _keys[i]) j++;
+
+            var container = j < other._keys.Length && other._keys[j] == _keys[i]
+                ? Container.AndNot(_containers[i], other._containers[j])
+                : _containers[i];
+            if (container is null) continue;
+
+            keys.Add(_keys[i]);
+            containers.Add(container);
+        }
+        return new RoaringBitmap(keys.ToArray(), containers.ToArray());
+    }
+
+    public int AndCount(RoaringBitmap other)
+    {
+        var count = 0;
+        for (int i = 0, j = 0; i < _keys.Length && j < other._keys.Length;)
+        {
+            if (_keys[i] < other._keys[j]) i++;
+            else if (_keys[i] > other._keys[j]) j++;
+            else count += Container.AndCount(_containers[i++], other._containers[j++]);
+        }
+        return count;
+    }
+
+    /// <summary>Set values in ascending order.</summary>
+    public IEnumerable<int> Indexes()
+    {
+        for (var i = 0; i < _keys.Length; i++)
+        {
+            var high = _keys[i] << ChunkBits;
+            foreach (var low in _containers[i].Values())
+                yield return high | low;
+        }
+    }
+
+    /// <summary>
+    /// Builds a bitmap from values added in ascending order; adding the last
+    /// value again is a no-op, so callers can add a slot once per matching term.
+    /// </summary>
+    public sealed class Builder
+    {
+        private readonly List<ushort> _keys = new();
+        private readonly List<Container> _containers = new();
+        private readonly List<ushort> _chunk = new();
+        private int _key = -1;
+        private int _last = -1;
+
+        public void Add(int value)
+        {
+            ArgumentOutOfRangeException.ThrowIfNegative(value);
+            if (value == _last) return;
+            if (value < _last) throw new ArgumentException("Values must be added in ascending order", nameof(value));
+
+            _last = value;
+            var key = value >> ChunkBits;
+            if (key != _key)
+            {
+                Flush();
+                _key = key;
+            }
+            _chunk.Add((ushort)value);
+        }
+
+        public RoaringBitmap Build()
+        {
+            Flush();
+            return new RoaringBitmap(_keys.ToArray(), _containers.ToArray());
+        }
+
+        private void Flush()
+        {
+            if (_chunk.Count == 0) return;
+            _keys.Add((ushort)_key);
+            _containers.Add(Container.FromSorted(_chunk)!);
+            _chunk.Clear();
+        }
+    }
+
+    private abstract class Container
+    {
+        public abstract int Cardinality { get; }
+
+        public abstract bool Contains(ushort value);
+
+        public abstract IEnumerable<ushort> Values();
+
+        /// <summary>Sets this container's values in a chunk-sized word array.</summary>
+        public abstract void SetIn(ulong[] words);
+
+        /// <summary>Clears this container's values in a chunk-sized word array.</summary>
+        public abstract void ClearIn(ulong[] words);
+
+        public ulong[] ToWords()
+        {
+            var words = new ulong[BitmapWords];
+            SetIn(words);
+            return words;
+        }
+
+        public static Container? And(Container a, Container b) => (a, b) switch
+        {
+            (ArrayContainer x, _) => x.Where(b.Contains),
+            (_, ArrayContainer y) => y.Where(a.Contains),
+            (RunContainer x, RunContainer y) => x.Intersect(y),
+            _ => FromWords(Combine(a.ToWords(), b, static (x, y) => x & y))
+        };
+
+        public static Container Or(Container a, Container b)
+        {
+            switch (a, b)
+            {
+                case (RunContainer x, RunContainer y):
+                    return x.Union(y);
+                case (ArrayContainer x, ArrayContainer y) when x.Cardinality + y.Cardinality <= MaxArrayValues:
+                    return x.Union(y);
+                default:
+                    var words = a.ToWords();
+                    b.SetIn(words);
+                    return FromWords(words)!;
+            }
+        }
+
+        public static Container? AndNot(Container a, Container b)
+        {
+            if (a is ArrayContainer x) return x.Where(value => !b.Contains(value));
+
+            var words = a.ToWords();
+            b.ClearIn(words);
+            return FromWords(words);
+        }
+
+        public static int AndCount(Container a, Container b) => (a, b) switch
+        {
+            (ArrayContainer x, _) => x.CountWhere(b.Contains),
+            (_, ArrayContainer y) => y.CountWhere(a.Contains),
+            (BitmapContainer x, BitmapContainer y) => x.AndCount(y),
+            (RunContainer x, BitmapContainer y) => y.CountIn(x),
+            (BitmapContainer x, RunContainer y) => x.CountIn(y),
+            (RunContainer x, RunContainer y) => x.OverlapCount(y),
+            _ => throw new InvalidOperationException("Unknown container")
+        };
+
+        /// <summary>Smallest container for sorted, distinct values; null when empty.</summary>
+        public static Container? FromSorted(IReadOnlyList<ushort> values)
+        {
+            if (values.Count == 0) return null;
+
+            var runs = 1;
+            for (var i = 1; i < values.Count; i++)
+            {
+                if (values[i] != values[i - 1] + 1) runs++;
+            }
+
+            if (PrefersRuns(runs, values.Count))
+            {
+                var ranges = new (ushort Start, ushort End)[runs];
+                var run = 0;
+                var start = values[0];
+                for (var i = 1; i <= values.Count; i++)
+                {
+                    if (i < values.Count && values[i] == values[i - 1] + 1) continue;
+                    ranges[run++] = (start, values[i - 1]);
+                    if (i < values.Count) start = values[i];
+                }
+                return new RunContainer(ranges);
+            }
+
+            if (values.Count <= MaxArrayValues) return new ArrayContainer(values.ToArray());
+
+            var words = new ulong[BitmapWords];
+            foreach (var value in values)
+                words[value >> 6] |= 1UL << value;
+            return new BitmapContainer(words, values.Count);
+        }
+
+        /// <summary>Smallest container for a chunk-sized word array; null when empty.</summary>
+        public static Container? FromWords(ulong[] words)
+        {
+            var cardinality = 0;
+            var runs = 0;
+            var carry = 0UL;
+            foreach (var word in words)
+            {
+                cardinality += BitOperations.PopCount(word);
+                // A run starts at every set bit whose predecessor is clear
+                runs += BitOperations.PopCount(word & ~((word << 1) | carry));
+                carry = word >> 63;
+            }
+
+            if (cardinality == 0) return null;
+            if (!PrefersRuns(runs, cardinality) && cardinality > MaxArrayValues)
+                return new BitmapContainer(words, cardinality);
+
+            var values = new List<ushort>(cardinality);
+            for (var i = 0; i < words.Length; i++)
+            {
+                var word = words[i];
+                while (word != 0)
+                {
+                    values.Add((ushort)((i << 6) + BitOperations.TrailingZeroCount(word)));
+                    word &= word - 1;
+                }
+            }
+            return FromSorted(values);
+        }
+
+        // 4 bytes per run against 2 per array value or a fixed 8 KB bitmap
+        protected static bool PrefersRuns(int runs, int cardinality)
+            => runs * 4 < Math.Min(cardinality * 2, BitmapWords * 8);
+
+        private static ulong[] Combine(ulong[] words, Container other, Func<ulong, ulong, ulong> op)
+        {
+            var otherWords = other is BitmapContainer bitmap ? bitmap.Words : other.ToWords();
+            for (var i = 0; i < words.Length; i++)
+                words[i] = op(words[i], otherWords[i]);
+            return words;
+        }
+
+        /// <summary>Bits of word <paramref name="word"/> that fall inside [start, end].</summary>
+        protected static ulong Mask(int start, int end, int word)
+        {
+            var from = word == start >> 6 ? start & 63 : 0;
+            var to = word == end >> 6 ? end & 63 : 63;
+            return (ulong.MaxValue << from) & (ulong.MaxValue >> (63 - to));
+        }
+    }
+
+    private sealed class ArrayContainer : Container
+    {
+        private readonly ushort[] _values;
+
+        public ArrayContainer(ushort[] values) => _values = values;
+
+        public override int Cardinality => _values.Length;
+
+        public override bool Contains(ushort value) => Array.BinarySearch(_values, value) >= 0;
+
+        public override IEnumerable<ushort> Values() => _values;
+
+        public override void SetIn(ulong[] words)
+        {
+            foreach (var value in _values)
+                words[value >> 6] |= 1UL << value;
+        }
+
+        public override void ClearIn(ulong[] words)
+        {
+            foreach (var value in _values)
+                words[value >> 6] &= ~(1UL << value);
+        }
+
+        public Container? Where(Func<ushort, bool> predicate)
+        {
+            var values = new List<ushort>();
+            foreach (var value in _values)
+            {
+                if (predicate(value)) values.Add(value);
+            }
+            return FromSorted(values);
+        }
+
+        public int CountWhere(Func<ushort, bool> predicate)
+        {
+            var count = 0;
+            foreach (var value in _values)
+            {
+                if (predicate(value)) count++;
+            }
+            return count;
+        }
+
+        public Container Union(ArrayContainer other)
+        {
+            var values = new List<ushort>(_values.Length + other._values.Length);
+            int i = 0, j = 0;
+            while (i < _values.Length || j < other._values.Length)
+            {
+                if (j == other._values.Length || (i < _values.Length && _values[i] < other._values[j]))
+                    values.Add(_values[i++]);
+                else if (i == _values.Length || _values[i] > other._values[j])
+                    values.Add(other._values[j++]);
+                else
+                {
+                    values.Add(_values[i++]);
+                    j++;
+                }
+            }
+            return FromSorted(values)!;
+        }
+    }
+
+    private sealed class BitmapContainer : Container
+    {
+        private readonly int _cardinality;
+
+        public BitmapContainer(ulong[] words, int cardinality)
+        {
+            Words = words;
+            _cardinality = cardinality;
+        }
+
+        public ulong[] Words { get; }
+
+        public override int Cardinality => _cardinality;
+
+        public override bool Contains(ushort value) => (Words[value >> 6] & (1UL << value)) != 0;
+
+        public override IEnumerable<ushort> Values()
+        {
+            for (var i = 0; i < Words.Length; i++)
+            {
+                var word = Words[i];
+                while (word != 0)
+                {
+                    yield return (ushort)((i << 6) + BitOperations.TrailingZeroCount(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        public override void SetIn(ulong[] words)
+        {
+            for (var i = 0; i < words.Length; i++)
+                words[i] |= Words[i];
+        }
+
+        public override void ClearIn(ulong[] words)
+        {
+            for (var i = 0; i < words.Length; i++)
+                words[i] &= ~Words[i];
+        }
+
+        public int AndCount(BitmapContainer other)
+        {
+            var count = 0;
+            for (var i = 0; i < Words.Length; i++)
+                count += BitOperations.PopCount(Words[i] & other.Words[i]);
+            return count;
+        }
+
+        public int CountIn(RunContainer runs)
+        {
+            var count = 0;
+            foreach (var (start, end) in runs.Runs)
+            {
+                for (var w = start >> 6; w <= end >> 6; w++)
+                {
+                    count += BitOperations.PopCount(Words[w] & Mask(start, end, w));
+                }
+            }
+            return count;
+        }
+    }
+
+    private sealed class RunContainer : Container
+    {
+        private readonly int _cardinality;
+
+        /// <summary>Disjoint, non-adjacent inclusive ranges in ascending order.</summary>
+        public RunContainer((ushort Start, ushort End)[] runs)
+        {
+            Runs = runs;
+            foreach (var (start, end) in runs)
+                _cardinality += end - start + 1;
+        }
+
+        public (ushort Start, ushort End)[] Runs { get; }
+
+        public override int Cardinality => _cardinality;
+
+        public override bool Contains(ushort value)
+        {
+            int lo = 0, hi = Runs.Length - 1;
+            while (lo <= hi)
+            {
+                var mid = (lo + hi) >> 1;
+                if (value < Runs[mid].Start) hi = mid - 1;
+                else if (value > Runs[mid].End) lo = mid + 1;
+                else return true;
+            }
+            return false;
+        }
+
+        public override IEnumerable<ushort> Values()
+        {
+            foreach (var (start, end) in Runs)
+            {
+                for (var value = (int)start; value <= end; value++)
+                    yield return (ushort)value;
+            }
+        }
+
+        public override void SetIn(ulong[] words)
+        {
+            foreach (var (start, end) in Runs)
+            {
+                for (var w = start >> 6; w <= end >> 6; w++)
+                    words[w] |= Mask(start, end, w);
+            }
+        }
+
+        public override void ClearIn(ulong[] words)
+        {
+            foreach (var (start, end) in Runs)
+            {
+                for (var w = start >> 6; w <= end >> 6; w++)
+                    words[w] &= ~Mask(start, end, w);
+            }
+        }
+
+        public Container? Intersect(RunContainer other)
+        {
+            var runs = new List<(ushort Start, ushort End)>();
+            for (int i = 0, j = 0; i < Runs.Length && j < other.Runs.Length;)
+            {
+                var start = Math.Max(Runs[i].Start, other.Runs[j].Start);
+                var end = Math.Min(Runs[i].End, other.Runs[j].End);
+                if (start <= end) runs.Add((start, end));
+                if (Runs[i].End < other.Runs[j].End) i++;
+                else j++;
+            }
+            return FromRuns(runs);
+        }
+
+        public Container Union(RunContainer other)
+        {
+            var runs = new List<(ushort Start, ushort End)>(Runs.Length + other.Runs.Length);
+            foreach (var run in Runs.Concat(other.Runs).OrderBy(r => r.Start))
+            {
+                if (runs.Count > 0 && run.Start <= runs[^1].End + 1)
+                {
+                    if (run.End > runs[^1].End) runs[^1] = (runs[^1].Start, run.End);
+                }
+                else
+                {
+                    runs.Add(run);
+                }
+            }
+            return FromRuns(runs)!;
+        }
+
+        public int OverlapCount(RunContainer other)
+        {
+            var count = 0;
+            for (int i = 0, j = 0; i < Runs.Length && j < other.Runs.Length;)
+            {
+                var start = Math.Max(Runs[i].Start, other.Runs[j].Start);
+                var end = Math.Min(Runs[i].End, other.Runs[j].End);
+                if (start <= end) count += end - start + 1;
+                if (Runs[i].End < other.Runs[j].End) i++;
+                else j++;
+            }
+            return count;
+        }
+
+        private static Container? FromRuns(List<(ushort Start, ushort End)> runs)
+        {
+            if (runs.Count == 0) return null;
+
+            var container = new RunContainer(runs.ToArray());
+            return PrefersRuns(container.Runs.Length, container.Cardinality)
+                ? container
+                : FromWords(container.ToWords());
+        }
+    }
+}
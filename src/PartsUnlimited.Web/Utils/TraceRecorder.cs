@@ -0,0 +1,108 @@
+using System.Collections.Concurrent;
+using System.Diagnostics.Tracing;
+using Microsoft.Diagnostics.NETCore.Client;
+
+namespace PartsUnlimited.Utils;
+
+public sealed record TraceInfo(string Id, string Pod, DateTime StartedAt, int Seconds, string Status, long? Bytes);
+
+/// <summary>
+/// Records bounded EventPipe traces of this process: the CPU sample profiler
+/// plus GC allocation ticks (one sampled event per ~100 KB allocated, with
+/// the allocating type and stack). Traces are .nettrace files that open in
+/// PerfView, Visual Studio or speedscope (via <c>dotnet-trace convert</c>);
+/// filter stacks on "PartsUnlimited" there, since EventPipe cannot filter
+/// by namespace at collection time. One trace runs at a time, at most
+/// MaxSeconds long, and only the newest KeepTraces files are kept.
+/// Traces stay on the local disk of the pod that recorded them; the id starts
+/// with the pod name (the host name under Kubernetes) so a download can be
+/// sent to that pod.
+/// </summary>
+public class TraceRecorder
+{
+    public const int MaxSeconds = 120;
+    private const int BufferMB = 32;
+    private const int KeepTraces = 5;
+    private const long GcKeyword = 0x1;
+
+    private static readonly EventPipeProvider[] Providers =
+    [
+        new("Microsoft-DotNETCore-SampleProfiler", EventLevel.Informational),
+        // Verbose on the GC keyword includes GCAllocationTick
+        new("Microsoft-Windows-DotNETRuntime", EventLevel.Verbose, GcKeyword)
+    ];
+
+    private readonly ConcurrentDictionary<string, TraceInfo> _traces = new();
+    private readonly string _directory = Path.Combine(Path.GetTempPath(), "partsunlimited-traces");
+    private readonly ILogger<TraceRecorder> _logger;
+    private int _running;
+
+    public TraceRecorder(ILogger<TraceRecorder> logger) => _logger = logger;
+
+    /// <summary>The pod (host) this process runs on, which holds its trace files.</summary>
+    public static string Pod => Environment.MachineName;
+
+    public IReadOnlyList<TraceInfo> Traces => _traces.Values.OrderByDescending(t => t.StartedAt).ToList();
+
+    public TraceInfo? Find(string id) => _traces.GetValueOrDefault(id);
+
+    public string PathFor(string id) => Path.Combine(_directory, $"{id}.nettrace");
+
+    /// <summary>Starts a trace, or returns null if one is already running.</summary>
+    public TraceInfo? Start(int seconds)
+    {
+        if (Interlocked.CompareExchange(ref _running, 1, 0) != 0) return null;
+
+        seconds = Math.Clamp(seconds, 1, MaxSeconds);
+        var trace = new TraceInfo($"{Pod}-{DateTime.UtcNow:yyyyMMddHHmmss}", Pod, DateTime.UtcNow, seconds, "running", null);
+        _traces[trace.Id] = trace;
+        _ = Task.Run(() => RecordAsync(trace));
+        return trace;
+    }
+
+    private async Task RecordAsync(TraceInfo trace)
+    {
+        var path = PathFor(trace.Id);
+        try
+        {
+            Directory.CreateDirectory(_directory);
+            var client = new DiagnosticsClient(Environment.ProcessId);
+            using var session = client.StartEventPipeSession(Providers, requestRundown: true, circularBufferMB: BufferMB);
+            await using (var file = File.Create(path))
+            {
+                var copy = session.EventStream.CopyToAsync(file);
+                await Task.Delay(TimeSpan.FromSeconds(trace.Seconds));
+                await session.StopAsync(CancellationToken.None);
+                await copy;
+            }
+
+            _traces[trace.Id] = trace with { Status = "completed", Bytes = new FileInfo(path).Length };
+        }
+        catch (Exception ex)
+        {
+            _logger.LogWarning(ex, "EventPipe trace {TraceId} failed", trace.Id);
+            _traces[trace.Id] = trace with { Status = "failed" };
+        }
+        finally
+        {
+            Prune();
+            Interlocked.Exchange(ref _running, 0);
+        }
+    }
+
+    private void Prune()
+    {
+        foreach (var old in Traces.Skip(KeepTraces))
+        {
+            _traces.TryRemove(old.Id, out _);
+            try
+            {
+                File.Delete(PathFor(old.Id));
+            }
+            catch (IOException)
+            {
+                // Still being downloaded; left to the temp directory cleanup
+            }
+        }
+    }
+}
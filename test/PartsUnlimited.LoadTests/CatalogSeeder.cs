@@ -0,0 +1,93 @@
+using System.Text.Json;
+using Microsoft.EntityFrameworkCore;
+using PartsUnlimited.Models;
+
+namespace PartsUnlimited.LoadTests;
+
+/// <summary>
+/// Inserts a synthetic catalog straight into the database: categories up to
+/// the requested count, then products in batches. Products carry 2-4
+/// ProductDetails attributes (the app's tags) drawn from a fixed vocabulary
+/// so facet and tag queries have realistic selectivity. SKUs start with "LT"
+/// so seeded rows can be told apart (and removed with <c>DELETE FROM Products
+/// WHERE SkuNumber LIKE 'LT%'</c>).
+/// </summary>
+public static class CatalogSeeder
+{
+    private const int BatchSize = 5000;
+
+    private static readonly string[] Adjectives = ["Ultra", "Pro", "Heavy Duty", "Compact", "Premium", "Sport", "Classic", "Eco"];
+    private static readonly string[] Nouns = ["Tire", "Rim", "Brake Pad", "Battery", "Headlight", "Oil Filter", "Spark Plug", "Wiper"];
+    private static readonly (string Key, string[] Values)[] Attributes =
+    [
+        ("Material", ["Steel", "Aluminium", "Rubber", "Carbon"]),
+        ("Finish", ["Chrome", "Matte", "Gloss"]),
+        ("Size", ["14", "15", "16", "17", "18"]),
+        ("Brand", ["Contoso", "Fabrikam", "Northwind", "Tailspin", "Woodgrove"]),
+        ("Warranty", ["1 year", "2 years", "Lifetime"])
+    ];
+
+    public static async Task SeedAsync(string connectionString, int products, int categories, int seed)
+    {
+        var options = new DbContextOptionsBuilder<PartsUnlimitedContext>()
+            .UseSqlServer(connectionString)
+            .Options;
+        var random = new Random(seed);
+
+        await using var db = new PartsUnlimitedContext(options);
+        var existing = await db.Categories.CountAsync();
+        for (var i = existing; i < categories; i++)
+            db.Categories.Add(new Category { Name = $"Load Category {i + 1}", Description = "Synthetic load-test category" });
+        await db.SaveChangesAsync();
+
+        var categoryIds = await db.Categories.Select(c => c.CategoryId).ToArrayAsync();
+        var start = await db.Products.IgnoreQueryFilters().CountAsync(p => p.SkuNumber.StartsWith("LT"));
+        db.ChangeTracker.AutoDetectChangesEnabled = false;
+
+        for (var i = start; i < start + products; i++)
+        {
+            db.Products.Add(Generate(random, i, categoryIds));
+
+            if ((i - start + 1) % BatchSize == 0)
+            {
+                await db.SaveChangesAsync();
+                db.ChangeTracker.Clear();
+                Console.WriteLine($"  {i - start + 1:N0} / {products:N0} products");
+            }
+        }
+
+        await db.SaveChangesAsync();
+        Console.WriteLine($"Seeded {products:N0} products across {categoryIds.Length} categories");
+    }
+
+    /// <summary>One synthetic product; also used in memory by CodecBenchmark.</summary>
+    public static Product Generate(Random random, int index, int[] categoryIds)
+    {
+        var price = Math.Round((decimal)(random.NextDouble() * 495 + 5), 2);
+        var created = DateTime.UtcNow.AddMinutes(-random.Next(0, 60 * 24 * 365));
+        return new Product
+        {
+            Title = $"{Adjectives[random.Next(Adjectives.Length)]} {Nouns[random.Next(Nouns.Length)]} {index + 1}",
+            SkuNumber = $"LT{index + 1:D8}",
+            CategoryId = categoryIds[random.Next(categoryIds.Length)],
+            Price = price,
+            SalePrice = random.Next(4) == 0 ? Math.Round(price * 0.8m, 2) : price,
+            ProductArtUrl = "product_generic.jpg",
+            Description = "Synthetic product generated for load testing.",
+            ProductDetails = Details(random),
+            Inventory = random.Next(0, 500),
+            LeadTime = random.Next(0, 14),
+            RecommendationId = index + 1,
+            Created = created
+        };
+    }
+
+    private static string Details(Random random)
+    {
+        var details = new Dictionary<string, string>();
+        var count = random.Next(2, 5);
+        foreach (var (key, values) in Attributes.OrderBy(_ => random.Next()).Take(count))
+            details[key] = values[random.Next(values.Length)];
+        return JsonSerializer.Serialize(details);
+    }
+}
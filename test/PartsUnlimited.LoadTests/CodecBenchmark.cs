@@ -0,0 +1,101 @@
+using System.Diagnostics;
+using System.IO.Compression;
+using System.Text.Json;
+using PartsUnlimited.Models;
+using PartsUnlimited.Utils;
+
+namespace PartsUnlimited.LoadTests;
+
+/// <summary>
+/// In-process comparison of the product API's two wire formats over a
+/// synthetic catalog: the JSON the API writes today (System.Text.Json with
+/// the MVC web defaults) and CompactProductCodec (application/cbor). Reports
+/// payload size (raw and gzip), encode and decode time per product and
+/// bytes this process allocates per run. No app or database is needed.
+/// </summary>
+public static class CodecBenchmark
+{
+    private static readonly JsonSerializerOptions JsonOptions = new(JsonSerializerDefaults.Web);
+
+    private sealed record Result(string Format, int Bytes, int GzipBytes, double EncodeMs, double DecodeMs, long EncodeAlloc, long DecodeAlloc);
+
+    public static void Run(int products, int iterations, int seed, TextWriter output)
+    {
+        var random = new Random(seed);
+        var categoryIds = Enumerable.Range(1, 50).ToArray();
+        var catalog = Enumerable.Range(0, products)
+            .Select(i =>
+            {
+                var product = CatalogSeeder.Generate(random, i, categoryIds);
+                product.ProductId = i + 1;
+                product.Updated = product.Created;
+                return product;
+            })
+            .ToList();
+
+        var results = new[]
+        {
+            Measure("json", catalog, iterations,
+                list => JsonSerializer.SerializeToUtf8Bytes(list, JsonOptions),
+                bytes => JsonSerializer.Deserialize<List<Product>>(bytes, JsonOptions)!.Count),
+            Measure("cbor", catalog, iterations,
+                list => CompactProductCodec.Encode(list),
+                bytes => CompactProductCodec.DecodeProducts(bytes).Count)
+        };
+
+        output.WriteLine($"{products:N0} products, {iterations} iterations");
+        output.WriteLine();
+        output.WriteLine($"{"format",-8}{"bytes",14}{"gzip",14}{"B/product",11}{"enc µs/p",10}{"dec µs/p",10}{"enc alloc",14}{"dec alloc",14}");
+        foreach (var r in results)
+        {
+            output.WriteLine(
+                $"{r.Format,-8}{r.Bytes,14:N0}{r.GzipBytes,14:N0}{(double)r.Bytes / products,11:F1}" +
+                $"{r.EncodeMs * 1000 / products,10:F2}{r.DecodeMs * 1000 / products,10:F2}" +
+                $"{r.EncodeAlloc,14:N0}{r.DecodeAlloc,14:N0}");
+        }
+
+        var (json, cbor) = (results[0], results[1]);
+        output.WriteLine();
+        output.WriteLine($"cbor vs json: size {Ratio(cbor.Bytes, json.Bytes)}, gzip size {Ratio(cbor.GzipBytes, json.GzipBytes)}, " +
+                         $"encode {Ratio(cbor.EncodeMs, json.EncodeMs)}, decode {Ratio(cbor.DecodeMs, json.DecodeMs)}");
+    }
+
+    private static Result Measure(
+        string format,
+        List<Product> catalog,
+        int iterations,
+        Func<List<Product>, byte[]> encode,
+        Func<byte[], int> decode)
+    {
+        // Warm up (JIT, serializer metadata) and check the round trip
+        var payload = encode(catalog);
+        if (decode(payload) != catalog.Count)
+            throw new InvalidOperationException($"{format} round trip lost products");
+
+        var allocBefore = GC.GetAllocatedBytesForCurrentThread();
+        var started = Stopwatch.GetTimestamp();
+        for (var i = 0; i < iterations; i++)
+            payload = encode(catalog);
+        var encodeMs = Stopwatch.GetElapsedTime(started).TotalMilliseconds / iterations;
+        var encodeAlloc = (GC.GetAllocatedBytesForCurrentThread() - allocBefore) / iterations;
+
+        allocBefore = GC.GetAllocatedBytesForCurrentThread();
+        started = Stopwatch.GetTimestamp();
+        for (var i = 0; i < iterations; i++)
+            decode(payload);
+        var decodeMs = Stopwatch.GetElapsedTime(started).TotalMilliseconds / iterations;
+        var decodeAlloc = (GC.GetAllocatedBytesForCurrentThread() - allocBefore) / iterations;
+
+        return new Result(format, payload.Length, GzipLength(payload), encodeMs, decodeMs, encodeAlloc, decodeAlloc);
+    }
+
+    private static int GzipLength(byte[] payload)
+    {
+        using var buffer = new MemoryStream();
+        using (var gzip = new GZipStream(buffer, CompressionLevel.Optimal, leaveOpen: true))
+            gzip.Write(payload);
+        return (int)buffer.Length;
+    }
+
+    private static string Ratio(double candidate, double baseline) => $"{candidate / baseline:P0}";
+}
@@ -0,0 +1,135 @@
+using System.Text.Json;
+using System.Text.Json.Serialization;
+
+namespace PartsUnlimited.LoadTests;
+
+public sealed record ScenarioStats(
+    string Name,
+    int Requests,
+    int Errors,
+    int Shed,
+    double Throughput,
+    double P50Ms,
+    double P99Ms,
+    double P999Ms,
+    double MaxMs,
+    long MeanResponseBytes);
+
+/// <summary>
+/// Result of one run, per scenario and in total. Written as JSON so two runs
+/// (e.g. the release candidate and the last release) can be compared with
+/// the compare command. Server is present when the run was attached to the
+/// app's process (run --server-pid).
+/// </summary>
+public sealed record LoadReport(
+    DateTime StartedAt,
+    string BaseUrl,
+    int Concurrency,
+    double DurationSeconds,
+    IReadOnlyDictionary<string, int> Mix,
+    long ClientAllocatedBytesPerRequest,
+    ScenarioStats Total,
+    IReadOnlyList<ScenarioStats> Scenarios,
+    ServerRuntimeStats? Server = null)
+{
+    private static readonly JsonSerializerOptions JsonOptions = new(JsonSerializerDefaults.Web)
+    {
+        WriteIndented = true,
+        DefaultIgnoreCondition = JsonIgnoreCondition.WhenWritingNull
+    };
+
+    public static LoadReport Create(
+        LoadOptions options,
+        IReadOnlyCollection<WorkerSamples> workers,
+        long clientAllocated,
+        ServerRuntimeStats? server = null)
+    {
+        var seconds = options.Duration.TotalSeconds;
+        var names = workers
+            .SelectMany(w => w.Latencies.Keys.Concat(w.Errors.Keys).Concat(w.Shed.Keys))
+            .Distinct()
+            .Order()
+            .ToList();
+
+        var scenarios = names.Select(name => Stats(
+            name,
+            workers.SelectMany(w => w.Latencies.GetValueOrDefault(name) ?? []).ToList(),
+            workers.Sum(w => w.Errors.GetValueOrDefault(name)),
+            workers.Sum(w => w.Shed.GetValueOrDefault(name)),
+            workers.Sum(w => w.Bytes.GetValueOrDefault(name)),
+            seconds)).ToList();
+
+        var total = Stats(
+            "total",
+            workers.SelectMany(w => w.Latencies.Values.SelectMany(l => l)).ToList(),
+            scenarios.Sum(s => s.Errors),
+            scenarios.Sum(s => s.Shed),
+            workers.Sum(w => w.Bytes.Values.Sum()),
+            seconds);
+
+        var attempts = Math.Max(1, total.Requests + total.Errors + total.Shed);
+        return new LoadReport(
+            DateTime.UtcNow - options.Duration,
+            options.BaseUrl.ToString(),
+            options.Concurrency,
+            seconds,
+            options.Mix,
+            clientAllocated / attempts,
+            total,
+            scenarios,
+            server is null ? null : server with { AllocatedBytesPerRequest = server.AllocatedBytes / attempts });
+    }
+
+    public static async Task<LoadReport> ReadAsync(string path)
+    {
+        await using var stream = File.OpenRead(path);
+        return await JsonSerializer.DeserializeAsync<LoadReport>(stream, JsonOptions)
+            ?? throw new InvalidDataException($"{path} is not a load report");
+    }
+
+    public async Task WriteAsync(string path)
+    {
+        await using var stream = File.Create(path);
+        await JsonSerializer.SerializeAsync(stream, this, JsonOptions);
+    }
+
+    public void Print(TextWriter output)
+    {
+        output.WriteLine($"{DurationSeconds:N0}s at concurrency {Concurrency} against {BaseUrl}");
+        output.WriteLine($"{"scenario",-14}{"req/s",10}{"ok",10}{"errors",8}{"shed",8}{"p50",10}{"p99",10}{"p99.9",10}{"max",10}{"bytes",10}");
+        foreach (var s in Scenarios.Append(Total))
+        {
+            output.WriteLine(
+                $"{s.Name,-14}{s.Throughput,10:N1}{s.Requests,10:N0}{s.Errors,8:N0}{s.Shed,8:N0}" +
+                $"{s.P50Ms,10:N1}{s.P99Ms,10:N1}{s.P999Ms,10:N1}{s.MaxMs,10:N1}{s.MeanResponseBytes,10:N0}");
+        }
+        output.WriteLine($"Client allocations: {ClientAllocatedBytesPerRequest:N0} bytes/request");
+        if (Server is { } server)
+        {
+            output.WriteLine(
+                $"Server allocations: {server.AllocatedBytesPerRequest:N0} bytes/request; " +
+                $"GCs gen0/1/2: {server.Gen0Collections:N0}/{server.Gen1Collections:N0}/{server.Gen2Collections:N0}; " +
+                $"time in GC {server.MeanTimeInGcPercent:N1}%; max heap {server.MaxHeapMB:N0} MB");
+        }
+    }
+
+    private static ScenarioStats Stats(string name, List<double> latencies, int errors, int shed, long bytes, double seconds)
+    {
+        latencies.Sort();
+        return new ScenarioStats(
+            name,
+            latencies.Count,
+            errors,
+            shed,
+            latencies.Count / seconds,
+            Percentile(latencies, 0.50),
+            Percentile(latencies, 0.99),
+            Percentile(latencies, 0.999),
+            latencies.Count == 0 ? 0 : latencies[^1],
+            latencies.Count == 0 ? 0 : bytes / latencies.Count);
+    }
+
+    // Nearest-rank percentile over sorted samples
+    private static double Percentile(List<double> sorted, double percentile)
+        => sorted.Count == 0 ? 0 : sorted[Math.Clamp((int)Math.Ceiling(percentile * sorted.Count) - 1, 0, sorted.Count - 1)];
+}
@@ -0,0 +1,185 @@
+using System.Diagnostics;
+using System.Net;
+using System.Net.Http.Json;
+using System.Text.Json;
+using Microsoft.EntityFrameworkCore;
+using PartsUnlimited.Models;
+
+namespace PartsUnlimited.LoadTests;
+
+public sealed record LoadOptions(
+    Uri BaseUrl,
+    int Concurrency,
+    TimeSpan Warmup,
+    TimeSpan Duration,
+    IReadOnlyDictionary<string, int> Mix,
+    string? ConnectionString,
+    int Seed,
+    int? ServerProcessId = null);
+
+/// <summary>
+/// Closed-loop load generator: Concurrency workers each pick a scenario by
+/// weight, issue it, record the latency and repeat until the run ends.
+/// Samples taken during the warmup are discarded. HTTP scenarios target the
+/// running app; "write" updates a random product's inventory through
+/// PartsUnlimitedContext (the admin pages need an interactive sign-in), which
+/// the app then picks up through its catalog delta sync.
+/// A 503 is recorded as shed, not as an error, so overload runs show how much
+/// the concurrency limiter turned away and what latency admitted requests saw.
+/// With ServerProcessId set, the app's own allocation and GC counters over the
+/// measured window go into the report through ServerCounters.
+/// </summary>
+public sealed class LoadRunner
+{
+    private static readonly string[] SearchTerms = ["tire", "rim", "brake", "battery", "light", "filter", "plug", "wiper"];
+    private static readonly string[] Tags = ["Material:Steel", "Finish:Chrome", "Size:16", "Brand:Contoso", "Warranty:Lifetime"];
+
+    private delegate Task<(HttpStatusCode Status, long Bytes)> Scenario(Random random);
+
+    private readonly LoadOptions _options;
+    private readonly HttpClient _http;
+    private readonly Dictionary<string, Scenario> _scenarios;
+    private int[] _productIds = [];
+
+    public LoadRunner(LoadOptions options)
+    {
+        _options = options;
+        _http = new HttpClient(new SocketsHttpHandler
+        {
+            MaxConnectionsPerServer = options.Concurrency,
+            AutomaticDecompression = DecompressionMethods.GZip,
+            PooledConnectionLifetime = TimeSpan.FromMinutes(5)
+        })
+        {
+            BaseAddress = options.BaseUrl,
+            Timeout = TimeSpan.FromSeconds(30)
+        };
+
+        _scenarios = new Dictionary<string, Scenario>(StringComparer.OrdinalIgnoreCase)
+        {
+            ["read"] = r => GetAsync($"api/products/{_productIds[r.Next(_productIds.Length)]}"),
+            ["list"] = _ => GetAsync("api/products"),
+            ["search"] = r => GetAsync($"api/products/search?q={SearchTerms[r.Next(SearchTerms.Length)]}"),
+            ["facets"] = r => GetAsync($"api/products/search/facets?q={SearchTerms[r.Next(SearchTerms.Length)]}&tag={Uri.EscapeDataString(Tags[r.Next(Tags.Length)])}"),
+            ["autocomplete"] = r =>
+            {
+                var term = SearchTerms[r.Next(SearchTerms.Length)];
+                return GetAsync($"api/products/search/autocomplete?q={term[..Math.Min(term.Length, r.Next(2, 6))]}");
+            },
+            ["top"] = _ => GetAsync("api/products/top?sort=PriceAsc&count=20"),
+            ["write"] = WriteAsync
+        };
+    }
+
+    public async Task<LoadReport> RunAsync()
+    {
+        foreach (var name in _options.Mix.Keys)
+        {
+            if (!_scenarios.ContainsKey(name))
+                throw new ArgumentException($"Unknown scenario '{name}'. Known: {string.Join(", ", _scenarios.Keys)}");
+        }
+        if (_options.Mix.ContainsKey("write") && _options.ConnectionString is null)
+            throw new ArgumentException("The write scenario needs --connection");
+
+        var products = await _http.GetFromJsonAsync<List<JsonElement>>("api/products") ?? [];
+        _productIds = products.Select(p => p.GetProperty("productId").GetInt32()).ToArray();
+        if (_productIds.Length == 0)
+            throw new InvalidOperationException("The catalog is empty; run the seed command first");
+        Console.WriteLine($"Catalog has {_productIds.Length:N0} products; warming up for {_options.Warmup.TotalSeconds:N0}s");
+
+        var weighted = _options.Mix.SelectMany(kv => Enumerable.Repeat(kv.Key, kv.Value)).ToArray();
+        await using var server = _options.ServerProcessId is { } pid ? ServerCounters.Start(pid) : null;
+        var clock = Stopwatch.StartNew();
+        var measureFrom = _options.Warmup;
+        var stopAt = _options.Warmup + _options.Duration;
+        var allocatedBefore = 0L;
+        var measuring = 0;
+
+        var workers = Enumerable.Range(0, _options.Concurrency).Select(worker => Task.Run(async () =>
+        {
+            var random = new Random(_options.Seed + worker);
+            var samples = new WorkerSamples();
+            while (clock.Elapsed < stopAt)
+            {
+                var name = weighted[random.Next(weighted.Length)];
+                var started = Stopwatch.GetTimestamp();
+                HttpStatusCode? status = null;
+                long bytes = 0;
+                try
+                {
+                    (status, bytes) = await _scenarios[name](random);
+                }
+                catch (Exception ex) when (ex is HttpRequestException or TaskCanceledException or DbUpdateException)
+                {
+                    // recorded as an error below
+                }
+
+                if (clock.Elapsed < measureFrom) continue;
+                if (Interlocked.Exchange(ref measuring, 1) == 0)
+                {
+                    Interlocked.Exchange(ref allocatedBefore, GC.GetTotalAllocatedBytes());
+                    server?.BeginMeasuring();
+                }
+
+                samples.Add(name, Stopwatch.GetElapsedTime(started).TotalMilliseconds, status, bytes);
+            }
+            return samples;
+        })).ToArray();
+
+        var results = await Task.WhenAll(workers);
+        var clientAllocated = GC.GetTotalAllocatedBytes() - Interlocked.Read(ref allocatedBefore);
+        var serverStats = server is null ? null : await server.StopAsync();
+        return LoadReport.Create(_options, results, clientAllocated, serverStats);
+    }
+
+    private async Task<(HttpStatusCode, long)> GetAsync(string path)
+    {
+        using var response = await _http.GetAsync(path, HttpCompletionOption.ResponseHeadersRead);
+        var body = await response.Content.ReadAsByteArrayAsync();
+        return (response.StatusCode, body.LongLength);
+    }
+
+    private async Task<(HttpStatusCode, long)> WriteAsync(Random random)
+    {
+        var options = new DbContextOptionsBuilder<PartsUnlimitedContext>()
+            .UseSqlServer(_options.ConnectionString)
+            .Options;
+        await using var db = new PartsUnlimitedContext(options);
+        var id = _productIds[random.Next(_productIds.Length)];
+        var product = await db.Products.FindAsync(id);
+        if (product is null) return (HttpStatusCode.NotFound, 0);
+
+        product.Inventory = random.Next(0, 500);
+        await db.SaveChangesAsync();
+        return (HttpStatusCode.OK, 0);
+    }
+}
+
+/// <summary>Per-worker latency samples, merged into a LoadReport at the end.</summary>
+public sealed class WorkerSamples
+{
+    public Dictionary<string, List<double>> Latencies { get; } = new();
+    public Dictionary<string, int> Errors { get; } = new();
+    public Dictionary<string, int> Shed { get; } = new();
+    public Dictionary<string, long> Bytes { get; } = new();
+
+    public void Add(string scenario, double milliseconds, HttpStatusCode? status, long bytes)
+    {
+        if (status == HttpStatusCode.ServiceUnavailable)
+        {
+            Shed[scenario] = Shed.GetValueOrDefault(scenario) + 1;
+            return;
+        }
+
+        if (status is null || (int)status >= 400)
+        {
+            Errors[scenario] = Errors.GetValueOrDefault(scenario) + 1;
+            return;
+        }
+
+        if (!Latencies.TryGetValue(scenario, out var list))
+            Latencies[scenario] = list = new List<double>();
+        list.Add(milliseconds);
+        Bytes[scenario] = Bytes.GetValueOrDefault(scenario) + bytes;
+    }
+}
@@ -0,0 +1,96 @@
+using PartsUnlimited.LoadTests;
+
+// Load and soak tests for the product API. See README.md for the workflow.
+//
+//   seed     --connection <cs> [--products 100000] [--categories 50] [--seed 1]
+//   run      [--url http://localhost:5000] [--concurrency 32] [--warmup 10] [--duration 60]
+//            [--mix read=50,list=5,search=15,facets=10,autocomplete=10,top=5,write=5]
+//            [--connection <cs>] [--server-pid <pid>] [--out report.json] [--seed 1]
+//   compare  <baseline.json> <candidate.json> [--threshold 10]
+//   codec    [--products 10000] [--iterations 20] [--seed 1]
+
+if (args.Length == 0)
+{
+    Console.Error.WriteLine("usage: PartsUnlimited.LoadTests seed|run|compare|codec [options]");
+    return 2;
+}
+
+var command = args[0];
+var positional = args.Skip(1).TakeWhile(a => !a.StartsWith("--")).ToArray();
+var options = ParseOptions(args.Skip(1 + positional.Length).ToArray());
+
+switch (command)
+{
+    case "seed":
+        await CatalogSeeder.SeedAsync(
+            Required(options, "connection"),
+            int.Parse(options.GetValueOrDefault("products", "100000")),
+            int.Parse(options.GetValueOrDefault("categories", "50")),
+            int.Parse(options.GetValueOrDefault("seed", "1")));
+        return 0;
+
+    case "run":
+    {
+        var runner = new LoadRunner(new LoadOptions(
+            new Uri(options.GetValueOrDefault("url", "http://localhost:5000").TrimEnd('/') + "/"),
+            int.Parse(options.GetValueOrDefault("concurrency", "32")),
+            TimeSpan.FromSeconds(double.Parse(options.GetValueOrDefault("warmup", "10"))),
+            TimeSpan.FromSeconds(double.Parse(options.GetValueOrDefault("duration", "60"))),
+            ParseMix(options.GetValueOrDefault("mix", "read=50,list=5,search=15,facets=10,autocomplete=10,top=5,write=5")),
+            options.GetValueOrDefault("connection"),
+            int.Parse(options.GetValueOrDefault("seed", "1")),
+            options.TryGetValue("server-pid", out var pid) ? int.Parse(pid) : null));
+
+        var report = await runner.RunAsync();
+        report.Print(Console.Out);
+        if (options.TryGetValue("out", out var path))
+        {
+            await report.WriteAsync(path);
+            Console.WriteLine($"Report written to {path}");
+        }
+        return 0;
+    }
+
+    case "compare" when positional.Length == 2:
+    {
+        var ok = ReportComparer.Compare(
+            await LoadReport.ReadAsync(positional[0]),
+            await LoadReport.ReadAsync(positional[1]),
+            double.Parse(options.GetValueOrDefault("threshold", "10")),
+            Console.Out);
+        return ok ? 0 : 1;
+    }
+
+    case "codec":
+        CodecBenchmark.Run(
+            int.Parse(options.GetValueOrDefault("products", "10000")),
+            int.Parse(options.GetValueOrDefault("iterations", "20")),
+            int.Parse(options.GetValueOrDefault("seed", "1")),
+            Console.Out);
+        return 0;
+
+    default:
+        Console.Error.WriteLine($"Unknown or incomplete command '{command}'");
+        return 2;
+}
+
+static Dictionary<string, string> ParseOptions(string[] args)
+{
+    var options = new Dictionary<string, string>(StringComparer.OrdinalIgnoreCase);
+    for (var i = 0; i < args.Length; i++)
+    {
+        if (!args[i].StartsWith("--"))
+            throw new ArgumentException($"Unexpected argument '{args[i]}'");
+        options[args[i][2..]] = i + 1 < args.Length && !args[i + 1].StartsWith("--") ? args[++i] : "true";
+    }
+    return options;
+}
+
+static Dictionary<string, int> ParseMix(string mix)
+    => mix.Split(',', StringSplitOptions.RemoveEmptyEntries | StringSplitOptions.TrimEntries)
+        .Select(part => part.Split('='))
+        .Where(kv => int.Parse(kv[1]) > 0)
+        .ToDictionary(kv => kv[0], kv => int.Parse(kv[1]), StringComparer.OrdinalIgnoreCase);
+
+static string Required(Dictionary<string, string> options, string name)
+    => options.TryGetValue(name, out var value) ? value : throw new ArgumentException($"--{name} is required");
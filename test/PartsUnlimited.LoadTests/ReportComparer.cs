@@ -0,0 +1,73 @@
+namespace PartsUnlimited.LoadTests;
+
+/// <summary>
+/// Compares a candidate run with a baseline run. A scenario regresses when
+/// its throughput drops, or its p99 / p99.9 latency rises, by more than the
+/// threshold percentage; a new error or shed rate above the baseline's also
+/// counts. When both runs carry server counters, server allocations per
+/// request and gen 2 collections are held to the same threshold. Compare runs
+/// made with the same mix, concurrency and duration.
+/// </summary>
+public static class ReportComparer
+{
+    public static bool Compare(LoadReport baseline, LoadReport candidate, double thresholdPercent, TextWriter output)
+    {
+        var regressed = false;
+        var baselineByName = baseline.Scenarios.Append(baseline.Total).ToDictionary(s => s.Name);
+
+        output.WriteLine($"{"scenario",-14}{"req/s",18}{"p99 ms",18}{"p99.9 ms",18}{"error+shed %",18}");
+        foreach (var current in candidate.Scenarios.Append(candidate.Total))
+        {
+            if (!baselineByName.TryGetValue(current.Name, out var previous))
+            {
+                output.WriteLine($"{current.Name,-14} (not in baseline)");
+                continue;
+            }
+
+            var problems = new List<string>();
+            if (Change(previous.Throughput, current.Throughput) < -thresholdPercent) problems.Add("throughput");
+            if (Change(previous.P99Ms, current.P99Ms) > thresholdPercent) problems.Add("p99");
+            if (Change(previous.P999Ms, current.P999Ms) > thresholdPercent) problems.Add("p99.9");
+            if (FailureRate(current) > FailureRate(previous) + thresholdPercent / 100) problems.Add("failures");
+
+            output.WriteLine(
+                $"{current.Name,-14}{Delta(previous.Throughput, current.Throughput),18}" +
+                $"{Delta(previous.P99Ms, current.P99Ms),18}{Delta(previous.P999Ms, current.P999Ms),18}" +
+                $"{$"{FailureRate(previous):P1} → {FailureRate(current):P1}",18}" +
+                (problems.Count > 0 ? $"  REGRESSED ({string.Join(", ", problems)})" : ""));
+
+            regressed |= problems.Count > 0;
+        }
+
+        if (baseline.Server is { } before && candidate.Server is { } after)
+        {
+            var problems = new List<string>();
+            if (Change(before.AllocatedBytesPerRequest, after.AllocatedBytesPerRequest) > thresholdPercent)
+                problems.Add("allocations");
+            if (Change(before.Gen2Collections, after.Gen2Collections) > thresholdPercent)
+                problems.Add("gen2");
+
+            output.WriteLine(
+                $"{"server",-14}{$"{after.AllocatedBytesPerRequest:N0} B/req ({Change(before.AllocatedBytesPerRequest, after.AllocatedBytesPerRequest):+0.0;-0.0}%)",36}" +
+                $"{$"gen2 {before.Gen2Collections} → {after.Gen2Collections}",18}" +
+                $"{$"GC {before.MeanTimeInGcPercent:N1}% → {after.MeanTimeInGcPercent:N1}%",18}" +
+                (problems.Count > 0 ? $"  REGRESSED ({string.Join(", ", problems)})" : ""));
+
+            regressed |= problems.Count > 0;
+        }
+
+        return !regressed;
+    }
+
+    private static double Change(double before, double after)
+        => before == 0 ? 0 : (after - before) / before * 100;
+
+    private static string Delta(double before, double after)
+        => $"{after:N1} ({Change(before, after):+0.0;-0.0}%)";
+
+    private static double FailureRate(ScenarioStats stats)
+    {
+        var attempts = stats.Requests + stats.Errors + stats.Shed;
+        return attempts == 0 ? 0 : (double)(stats.Errors + stats.Shed) / attempts;
+    }
+}
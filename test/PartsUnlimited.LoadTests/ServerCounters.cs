@@ -0,0 +1,111 @@
+using System.Diagnostics.Tracing;
+using Microsoft.Diagnostics.NETCore.Client;
+using Microsoft.Diagnostics.Tracing;
+
+namespace PartsUnlimited.LoadTests;
+
+/// <summary>GC and allocation counters of the app under test, over the measured part of a run.</summary>
+public sealed record ServerRuntimeStats(
+    long AllocatedBytes,
+    long AllocatedBytesPerRequest,
+    int Gen0Collections,
+    int Gen1Collections,
+    int Gen2Collections,
+    double MeanTimeInGcPercent,
+    double MaxHeapMB);
+
+/// <summary>
+/// Listens to the app's System.Runtime event counters over EventPipe (the
+/// same data as <c>dotnet-counters monitor System.Runtime</c>), so the report
+/// shows what the server allocated and collected rather than the load
+/// generator. The app must run on this machine, and counters arrive once
+/// per second, so the window is accurate to about a second at each end.
+/// </summary>
+public sealed class ServerCounters : IAsyncDisposable
+{
+    private const int IntervalSeconds = 1;
+
+    private readonly EventPipeSession _session;
+    private readonly Task _processing;
+    private readonly object _sync = new();
+    private volatile bool _measuring;
+    private double _allocated;
+    private double _gen0;
+    private double _gen1;
+    private double _gen2;
+    private double _timeInGc;
+    private int _timeInGcSamples;
+    private double _maxHeapMB;
+
+    private ServerCounters(int processId)
+    {
+        var provider = new EventPipeProvider("System.Runtime", EventLevel.Informational, 0,
+            new Dictionary<string, string> { ["EventCounterIntervalSec"] = IntervalSeconds.ToString() });
+        _session = new DiagnosticsClient(processId).StartEventPipeSession(provider, requestRundown: false);
+
+        var source = new EventPipeEventSource(_session.EventStream);
+        source.Dynamic.All += OnEvent;
+        _processing = Task.Run(source.Process);
+    }
+
+    /// <summary>Attaches to the app's process; throws if it cannot be reached.</summary>
+    public static ServerCounters Start(int processId) => new(processId);
+
+    /// <summary>Counts everything reported from now on.</summary>
+    public void BeginMeasuring() => _measuring = true;
+
+    public async Task<ServerRuntimeStats> StopAsync()
+    {
+        // Let the interval covering the end of the run arrive
+        await Task.Delay(TimeSpan.FromSeconds(IntervalSeconds));
+        _measuring = false;
+        await _session.StopAsync(CancellationToken.None);
+        await _processing;
+
+        lock (_sync)
+        {
+            return new ServerRuntimeStats(
+                (long)_allocated,
+                0,
+                (int)_gen0,
+                (int)_gen1,
+                (int)_gen2,
+                _timeInGcSamples == 0 ? 0 : _timeInGc / _timeInGcSamples,
+                _maxHeapMB);
+        }
+    }
+
+    public ValueTask DisposeAsync()
+    {
+        _session.Dispose();
+        return ValueTask.CompletedTask;
+    }
+
+    private void OnEvent(TraceEvent e)
+    {
+        if (!_measuring || e.EventName != "EventCounters") return;
+        if (e.PayloadValue(0) is not IDictionary<string, object> payload
+            || payload["Payload"] is not IDictionary<string, object> counter)
+            return;
+
+        var name = (string)counter["Name"];
+        lock (_sync)
+        {
+            switch (name)
+            {
+                case "alloc-rate": _allocated += Value(counter, "Increment"); break;
+                case "gen-0-gc-count": _gen0 += Value(counter, "Increment"); break;
+                case "gen-1-gc-count": _gen1 += Value(counter, "Increment"); break;
+                case "gen-2-gc-count": _gen2 += Value(counter, "Increment"); break;
+                case "time-in-gc":
+                    _timeInGc += Value(counter, "Mean");
+                    _timeInGcSamples++;
+                    break;
+                case "gc-heap-size": _maxHeapMB = Math.Max(_maxHeapMB, Value(counter, "Mean")); break;
+            }
+        }
+    }
+
+    private static double Value(IDictionary<string, object> counter, string field)
+        => Convert.ToDouble(counter[field]);
+}
@@ -0,0 +1,66 @@
+using Microsoft.Data.Sqlite;
+using Microsoft.EntityFrameworkCore;
+using PartsUnlimited.Models;
+
+namespace PartsUnlimited.Web.Tests.Mocks;
+
+/// <summary>
+/// A private in-memory SQLite database with the app's schema. It lives as long
+/// as this instance keeps its connection open, so several of them stand in
+/// for separate database servers (partitions, a primary and its replicas).
+/// </summary>
+public sealed class LocalDatabase : IDisposable
+{
+    private readonly SqliteConnection _connection;
+
+    public LocalDatabase()
+    {
+        _connection = new SqliteConnection("DataSource=:memory:");
+        _connection.Open();
+        Options = new DbContextOptionsBuilder<PartsUnlimitedContext>()
+            .UseSqlite(_connection)
+            .UseQueryTrackingBehavior(QueryTrackingBehavior.NoTracking)
+            .Options;
+
+        using var db = CreateContext();
+        db.Database.EnsureCreated();
+    }
+
+    public DbContextOptions<PartsUnlimitedContext> Options { get; }
+
+    public PartsUnlimitedContext CreateContext() => new(Options);
+
+    public void Seed(params Product[] products)
+    {
+        using var db = CreateContext();
+        foreach (var categoryId in products.Select(p => p.CategoryId).Distinct())
+        {
+            if (!db.Categories.Any(c => c.CategoryId == categoryId))
+                db.Categories.Add(new Category { CategoryId = categoryId, Name = $"Category {categoryId}" });
+        }
+        db.Products.AddRange(products);
+        db.SaveChanges();
+    }
+
+    public List<int> ProductIds()
+    {
+        using var db = CreateContext();
+        return db.Products.IgnoreQueryFilters().OrderBy(p => p.ProductId).Select(p => p.ProductId).ToList();
+    }
+
+    public static Product NewProduct(int productId, int categoryId, string title = "Part") => new()
+    {
+        ProductId = productId,
+        CategoryId = categoryId,
+        Title = title,
+        Price = 10m,
+        SalePrice = 10m,
+        ProductArtUrl = "part.png",
+        Description = title,
+        SkuNumber = $"SKU-{productId}",
+        ProductDetails = "{}",
+        Created = new DateTime(2026, 1, 1, 0, 0, 0, DateTimeKind.Utc)
+    };
+
+    public void Dispose() => _connection.Dispose();
+}
@@ -0,0 +1,87 @@
+using Microsoft.AspNetCore.Http;
+using PartsUnlimited.Models;
+using PartsUnlimited.Web.Tests.Mocks;
+using Xunit;
+
+namespace PartsUnlimited.Web.Tests.Models;
+
+public class ShoppingCartTests : IDisposable
+{
+    private const string CartId = "cart-1";
+
+    // Product 2 was soft-deleted after it went into the cart
+    private readonly LocalDatabase _database = new();
+
+    public ShoppingCartTests()
+    {
+        var deleted = LocalDatabase.NewProduct(2, 1);
+        deleted.Price = 30m;
+        deleted.DeletedAt = new DateTime(2026, 2, 1, 0, 0, 0, DateTimeKind.Utc);
+        _database.Seed(LocalDatabase.NewProduct(1, 1), deleted);
+
+        using var db = _database.CreateContext();
+        db.CartItems.AddRange(
+            new CartItem { CartId = CartId, ProductId = 1, Count = 2, UnitPrice = 10m },
+            new CartItem { CartId = CartId, ProductId = 2, Count = 1, UnitPrice = 30m });
+        db.SaveChanges();
+    }
+
+    public void Dispose() => _database.Dispose();
+
+    [Fact]
+    public async Task GetCount_ProductSoftDeleted_CountsLiveLinesOnly()
+    {
+        using var db = _database.CreateContext();
+
+        Assert.Equal(2, await Cart(db).GetCount());
+    }
+
+    [Fact]
+    public async Task GetTotal_ProductSoftDeleted_TotalsLiveLinesOnly()
+    {
+        using var db = _database.CreateContext();
+
+        Assert.Equal(20m, await Cart(db).GetTotal());
+    }
+
+    [Fact]
+    public async Task GetCartItems_ProductSoftDeleted_ReturnsLiveLinesOnly()
+    {
+        using var db = _database.CreateContext();
+
+        var items = await Cart(db).GetCartItems();
+
+        Assert.Equal(new[] { 1 }, items.Select(i => i.ProductId).ToArray());
+    }
+
+    [Fact]
+    public async Task CreateOrder_ProductSoftDeleted_OrdersLiveLinesOnly()
+    {
+        using var db = _database.CreateContext();
+        var order = new Order();
+
+        await Cart(db).CreateOrder(order);
+
+        Assert.Equal(new[] { 1 }, order.OrderDetails.Select(d => d.ProductId).ToArray());
+        Assert.Equal(20m, order.Total);
+    }
+
+    [Fact]
+    public async Task EmptyCart_ProductSoftDeleted_RemovesEveryLine()
+    {
+        using (var db = _database.CreateContext())
+        {
+            await Cart(db).EmptyCart();
+        }
+
+        using var check = _database.CreateContext();
+        Assert.False(check.CartItems.Any(c => c.CartId == CartId));
+    }
+
+    private static ShoppingCart Cart(IPartsUnlimitedContext db)
+    {
+        var http = new DefaultHttpContext();
+        http.Request.Headers.Cookie = $"Session={CartId}";
+        return ShoppingCart.GetCart(db, http);
+    }
+}
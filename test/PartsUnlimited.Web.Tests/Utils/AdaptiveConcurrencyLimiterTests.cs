@@ -0,0 +1,78 @@
+using System.Diagnostics.Metrics;
+using Microsoft.Extensions.Configuration;
+using Microsoft.Extensions.DependencyInjection;
+using PartsUnlimited.Utils;
+using Xunit;
+
+namespace PartsUnlimited.Web.Tests.Utils;
+
+public class AdaptiveConcurrencyLimiterTests : IDisposable
+{
+    private readonly ServiceProvider _services = new ServiceCollection().AddMetrics().BuildServiceProvider();
+
+    public void Dispose() => _services.Dispose();
+
+    [Fact]
+    public void OnLatency_SlowBurstWithinInterval_DecreasesOnce()
+    {
+        var limiter = CreateLimiter();
+        limiter.OnLatency("get", TimeSpan.FromMilliseconds(10));
+
+        for (var i = 0; i < 5; i++)
+            limiter.OnLatency("get", TimeSpan.FromMilliseconds(100));
+
+        Assert.Equal(90, limiter.Limit);
+    }
+
+    [Fact]
+    public void OnLatency_SustainedOverload_KeepsDecreasingToMinimum()
+    {
+        // With a wide tolerance, a baseline that absorbed the slow samples
+        // would stop treating them as overload after a few decreases
+        var limiter = CreateLimiter(
+            ("ConcurrencyLimit:DecreaseIntervalMs", "0"),
+            ("ConcurrencyLimit:LatencyTolerance", "8"));
+        limiter.OnLatency("get", TimeSpan.FromMilliseconds(10));
+
+        for (var i = 0; i < 100; i++)
+            limiter.OnLatency("get", TimeSpan.FromMilliseconds(100));
+
+        Assert.Equal(4, limiter.Limit);
+    }
+
+    [Fact]
+    public void OnLatency_SlowActionWithinItsOwnBaseline_KeepsLimit()
+    {
+        var limiter = CreateLimiter();
+        limiter.OnLatency("get", TimeSpan.FromMilliseconds(5));
+        limiter.OnLatency("search", TimeSpan.FromMilliseconds(100));
+
+        limiter.OnLatency("search", TimeSpan.FromMilliseconds(120));
+
+        Assert.Equal(100, limiter.Limit);
+    }
+
+    [Fact]
+    public void TryAcquire_BulkAboveItsShare_Rejects()
+    {
+        var limiter = CreateLimiter(("ConcurrencyLimit:InitialLimit", "10"));
+        for (var i = 0; i < 6; i++)
+            Assert.True(limiter.TryAcquire(LoadPriority.Bulk));
+
+        Assert.False(limiter.TryAcquire(LoadPriority.Bulk));
+        Assert.True(limiter.TryAcquire(LoadPriority.Critical));
+    }
+
+    private AdaptiveConcurrencyLimiter CreateLimiter(params (string Key, string Value)[] settings)
+    {
+        var config = new ConfigurationBuilder()
+            .AddInMemoryCollection(new Dictionary<string, string?>
+            {
+                ["ConcurrencyLimit:InitialLimit"] = "100",
+                ["ConcurrencyLimit:DecreaseIntervalMs"] = "60000"
+            })
+            .AddInMemoryCollection(settings.Select(s => new KeyValuePair<string, string?>(s.Key, s.Value)))
+            .Build();
+        return new AdaptiveConcurrencyLimiter(config, _services.GetRequiredService<IMeterFactory>());
+    }
+}
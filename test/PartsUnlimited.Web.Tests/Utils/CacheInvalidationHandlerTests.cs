@@ -0,0 +1,79 @@
+using Microsoft.Extensions.Caching.Memory;
+using PartsUnlimited.Models;
+using PartsUnlimited.Utils;
+using Xunit;
+
+namespace PartsUnlimited.Web.Tests.Utils;
+
+public class CacheInvalidationHandlerTests : IDisposable
+{
+    private readonly RecordingEntityCache _entityCache = new();
+    private readonly CatalogVersion _catalogVersion = new();
+    private readonly MemoryCache _cache = new(new MemoryCacheOptions());
+    private readonly RecordingReplicaRouter _replicas = new();
+
+    public void Dispose() => _cache.Dispose();
+
+    [Fact]
+    public async Task HandleAsync_ExternalWriteFoundBySync_ChangesETags()
+    {
+        var productETag = _catalogVersion.ProductETag(1);
+        var listETag = _catalogVersion.ListETag("all");
+
+        await CreateHandler().HandleAsync(
+            [new ProductChangeEvent(1, ProductChangeKind.Updated, ProductEventSource.Catalog)],
+            CancellationToken.None);
+
+        Assert.NotEqual(productETag, _catalogVersion.ProductETag(1));
+        Assert.NotEqual(listETag, _catalogVersion.ListETag("all"));
+        Assert.Equal(new[] { 1 }, _entityCache.Evicted);
+        Assert.Equal(1, _replicas.Writes);
+    }
+
+    [Fact]
+    public async Task HandleAsync_MixedSources_BumpsEachProductAndPinsPrimaryOnce()
+    {
+        await CreateHandler().HandleAsync(
+            [
+                new ProductChangeEvent(1, ProductChangeKind.Updated, ProductEventSource.Catalog),
+                new ProductChangeEvent(2, ProductChangeKind.Updated, ProductEventSource.Remote)
+            ],
+            CancellationToken.None);
+
+        Assert.Equal(new[] { 1, 2 }, _entityCache.Evicted);
+        Assert.Equal(1, _catalogVersion.ForProduct(1));
+        Assert.Equal(2, _catalogVersion.ForProduct(2));
+        Assert.Equal(1, _replicas.Writes);
+    }
+
+    private CacheInvalidationHandler CreateHandler()
+        => new(_entityCache, _catalogVersion, _cache, _replicas);
+
+    private sealed class RecordingEntityCache : IEntityCache
+    {
+        public List<int> Evicted { get; } = [];
+
+        public void EvictProduct(int productId) => Evicted.Add(productId);
+
+        public Task<Product?> GetProductAsync(int productId, CancellationToken cancellationToken = default)
+            => throw new NotSupportedException();
+
+        public Task<IReadOnlyList<Category>> GetCategoriesAsync(CancellationToken cancellationToken = default)
+            => throw new NotSupportedException();
+
+        public Task<Category?> GetCategoryAsync(int categoryId, CancellationToken cancellationToken = default)
+            => throw new NotSupportedException();
+
+        public Task<T> GetOrQueryAsync<T>(string key, Func<PartsUnlimitedContext, Task<T>> query)
+            => throw new NotSupportedException();
+    }
+
+    private sealed class RecordingReplicaRouter : IReadReplicaRouter
+    {
+        public int Writes { get; private set; }
+
+        public void MarkWrite() => Writes++;
+
+        public PartsUnlimitedContext CreateReadContext() => throw new NotSupportedException();
+    }
+}
@@ -0,0 +1,174 @@
+using System.Formats.Cbor;
+using Microsoft.AspNetCore.Http;
+using Microsoft.AspNetCore.Mvc.Formatters;
+using PartsUnlimited.Utils;
+using PartsUnlimited.Web.Tests.Mocks;
+using Xunit;
+
+namespace PartsUnlimited.Web.Tests.Utils;
+
+public class CompactProductCodecTests
+{
+    [Fact]
+    public void Encode_LiveProduct_RoundTripsWithCentsAndMillis()
+    {
+        var product = LocalDatabase.NewProduct(7, 3, "Brake pads");
+        product.Price = 12.345m;
+        product.SalePrice = 9.99m;
+        product.Inventory = 4;
+        product.LeadTime = 2;
+        product.RecommendationId = 11;
+        product.Created = new DateTime(2026, 1, 2, 3, 4, 5, DateTimeKind.Utc).AddTicks(1234567);
+        product.Updated = new DateTime(2026, 2, 1, 0, 0, 0, DateTimeKind.Utc);
+
+        var bytes = CompactProductCodec.Encode(product);
+        var decoded = CompactProductCodec.DecodeProduct(bytes);
+
+        Assert.Equal(14, new CborReader(bytes).ReadStartMap());
+        Assert.Equal(1235, CompactProductCodec.ToScaled(product.Price));
+        Assert.Equal(12.35m, decoded.Price);
+        Assert.Equal(9.99m, decoded.SalePrice);
+        Assert.Equal(new DateTime(2026, 1, 2, 3, 4, 5, 123, DateTimeKind.Utc), decoded.Created);
+        Assert.Equal(DateTimeKind.Utc, decoded.Created.Kind);
+        Assert.Equal(product.Updated, decoded.Updated);
+        Assert.Null(decoded.DeletedAt);
+        Assert.Equal(
+            (product.ProductId, product.Title, product.CategoryId, product.SkuNumber, product.RecommendationId,
+                product.ProductArtUrl, product.Description, product.ProductDetails, product.Inventory, product.LeadTime),
+            (decoded.ProductId, decoded.Title, decoded.CategoryId, decoded.SkuNumber, decoded.RecommendationId,
+                decoded.ProductArtUrl, decoded.Description, decoded.ProductDetails, decoded.Inventory, decoded.LeadTime));
+    }
+
+    [Fact]
+    public void Encode_DeletedProduct_AddsDeletedAtKey()
+    {
+        var product = LocalDatabase.NewProduct(7, 3);
+        product.DeletedAt = new DateTime(2026, 3, 1, 12, 0, 0, DateTimeKind.Utc);
+
+        var bytes = CompactProductCodec.Encode(product);
+
+        Assert.Equal(15, new CborReader(bytes).ReadStartMap());
+        Assert.Equal(product.DeletedAt, CompactProductCodec.DecodeProduct(bytes).DeletedAt);
+    }
+
+    [Fact]
+    public void ToScaled_HalfCent_RoundsAwayFromZero()
+    {
+        Assert.Equal(1001, CompactProductCodec.ToScaled(10.005m));
+        Assert.Equal(-1001, CompactProductCodec.ToScaled(-10.005m));
+        Assert.Equal(1000, CompactProductCodec.ToScaled(10.004m));
+    }
+
+    [Fact]
+    public void DecodeProduct_UnknownKeys_AreSkipped()
+    {
+        var writer = new CborWriter();
+        writer.WriteStartMap(4);
+        writer.WriteInt32(0);
+        writer.WriteInt32(7);
+        writer.WriteInt32(99);
+        writer.WriteStartArray(2);
+        writer.WriteInt32(1);
+        writer.WriteTextString("nested");
+        writer.WriteEndArray();
+        writer.WriteInt32(1);
+        writer.WriteTextString("Brake pads");
+        writer.WriteInt32(100);
+        writer.WriteTextString("future field");
+        writer.WriteEndMap();
+
+        var decoded = CompactProductCodec.DecodeProduct(writer.Encode());
+
+        Assert.Equal(7, decoded.ProductId);
+        Assert.Equal("Brake pads", decoded.Title);
+    }
+
+    [Fact]
+    public void DecodeProducts_IndefiniteLengthArray_ReadsEveryProduct()
+    {
+        var products = new[] { LocalDatabase.NewProduct(1, 1), LocalDatabase.NewProduct(2, 1) };
+
+        var decoded = CompactProductCodec.DecodeProducts(CompactProductCodec.Encode(products.Where(_ => true)));
+
+        Assert.Equal(new[] { 1, 2 }, decoded.Select(p => p.ProductId).ToArray());
+    }
+
+    [Fact]
+    public async Task WriteResponseBodyAsync_FacetedResult_WritesFiveKeyMap()
+    {
+        var result = new FacetedSearchResult(
+            [LocalDatabase.NewProduct(7, 3)],
+            [new CategoryFacet(3, 12)],
+            [new TagFacet("Material:Steel", 5)],
+            [new PriceBucketFacet(0m, 25.5m, 10), new PriceBucketFacet(100m, null, 2)],
+            Total: 12,
+            Page: 2,
+            PageSize: 1);
+
+        var reader = new CborReader(await WriteAsync(result));
+
+        Assert.Equal(5, reader.ReadStartMap());
+        Assert.Equal(0, reader.ReadInt32());
+        Assert.Equal(new[] { 7 }, CompactProductCodec.ReadProducts(reader).Select(p => p.ProductId).ToArray());
+
+        Assert.Equal(1, reader.ReadInt32());
+        Assert.Equal(1, reader.ReadStartArray());
+        Assert.Equal(new object[] { 3L, 12L }, ReadTuple(reader));
+        reader.ReadEndArray();
+
+        Assert.Equal(2, reader.ReadInt32());
+        Assert.Equal(1, reader.ReadStartArray());
+        Assert.Equal(new object[] { "Material:Steel", 5L }, ReadTuple(reader));
+        reader.ReadEndArray();
+
+        Assert.Equal(3, reader.ReadInt32());
+        Assert.Equal(2, reader.ReadStartArray());
+        Assert.Equal(new object?[] { 0L, 2550L, 10L }, ReadTuple(reader));
+        Assert.Equal(new object?[] { 10000L, null, 2L }, ReadTuple(reader));
+        reader.ReadEndArray();
+
+        Assert.Equal(4, reader.ReadInt32());
+        Assert.Equal(new object[] { 12L, 2L, 1L }, ReadTuple(reader));
+
+        reader.ReadEndMap();
+        Assert.Equal(CborReaderState.Finished, reader.PeekState());
+    }
+
+    private static async Task<byte[]> WriteAsync(object value)
+    {
+        var http = new DefaultHttpContext();
+        using var body = new MemoryStream();
+        http.Response.Body = body;
+        var context = new OutputFormatterWriteContext(
+            http, (stream, encoding) => new StreamWriter(stream, encoding), value.GetType(), value);
+
+        await new CompactProductOutputFormatter().WriteResponseBodyAsync(context);
+
+        return body.ToArray();
+    }
+
+    // Reads one fixed-length array of integers (as long), text and nulls
+    private static object?[] ReadTuple(CborReader reader)
+    {
+        var values = new List<object?>();
+        reader.ReadStartArray();
+        while (reader.PeekState() != CborReaderState.EndArray)
+        {
+            switch (reader.PeekState())
+            {
+                case CborReaderState.TextString:
+                    values.Add(reader.ReadTextString());
+                    break;
+                case CborReaderState.Null:
+                    reader.ReadNull();
+                    values.Add(null);
+                    break;
+                default:
+                    values.Add(reader.ReadInt64());
+                    break;
+            }
+        }
+        reader.ReadEndArray();
+        return values.ToArray();
+    }
+}
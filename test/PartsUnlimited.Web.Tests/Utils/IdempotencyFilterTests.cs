@@ -0,0 +1,161 @@
+using System.Text;
+using Microsoft.AspNetCore.Http;
+using Microsoft.AspNetCore.Mvc;
+using Microsoft.AspNetCore.Mvc.Abstractions;
+using Microsoft.AspNetCore.Mvc.Filters;
+using Microsoft.AspNetCore.Routing;
+using Microsoft.Extensions.Configuration;
+using Microsoft.Extensions.Logging.Abstractions;
+using PartsUnlimited.Utils;
+using Xunit;
+
+namespace PartsUnlimited.Web.Tests.Utils;
+
+public class IdempotencyFilterTests : IDisposable
+{
+    private readonly IConfiguration _config = new ConfigurationBuilder()
+        .AddInMemoryCollection(new Dictionary<string, string?> { ["Idempotency:WaitSeconds"] = "5" })
+        .Build();
+    private readonly MemoryIdempotencyStore _store;
+    private int _executions;
+
+    public IdempotencyFilterTests() => _store = new MemoryIdempotencyStore(_config);
+
+    public void Dispose() => _store.Dispose();
+
+    [Fact]
+    public async Task OnResourceExecutionAsync_SameKeyAndBody_ReplaysWithoutRunningAgain()
+    {
+        var filter = CreateFilter(_store);
+
+        var first = await SendAsync(filter, "{\"qty\":1}", CreatedAsync);
+        var second = await SendAsync(filter, "{\"qty\":1}", CreatedAsync);
+
+        Assert.Equal(1, _executions);
+        Assert.Equal(StatusCodes.Status201Created, second.Http.Response.StatusCode);
+        Assert.Equal("/api/orders/1", second.Http.Response.Headers.Location.ToString());
+        Assert.Equal("true", second.Http.Response.Headers["Idempotent-Replayed"].ToString());
+        Assert.Equal(ResponseBody(first.Http), ResponseBody(second.Http));
+    }
+
+    [Fact]
+    public async Task OnResourceExecutionAsync_SameKeyDifferentBody_Returns422()
+    {
+        var filter = CreateFilter(_store);
+        await SendAsync(filter, "{\"qty\":1}", CreatedAsync);
+
+        var second = await SendAsync(filter, "{\"qty\":2}", CreatedAsync);
+
+        Assert.Equal(1, _executions);
+        Assert.IsType<UnprocessableEntityObjectResult>(second.Context.Result);
+    }
+
+    [Fact]
+    public async Task OnResourceExecutionAsync_ConcurrentDuplicateOnSamePod_WaitsAndReplays()
+    {
+        var filter = CreateFilter(_store);
+        var (started, gate) = (NewSignal(), NewSignal());
+
+        var first = SendAsync(filter, "{\"qty\":1}", async http =>
+        {
+            started.SetResult();
+            await gate.Task;
+            await CreatedAsync(http);
+        });
+        await started.Task;
+        var second = SendAsync(filter, "{\"qty\":1}", CreatedAsync);
+        gate.SetResult();
+        await first;
+
+        Assert.Equal(StatusCodes.Status201Created, (await second).Http.Response.StatusCode);
+        Assert.Equal("true", (await second).Http.Response.Headers["Idempotent-Replayed"].ToString());
+        Assert.Equal(1, _executions);
+    }
+
+    [Fact]
+    public async Task OnResourceExecutionAsync_ConcurrentDuplicateOnOtherPod_PollsAndReplays()
+    {
+        // Two filters over one store stand in for two pods sharing Redis
+        var podA = CreateFilter(_store);
+        var podB = CreateFilter(_store);
+        var (started, gate) = (NewSignal(), NewSignal());
+
+        var first = SendAsync(podA, "{\"qty\":1}", async http =>
+        {
+            started.SetResult();
+            await gate.Task;
+            await CreatedAsync(http);
+        });
+        await started.Task;
+        var second = SendAsync(podB, "{\"qty\":1}", CreatedAsync);
+        gate.SetResult();
+        await first;
+
+        Assert.Equal("true", (await second).Http.Response.Headers["Idempotent-Replayed"].ToString());
+        Assert.Equal(1, _executions);
+    }
+
+    [Fact]
+    public async Task OnResourceExecutionAsync_StoreUnavailable_Returns503WithoutRunning()
+    {
+        var filter = CreateFilter(new UnavailableStore());
+
+        var response = await SendAsync(filter, "{\"qty\":1}", CreatedAsync);
+
+        Assert.Equal(0, _executions);
+        Assert.Equal(StatusCodes.Status503ServiceUnavailable,
+            Assert.IsType<StatusCodeResult>(response.Context.Result).StatusCode);
+    }
+
+    private IdempotencyFilter CreateFilter(IIdempotencyStore store)
+        => new(store, _config, NullLogger<IdempotencyFilter>.Instance);
+
+    private static TaskCompletionSource NewSignal() => new(TaskCreationOptions.RunContinuationsAsynchronously);
+
+    private async Task CreatedAsync(HttpContext http)
+    {
+        var id = Interlocked.Increment(ref _executions);
+        http.Response.StatusCode = StatusCodes.Status201Created;
+        http.Response.ContentType = "application/json";
+        http.Response.Headers.Location = $"/api/orders/{id}";
+        await http.Response.WriteAsync($"{{\"id\":{id}}}");
+    }
+
+    private static async Task<(HttpContext Http, ResourceExecutingContext Context)> SendAsync(
+        IdempotencyFilter filter, string body, Func<HttpContext, Task> action)
+    {
+        var http = new DefaultHttpContext();
+        http.Request.Method = HttpMethods.Post;
+        http.Request.Path = "/api/orders";
+        http.Request.Headers[IdempotencyFilter.HeaderName] = "order-1";
+        http.Request.Body = new MemoryStream(Encoding.UTF8.GetBytes(body));
+        http.Response.Body = new MemoryStream();
+
+        var actionContext = new ActionContext(http, new RouteData(), new ActionDescriptor());
+        var context = new ResourceExecutingContext(actionContext, [], []);
+        await filter.OnResourceExecutionAsync(context, async () =>
+        {
+            await action(http);
+            return new ResourceExecutedContext(actionContext, []);
+        });
+        return (http, context);
+    }
+
+    private static string ResponseBody(HttpContext http)
+        => Encoding.UTF8.GetString(((MemoryStream)http.Response.Body).ToArray());
+
+    private sealed class UnavailableStore : IIdempotencyStore
+    {
+        public Task<IdempotencyRecord?> GetAsync(string key, CancellationToken cancellationToken)
+            => throw new TimeoutException("Redis timed out");
+
+        public Task SetAsync(string key, IdempotencyRecord record, CancellationToken cancellationToken)
+            => throw new TimeoutException("Redis timed out");
+
+        public Task<bool> TryClaimAsync(string key, string owner, TimeSpan lease, CancellationToken cancellationToken)
+            => throw new TimeoutException("Redis timed out");
+
+        public Task ReleaseAsync(string key, string owner, CancellationToken cancellationToken)
+            => throw new TimeoutException("Redis timed out");
+    }
+}
@@ -0,0 +1,97 @@
+using PartsUnlimited.Models;
+using PartsUnlimited.Utils;
+using PartsUnlimited.Web.Tests.Mocks;
+using Xunit;
+
+namespace PartsUnlimited.Web.Tests.Utils;
+
+public class OffHeapProductStoreTests
+{
+    [Fact]
+    public void Build_FromScratch_ReadsEveryField()
+    {
+        var product = LocalDatabase.NewProduct(1, 3, "Brake pads ✓");
+        product.Price = 12.5m;
+        product.Description = string.Empty;
+
+        var store = OffHeapProductStore.Build(null, [product]);
+
+        Assert.True(store.TryGet(1, out var view));
+        var copy = view.ToProduct();
+        Assert.Equal((product.ProductId, product.CategoryId, product.Title, product.Price, product.Created),
+            (copy.ProductId, copy.CategoryId, copy.Title, copy.Price, copy.Created));
+        Assert.Equal(string.Empty, view.Description);
+        Assert.Equal(product.SkuNumber, view.SkuNumber);
+    }
+
+    [Fact]
+    public void Build_SmallDelta_AppendsIntoExistingBlocks()
+    {
+        var first = OffHeapProductStore.Build(null, Products(1, 1000).ToList());
+
+        var second = OffHeapProductStore.Build(first, [Renamed(5, "Changed")], new HashSet<int> { 7 });
+
+        Assert.Equal(first.AllocatedBytes, second.AllocatedBytes);
+        Assert.Equal(999, second.Count);
+        Assert.False(second.TryGet(7, out _));
+        Assert.True(second.TryGet(5, out var changed));
+        Assert.Equal("Changed", changed.Title);
+        Assert.True(second.TryGet(6, out var unchanged));
+        Assert.Equal("Part 6", unchanged.Title);
+    }
+
+    [Fact]
+    public void Build_ChangedProduct_EarlierViewKeepsOldValues()
+    {
+        var first = OffHeapProductStore.Build(null, Products(1, 10).ToList());
+        Assert.True(first.TryGet(5, out var before));
+
+        var second = OffHeapProductStore.Build(first, [Renamed(5, "Changed")], new HashSet<int> { 6 });
+
+        Assert.Equal("Part 5", before.Title);
+        Assert.Equal(10, first.Count);
+        Assert.True(first.TryGet(6, out _));
+        Assert.True(second.TryGet(5, out var after));
+        Assert.Equal("Changed", after.Title);
+    }
+
+    [Fact]
+    public void Build_SamePreviousTwice_KeepsFirstSuccessorIntact()
+    {
+        var first = OffHeapProductStore.Build(null, Products(1, 10).ToList());
+
+        var a = OffHeapProductStore.Build(first, [Renamed(11, "A")]);
+        var b = OffHeapProductStore.Build(first, [Renamed(11, "B")]);
+
+        Assert.True(a.TryGet(11, out var fromA));
+        Assert.True(b.TryGet(11, out var fromB));
+        Assert.Equal("A", fromA.Title);
+        Assert.Equal("B", fromB.Title);
+    }
+
+    [Fact]
+    public void Build_ManySupersededSlots_CompactsAndEarlierViewSurvivesCollection()
+    {
+        var store = OffHeapProductStore.Build(null, Products(1, 10).ToList());
+        Assert.True(store.TryGet(1, out var original));
+        var initialBytes = store.AllocatedBytes;
+
+        for (var i = 0; i < 10_000; i++)
+            store = OffHeapProductStore.Build(store, [Renamed(1 + i % 10, $"Rev {i}")]);
+
+        // Only the view keeps the first store's blocks reachable now
+        GC.Collect();
+        GC.WaitForPendingFinalizers();
+
+        Assert.Equal("Part 1", original.Title);
+        Assert.Equal(10, store.Count);
+        Assert.True(store.TryGet(10, out var latest));
+        Assert.Equal("Rev 9999", latest.Title);
+        Assert.True(store.AllocatedBytes <= 2 * initialBytes);
+    }
+
+    private static IEnumerable<Product> Products(int from, int count)
+        => Enumerable.Range(from, count).Select(id => LocalDatabase.NewProduct(id, 1, $"Part {id}"));
+
+    private static Product Renamed(int productId, string title) => LocalDatabase.NewProduct(productId, 1, title);
+}
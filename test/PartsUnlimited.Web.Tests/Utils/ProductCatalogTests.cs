@@ -0,0 +1,73 @@
+using Microsoft.Extensions.Configuration;
+using PartsUnlimited.Models;
+using PartsUnlimited.Utils;
+using PartsUnlimited.Web.Tests.Mocks;
+using Xunit;
+
+namespace PartsUnlimited.Web.Tests.Utils;
+
+public class ProductCatalogTests
+{
+    private static readonly DateTime Loaded = new(2026, 3, 1, 0, 0, 0, DateTimeKind.Utc);
+
+    [Theory]
+    [InlineData(false)]
+    [InlineData(true)]
+    public void Apply_SoftDeletedRowInDelta_RemovesProductAndAdvancesWatermark(bool offHeap)
+    {
+        var catalog = CreateCatalog(offHeap, Product(1, Loaded), Product(2, Loaded));
+        CatalogChange? change = null;
+        catalog.Changed += c => change = c;
+
+        var deleted = Product(2, Loaded.AddMinutes(5));
+        deleted.DeletedAt = deleted.Updated;
+        catalog.Apply([deleted], []);
+
+        Assert.Equal(new[] { 1 }, catalog.Views.Select(v => v.ProductId).ToArray());
+        Assert.Equal(new[] { 2 }, change!.Removed.ToArray());
+        Assert.Empty(change.Changed);
+        Assert.Equal(deleted.Updated, catalog.Watermark);
+    }
+
+    [Theory]
+    [InlineData(false)]
+    [InlineData(true)]
+    public void Apply_ReconciledMissingId_RemovesProduct(bool offHeap)
+    {
+        var catalog = CreateCatalog(offHeap, Product(1, Loaded), Product(2, Loaded));
+
+        catalog.Apply([], [2, 3]);
+
+        Assert.Equal(new[] { 1 }, catalog.Views.Select(v => v.ProductId).ToArray());
+    }
+
+    [Theory]
+    [InlineData(false)]
+    [InlineData(true)]
+    public void Apply_RowReReadByLookback_KeepsGeneration(bool offHeap)
+    {
+        var catalog = CreateCatalog(offHeap, Product(1, Loaded));
+        var generation = catalog.Generation;
+
+        catalog.Apply([Product(1, Loaded)], []);
+
+        Assert.Equal(generation, catalog.Generation);
+    }
+
+    private static ProductCatalog CreateCatalog(bool offHeap, params Product[] products)
+    {
+        var config = new ConfigurationBuilder()
+            .AddInMemoryCollection(new Dictionary<string, string?> { ["Catalog:OffHeap"] = offHeap.ToString() })
+            .Build();
+        var catalog = new ProductCatalog(config);
+        catalog.Replace(products);
+        return catalog;
+    }
+
+    private static Product Product(int productId, DateTime updated)
+    {
+        var product = LocalDatabase.NewProduct(productId, 1);
+        product.Updated = updated;
+        return product;
+    }
+}
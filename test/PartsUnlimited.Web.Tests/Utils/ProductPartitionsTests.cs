@@ -0,0 +1,152 @@
+using Microsoft.EntityFrameworkCore;
+using Microsoft.Extensions.Configuration;
+using Microsoft.Extensions.DependencyInjection;
+using Microsoft.Extensions.Logging.Abstractions;
+using PartsUnlimited.Models;
+using PartsUnlimited.Utils;
+using PartsUnlimited.Web.Tests.Mocks;
+using Xunit;
+
+namespace PartsUnlimited.Web.Tests.Utils;
+
+public class ProductPartitionsTests : IDisposable
+{
+    // Partition = categoryId mod 2: even categories live in _even, odd ones in _odd
+    private readonly LocalDatabase _even = new();
+    private readonly LocalDatabase _odd = new();
+    private readonly ProductPartitions _partitions;
+
+    public ProductPartitionsTests()
+    {
+        _partitions = new ProductPartitions(new Func<PartsUnlimitedContext>[] { _even.CreateContext, _odd.CreateContext });
+    }
+
+    public void Dispose()
+    {
+        _even.Dispose();
+        _odd.Dispose();
+    }
+
+    [Fact]
+    public async Task WriteAsync_ProductsInSeveralCategories_LandInOwningPartitions()
+    {
+        await _partitions.WriteAsync([WithCategory(1, 1), WithCategory(2, 2), WithCategory(3, 3), WithCategory(4, 4)], []);
+
+        Assert.Equal(new[] { 2, 4 }, _even.ProductIds());
+        Assert.Equal(new[] { 1, 3 }, _odd.ProductIds());
+    }
+
+    [Fact]
+    public async Task WriteAsync_CategoryChanged_MovesProductToNewPartition()
+    {
+        await _partitions.WriteAsync([WithCategory(7, 1)], []);
+        await _partitions.WriteAsync([WithCategory(7, 2, "Moved")], []);
+
+        Assert.Empty(_odd.ProductIds());
+        using var db = _even.CreateContext();
+        Assert.Equal("Moved", db.Products.Single(p => p.ProductId == 7).Title);
+    }
+
+    [Fact]
+    public async Task WriteAsync_ExistingProduct_UpdatesRow()
+    {
+        await _partitions.WriteAsync([WithCategory(5, 3)], []);
+        await _partitions.WriteAsync([WithCategory(5, 3, "Renamed")], []);
+
+        using var db = _odd.CreateContext();
+        Assert.Equal("Renamed", db.Products.Single(p => p.ProductId == 5).Title);
+    }
+
+    [Fact]
+    public async Task WriteAsync_RemovedIds_DeletesFromEveryPartition()
+    {
+        _even.Seed(LocalDatabase.NewProduct(2, 2));
+        _odd.Seed(LocalDatabase.NewProduct(3, 3));
+
+        await _partitions.WriteAsync([], [2, 3]);
+
+        Assert.Empty(_even.ProductIds());
+        Assert.Empty(_odd.ProductIds());
+    }
+
+    [Fact]
+    public async Task QueryAsync_WithCategory_ReadsOnlyOwningPartition()
+    {
+        _odd.Seed(LocalDatabase.NewProduct(1, 3));
+        // A stray category 3 row in the wrong partition must not be read
+        _even.Seed(LocalDatabase.NewProduct(2, 3));
+
+        var products = await ToListAsync(_partitions.QueryAsync(3, q => q.Where(p => p.CategoryId == 3)));
+
+        Assert.Equal(new[] { 1 }, products.Select(p => p.ProductId).ToList());
+    }
+
+    [Fact]
+    public async Task QueryAsync_WithoutCategory_MergesPartitionsInProductIdOrder()
+    {
+        _even.Seed(LocalDatabase.NewProduct(2, 2), LocalDatabase.NewProduct(4, 2), LocalDatabase.NewProduct(9, 4));
+        _odd.Seed(LocalDatabase.NewProduct(1, 1), LocalDatabase.NewProduct(5, 3), LocalDatabase.NewProduct(6, 1));
+
+        var products = await ToListAsync(_partitions.QueryAsync(null, q => q));
+
+        Assert.Equal(new[] { 1, 2, 4, 5, 6, 9 }, products.Select(p => p.ProductId).ToList());
+    }
+
+    [Fact]
+    public async Task QueryAsync_WithoutCategory_AppliesQueryInEveryPartition()
+    {
+        _even.Seed(LocalDatabase.NewProduct(2, 2, "Rim"), LocalDatabase.NewProduct(4, 2, "Tire"));
+        _odd.Seed(LocalDatabase.NewProduct(1, 1, "Tire"), LocalDatabase.NewProduct(3, 1, "Rim"));
+
+        var products = await ToListAsync(_partitions.QueryAsync(null, q => q.Where(p => p.Title == "Rim")));
+
+        Assert.Equal(new[] { 2, 3 }, products.Select(p => p.ProductId).ToList());
+    }
+
+    [Fact]
+    public async Task PartitionSync_ChangedProducts_CopiedFromDefaultDatabase()
+    {
+        using var primary = new LocalDatabase();
+        primary.Seed(LocalDatabase.NewProduct(1, 1), LocalDatabase.NewProduct(2, 2), LocalDatabase.NewProduct(3, 1));
+        using (var db = primary.CreateContext())
+        {
+            await db.Products.Where(p => p.ProductId == 3)
+                .ExecuteUpdateAsync(s => s.SetProperty(p => p.DeletedAt, DateTime.UtcNow));
+        }
+        _odd.Seed(LocalDatabase.NewProduct(3, 1));
+
+        var services = new ServiceCollection()
+            .AddScoped(_ => primary.CreateContext())
+            .BuildServiceProvider();
+        var sync = new ProductPartitionSync(
+            _partitions,
+            services.GetRequiredService<IServiceScopeFactory>(),
+            new ConfigurationBuilder().Build(),
+            NullLogger<ProductPartitionSync>.Instance);
+
+        await sync.HandleAsync(
+        [
+            new ProductChangeEvent(1, ProductChangeKind.Created),
+            new ProductChangeEvent(2, ProductChangeKind.Created),
+            new ProductChangeEvent(3, ProductChangeKind.Deleted)
+        ], CancellationToken.None);
+
+        Assert.Equal(new[] { 2 }, _even.ProductIds());
+        Assert.Equal(new[] { 1 }, _odd.ProductIds());
+    }
+
+    private static Product WithCategory(int productId, int categoryId, string title = "Part")
+    {
+        var product = LocalDatabase.NewProduct(productId, categoryId, title);
+        product.Category = new Category { CategoryId = categoryId, Name = $"Category {categoryId}" };
+        return product;
+    }
+
+    private static async Task<List<Product>> ToListAsync(IAsyncEnumerable<Product> products)
+    {
+        var list = new List<Product>();
+        await foreach (var product in products)
+            list.Add(product);
+        return list;
+    }
+}
@@ -0,0 +1,64 @@
+using Microsoft.Extensions.Configuration;
+using Microsoft.Extensions.Logging.Abstractions;
+using Microsoft.Extensions.Options;
+using PartsUnlimited.Utils;
+using PartsUnlimited.Web.Tests.Mocks;
+using Xunit;
+
+namespace PartsUnlimited.Web.Tests.Utils;
+
+public class PromotionEngineTests
+{
+    private readonly ProductCatalog _catalog = new(new ConfigurationBuilder().Build());
+
+    public PromotionEngineTests()
+    {
+        var product = LocalDatabase.NewProduct(1, 3);
+        product.SalePrice = 100m;
+        _catalog.Replace([product, LocalDatabase.NewProduct(2, 4)]);
+    }
+
+    [Fact]
+    public void PriceFor_ExpiredPromotionListedAfterLiveOne_AppliesLiveOne()
+    {
+        using var engine = CreateEngine(
+            new Promotion { CategoryId = 3, Percent = 10m, EndsAt = DateTime.UtcNow.AddDays(1) },
+            new Promotion { CategoryId = 3, Percent = 40m, EndsAt = DateTime.UtcNow.AddDays(-1) });
+
+        var price = engine.PriceFor(1);
+
+        Assert.Equal(new PromotionalPrice(1, 90m, 10m), price);
+    }
+
+    [Fact]
+    public void PriceFor_TwoLivePromotions_AppliesLastListed()
+    {
+        using var engine = CreateEngine(
+            new Promotion { CategoryId = 3, Percent = 10m },
+            new Promotion { CategoryId = 3, Percent = 20m });
+
+        Assert.Equal(new PromotionalPrice(1, 80m, 20m), engine.PriceFor(1));
+    }
+
+    [Fact]
+    public void PriceFor_CategoryWithoutPromotion_ReturnsSalePrice()
+    {
+        using var engine = CreateEngine(new Promotion { CategoryId = 3, Percent = 10m });
+
+        Assert.Equal(new PromotionalPrice(2, 10m, null), engine.PriceFor(2));
+        Assert.Null(engine.PriceFor(99));
+    }
+
+    private PromotionEngine CreateEngine(params Promotion[] promotions)
+        => new(_catalog, new FixedOptionsMonitor(new PromotionOptions { Active = [.. promotions] }),
+            NullLogger<PromotionEngine>.Instance);
+
+    private sealed class FixedOptionsMonitor(PromotionOptions value) : IOptionsMonitor<PromotionOptions>
+    {
+        public PromotionOptions CurrentValue => value;
+
+        public PromotionOptions Get(string? name) => value;
+
+        public IDisposable? OnChange(Action<PromotionOptions, string?> listener) => null;
+    }
+}
@@ -0,0 +1,129 @@
+using Microsoft.AspNetCore.Http;
+using Microsoft.Extensions.Configuration;
+using Microsoft.Extensions.Logging.Abstractions;
+using PartsUnlimited.Utils;
+using PartsUnlimited.Web.Tests.Mocks;
+using Xunit;
+
+namespace PartsUnlimited.Web.Tests.Utils;
+
+public class ReadReplicaRouterTests : IDisposable
+{
+    // The replica lags: it still has the old title of product 1
+    private readonly LocalDatabase _primary = new();
+    private readonly LocalDatabase _replica = new();
+    private readonly HttpContextAccessor _httpContextAccessor = new();
+
+    public ReadReplicaRouterTests()
+    {
+        _primary.Seed(LocalDatabase.NewProduct(1, 1, "Primary"));
+        _replica.Seed(LocalDatabase.NewProduct(1, 1, "Replica"));
+    }
+
+    public void Dispose()
+    {
+        _primary.Dispose();
+        _replica.Dispose();
+    }
+
+    [Fact]
+    public async Task CreateReadContext_HealthyReplica_ReadsReplica()
+    {
+        var router = CreateRouter();
+        await router.ProbeAsync(CancellationToken.None);
+
+        Assert.Equal("Replica", ReadTitle(router));
+    }
+
+    [Fact]
+    public void CreateReadContext_ReplicaNotProbedHealthy_ReadsPrimary()
+    {
+        var router = CreateRouter();
+
+        Assert.Equal("Primary", ReadTitle(router));
+    }
+
+    [Fact]
+    public async Task CreateReadContext_ReplicaLagAboveThreshold_ReadsPrimary()
+    {
+        var router = CreateRouter(("ReadReplicas:LagQuery", "SELECT 30 AS Value"));
+        await router.ProbeAsync(CancellationToken.None);
+
+        Assert.Equal("Primary", ReadTitle(router));
+    }
+
+    [Fact]
+    public async Task CreateReadContext_ReplicaLagWithinThreshold_ReadsReplica()
+    {
+        var router = CreateRouter(("ReadReplicas:LagQuery", "SELECT 1 AS Value"));
+        await router.ProbeAsync(CancellationToken.None);
+
+        Assert.Equal("Replica", ReadTitle(router));
+    }
+
+    [Fact]
+    public async Task CreateReadContext_AfterWriteWithoutRequest_ReadsPrimaryOnThisPod()
+    {
+        var router = CreateRouter();
+        await router.ProbeAsync(CancellationToken.None);
+
+        router.MarkWrite();
+
+        Assert.Equal("Primary", ReadTitle(router));
+    }
+
+    [Fact]
+    public async Task MarkWrite_InRequest_SetsReadYourWritesCookie()
+    {
+        var router = CreateRouter();
+        await router.ProbeAsync(CancellationToken.None);
+        _httpContextAccessor.HttpContext = new DefaultHttpContext();
+
+        router.MarkWrite();
+
+        Assert.Contains("pu_ryw=1", _httpContextAccessor.HttpContext.Response.Headers.SetCookie.ToString());
+    }
+
+    [Fact]
+    public async Task CreateReadContext_ReadYourWritesCookie_ReadsPrimary()
+    {
+        var router = CreateRouter();
+        await router.ProbeAsync(CancellationToken.None);
+        var http = new DefaultHttpContext();
+        http.Request.Headers.Cookie = "pu_ryw=1";
+        _httpContextAccessor.HttpContext = http;
+
+        Assert.Equal("Primary", ReadTitle(router));
+    }
+
+    [Fact]
+    public async Task CreateReadContext_ReadYourWritesHeader_ReadsPrimary()
+    {
+        var router = CreateRouter();
+        await router.ProbeAsync(CancellationToken.None);
+        var http = new DefaultHttpContext();
+        http.Request.Headers["X-Read-Your-Writes"] = "1";
+        _httpContextAccessor.HttpContext = http;
+
+        Assert.Equal("Primary", ReadTitle(router));
+    }
+
+    private ReadReplicaRouter CreateRouter(params (string Key, string Value)[] settings)
+    {
+        var config = new ConfigurationBuilder()
+            .AddInMemoryCollection(settings.Select(s => new KeyValuePair<string, string?>(s.Key, s.Value)))
+            .Build();
+        return new ReadReplicaRouter(
+            _primary.Options,
+            [_replica.Options],
+            config,
+            _httpContextAccessor,
+            NullLogger<ReadReplicaRouter>.Instance);
+    }
+
+    private static string ReadTitle(ReadReplicaRouter router)
+    {
+        using var db = router.CreateReadContext();
+        return db.Products.Single(p => p.ProductId == 1).Title;
+    }
+}
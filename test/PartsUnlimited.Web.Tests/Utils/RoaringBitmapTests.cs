@@ -0,0 +1,105 @@
+using PartsUnlimited.Utils;
+using Xunit;
+
+namespace PartsUnlimited.Web.Tests.Utils;
+
+public class RoaringBitmapTests
+{
+    // Spans three chunks and mixes sparse, dense and run-shaped contents
+    private static readonly int[] Sparse = Enumerable.Range(0, 3000).Select(i => i * 53).ToArray();
+    private static readonly int[] Dense = Enumerable.Range(0, 140_000).Where(i => i % 3 != 0).ToArray();
+    private static readonly int[] Runs = Enumerable.Range(0, 140_000).Where(i => i / 1000 % 2 == 0).ToArray();
+
+    public static TheoryData<string, string> Pairs() => new()
+    {
+        { nameof(Sparse), nameof(Dense) },
+        { nameof(Sparse), nameof(Runs) },
+        { nameof(Dense), nameof(Runs) },
+        { nameof(Runs), nameof(Runs) },
+        { nameof(Dense), nameof(Dense) },
+        { nameof(Runs), nameof(Sparse) }
+    };
+
+    [Theory]
+    [MemberData(nameof(Pairs))]
+    public void And_AnyContainerPair_MatchesSetIntersection(string left, string right)
+    {
+        var (a, b) = (Values(left), Values(right));
+
+        var result = RoaringBitmap.FromSorted(a).And(RoaringBitmap.FromSorted(b));
+
+        Assert.Equal(a.Intersect(b).ToArray(), result.Indexes().ToArray());
+    }
+
+    [Theory]
+    [MemberData(nameof(Pairs))]
+    public void Or_AnyContainerPair_MatchesSetUnion(string left, string right)
+    {
+        var (a, b) = (Values(left), Values(right));
+
+        var result = RoaringBitmap.FromSorted(a).Or(RoaringBitmap.FromSorted(b));
+
+        Assert.Equal(a.Union(b).Order().ToArray(), result.Indexes().ToArray());
+    }
+
+    [Theory]
+    [MemberData(nameof(Pairs))]
+    public void AndNot_AnyContainerPair_MatchesSetDifference(string left, string right)
+    {
+        var (a, b) = (Values(left), Values(right));
+
+        var result = RoaringBitmap.FromSorted(a).AndNot(RoaringBitmap.FromSorted(b));
+
+        Assert.Equal(a.Except(b).ToArray(), result.Indexes().ToArray());
+    }
+
+    [Theory]
+    [MemberData(nameof(Pairs))]
+    public void AndCount_AnyContainerPair_MatchesIntersectionCount(string left, string right)
+    {
+        var (a, b) = (Values(left), Values(right));
+
+        var count = RoaringBitmap.FromSorted(a).AndCount(RoaringBitmap.FromSorted(b));
+
+        Assert.Equal(a.Intersect(b).Count(), count);
+    }
+
+    [Fact]
+    public void Range_Length_ContainsEverySlotBelowLength()
+    {
+        var range = RoaringBitmap.Range(70_000);
+
+        Assert.Equal(70_000, range.Count);
+        Assert.True(range.Contains(0));
+        Assert.True(range.Contains(69_999));
+        Assert.False(range.Contains(70_000));
+        Assert.Equal(Enumerable.Range(0, 70_000).ToArray(), range.Indexes().ToArray());
+    }
+
+    [Fact]
+    public void Builder_RepeatedValue_AddsItOnce()
+    {
+        var builder = new RoaringBitmap.Builder();
+        builder.Add(5);
+        builder.Add(5);
+        builder.Add(9);
+
+        Assert.Equal(new[] { 5, 9 }, builder.Build().Indexes().ToArray());
+    }
+
+    [Fact]
+    public void Builder_DescendingValue_Throws()
+    {
+        var builder = new RoaringBitmap.Builder();
+        builder.Add(9);
+
+        Assert.Throws<ArgumentException>(() => builder.Add(5));
+    }
+
+    private static int[] Values(string name) => name switch
+    {
+        nameof(Sparse) => Sparse,
+        nameof(Dense) => Dense,
+        _ => Runs
+    };
+}